@@ -0,0 +1,90 @@
+package com.aiprompt2draw.adapter;
+
+import cn.hutool.core.thread.ThreadUtil;
+import com.aiprompt2draw.entity.ModelConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * AI厂商HTTP客户端池
+ * <p>
+ * 每个模型配置(按ID + 目标主机区分)共享一个HttpClient, 复用其内部的长连接池,
+ * 并优先协商HTTP/2以在单连接上多路复用并发请求, 避免每次调用重复TLS握手
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class AIHttpClientPool {
+
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * 所有客户端共享的回调线程池, 仅用于处理响应, 不会阻塞等待网络
+     */
+    private final ExecutorService callbackExecutor =
+            Executors.newCachedThreadPool(ThreadUtil.newNamedThreadFactory("ai-http-", true));
+
+    @Value("${app.ai.http.connect-timeout:5000}")
+    private int connectTimeout;
+
+    /**
+     * 获取模型配置对应的HTTP客户端
+     *
+     * @param config 模型配置
+     * @return HTTP客户端
+     */
+    public HttpClient getClient(ModelConfig config) {
+        String key = clientKey(config);
+        HttpClient client = clients.get(key);
+        if (client != null) {
+            return client;
+        }
+        client = clients.computeIfAbsent(key, k -> {
+            log.info("创建AI HTTP客户端: {}", k);
+            return HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(Duration.ofMillis(connectTimeout))
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .executor(callbackExecutor)
+                    .build();
+        });
+
+        // 同一配置的API地址变更后, 移除旧主机的客户端; 映射函数内不能修改其他映射, 放在计算之后进行
+        String idPrefix = config.getId() + "@";
+        clients.keySet().removeIf(existing -> existing.startsWith(idPrefix) && !existing.equals(key));
+        return client;
+    }
+
+    /**
+     * 移除模型配置对应的客户端
+     *
+     * @param configId 模型配置ID
+     */
+    public void evict(Long configId) {
+        String idPrefix = configId + "@";
+        clients.keySet().removeIf(key -> key.startsWith(idPrefix));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.clear();
+        callbackExecutor.shutdownNow();
+    }
+
+    private String clientKey(ModelConfig config) {
+        URI uri = URI.create(config.getApiUrl());
+        return config.getId() + "@" + uri.getScheme() + "://" + uri.getAuthority();
+    }
+}
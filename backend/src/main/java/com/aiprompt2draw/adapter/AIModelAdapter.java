@@ -2,6 +2,10 @@ package com.aiprompt2draw.adapter;
 
 import com.aiprompt2draw.dto.AIResponse;
 import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.enums.GenerationMode;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * AI模型适配器接口
@@ -12,13 +16,49 @@ import com.aiprompt2draw.entity.ModelConfig;
 public interface AIModelAdapter {
 
     /**
-     * 生成流程图XML
+     * 生成流程图
      *
      * @param prompt 用户输入
      * @param config 模型配置
+     * @param mode   生成模式, 决定模型输出XML还是图描述
+     * @return AI响应结果
+     */
+    AIResponse generateFlowchart(String prompt, ModelConfig config, GenerationMode mode);
+
+    /**
+     * 异步生成流程图
+     * <p>
+     * 默认实现在公共线程池中执行同步调用, 实现类应覆盖为非阻塞调用以免占用工作线程
+     *
+     * @param prompt   用户输入
+     * @param config   模型配置
+     * @param mode     生成模式
+     * @param deadline 请求截止时间(毫秒时间戳), 实现类应保证单次调用不超过该时间
      * @return AI响应结果
      */
-    AIResponse generateFlowchart(String prompt, ModelConfig config);
+    default CompletableFuture<AIResponse> generateFlowchartAsync(String prompt, ModelConfig config,
+                                                                 GenerationMode mode, long deadline) {
+        return CompletableFuture.supplyAsync(() -> generateFlowchart(prompt, config, mode));
+    }
+
+    /**
+     * 流式生成流程图
+     * <p>
+     * 默认实现退化为非流式调用, 在结束时一次性推送完整内容
+     *
+     * @param prompt   用户输入
+     * @param config   模型配置
+     * @param mode     生成模式
+     * @param deadline 请求截止时间(毫秒时间戳), 实现类应保证读取响应体不超过该时间
+     * @param onChunk  增量内容回调
+     * @return AI响应结果(包含完整内容与Token统计)
+     */
+    default AIResponse generateFlowchartStream(String prompt, ModelConfig config, GenerationMode mode,
+                                               long deadline, Consumer<String> onChunk) {
+        AIResponse response = generateFlowchart(prompt, config, mode);
+        onChunk.accept(response.getXmlContent());
+        return response;
+    }
 
     /**
      * 获取模型类型
@@ -0,0 +1,193 @@
+package com.aiprompt2draw.adapter;
+
+import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.exception.BulkheadFullException;
+import com.aiprompt2draw.utils.Bulkhead;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * AI厂商舱壁注册表
+ * <p>
+ * 按模型配置ID限制对厂商的并发调用数, 避免单个调用方的突发流量占满某个厂商的速率上限而拖垮其他请求。
+ * 并发上限取模型配置的maxConcurrency, 未配置时使用全局默认值;
+ * 排队数、进行中调用数与等待耗时通过aiprompt2draw.bulkhead.*指标暴露
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class BulkheadRegistry {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private final Map<Long, List<Meter>> meters = new ConcurrentHashMap<>();
+
+    @Value("${app.ai.bulkhead.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ai.bulkhead.max-concurrent:20}")
+    private int defaultMaxConcurrent;
+
+    @Value("${app.ai.bulkhead.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${app.ai.bulkhead.max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    public BulkheadRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 申请调用名额
+     * <p>
+     * 队列已满或超过等待时限时, 返回的Future以{@link BulkheadFullException}失败;
+     * 取消返回的Future即放弃排队
+     *
+     * @param config 模型配置
+     * @return 获得名额时完成的Future, 未开启舱壁时Permit为null
+     */
+    public CompletableFuture<Bulkhead.Permit> acquire(ModelConfig config) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Long configId = config.getId();
+        Bulkhead bulkhead = get(config);
+        CompletableFuture<Bulkhead.Permit> waiter = bulkhead.acquire();
+        if (waiter == null) {
+            log.warn("模型配置并发已满且队列已满: configId={}, maxConcurrent={}",
+                    configId, bulkhead.getMaxConcurrent());
+            rejected(configId, "queue_full");
+            return CompletableFuture.failedFuture(new BulkheadFullException(retryAfterSeconds()));
+        }
+        if (waiter.isDone()) {
+            waitTimer(configId).record(0, TimeUnit.MILLISECONDS);
+            return waiter;
+        }
+
+        long queuedAt = System.nanoTime();
+        CompletableFuture<Bulkhead.Permit> result = waiter.orTimeout(maxWaitMs, TimeUnit.MILLISECONDS)
+                .handle((permit, error) -> {
+                    waitTimer(configId).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                    if (error == null) {
+                        return permit;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        log.warn("等待模型配置并发名额超时: configId={}, wait={}ms", configId, maxWaitMs);
+                        rejected(configId, "timeout");
+                        throw new BulkheadFullException(retryAfterSeconds());
+                    }
+                    throw cause instanceof RuntimeException
+                            ? (RuntimeException) cause : new CompletionException(cause);
+                });
+
+        // 调用方放弃排队时移出队列; 若名额恰好已移交, 则立即归还
+        result.whenComplete((permit, error) -> {
+            if (result.isCancelled() && !waiter.cancel(true)) {
+                waiter.thenAccept(Bulkhead.Permit::release);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取舱壁状态
+     *
+     * @param configId 模型配置ID
+     * @return 进行中调用数与排队数, 尚未创建时返回null
+     */
+    public Map<String, Object> getSnapshot(Long configId) {
+        Bulkhead bulkhead = bulkheads.get(configId);
+        if (bulkhead == null) {
+            return null;
+        }
+        return Map.of("maxConcurrent", bulkhead.getMaxConcurrent(),
+                "active", bulkhead.getActive(),
+                "queueDepth", bulkhead.getQueueDepth());
+    }
+
+    /**
+     * 移除配置对应的舱壁(并发上限变更或配置删除后重建)
+     * <p>
+     * 进行中的调用仍向原舱壁归还名额
+     *
+     * @param configId 模型配置ID
+     */
+    public void evict(Long configId) {
+        bulkheads.remove(configId);
+        List<Meter> removed = meters.remove(configId);
+        if (removed != null) {
+            removed.forEach(meterRegistry::remove);
+        }
+    }
+
+    private Bulkhead get(ModelConfig config) {
+        Bulkhead bulkhead = bulkheads.get(config.getId());
+        if (bulkhead != null) {
+            return bulkhead;
+        }
+        return bulkheads.computeIfAbsent(config.getId(), id -> {
+            int maxConcurrent = config.getMaxConcurrency() != null && config.getMaxConcurrency() > 0
+                    ? config.getMaxConcurrency() : defaultMaxConcurrent;
+            Bulkhead created = new Bulkhead(maxConcurrent, queueCapacity);
+
+            Tags tags = Tags.of("configId", String.valueOf(id));
+            meters.put(id, List.of(
+                    Gauge.builder("aiprompt2draw.bulkhead.queue.depth", created, Bulkhead::getQueueDepth)
+                            .description("等待并发名额的调用数")
+                            .tags(tags)
+                            .register(meterRegistry),
+                    Gauge.builder("aiprompt2draw.bulkhead.active", created, Bulkhead::getActive)
+                            .description("进行中的厂商调用数")
+                            .tags(tags)
+                            .register(meterRegistry),
+                    waitTimer(id)));
+            return created;
+        });
+    }
+
+    private Timer waitTimer(Long configId) {
+        return Timer.builder("aiprompt2draw.bulkhead.wait")
+                .description("等待并发名额的耗时")
+                .tag("configId", String.valueOf(configId))
+                .register(meterRegistry);
+    }
+
+    private void rejected(Long configId, String reason) {
+        Counter.builder("aiprompt2draw.bulkhead.rejected")
+                .description("未能获得并发名额而被拒绝的调用数")
+                .tag("configId", String.valueOf(configId))
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 建议的重试等待时间: 至少为一个等待时限
+     */
+    private long retryAfterSeconds() {
+        return Math.max(1, (maxWaitMs + 999) / 1000);
+    }
+}
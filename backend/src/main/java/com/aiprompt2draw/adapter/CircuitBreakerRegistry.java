@@ -0,0 +1,191 @@
+package com.aiprompt2draw.adapter;
+
+import com.aiprompt2draw.utils.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AI厂商熔断器注册表
+ * <p>
+ * 按模型配置ID维护熔断器, 厂商接口持续失败或变慢时快速失败, 避免每个请求都等满超时。
+ * 状态通过指标aiprompt2draw.circuit.state(0-CLOSED 1-OPEN 2-HALF_OPEN)暴露
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class CircuitBreakerRegistry {
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Long, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final Map<Long, Gauge> gauges = new ConcurrentHashMap<>();
+
+    @Value("${app.ai.circuit-breaker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ai.circuit-breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${app.ai.circuit-breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${app.ai.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${app.ai.circuit-breaker.slow-call-rate-threshold:0.8}")
+    private double slowCallRateThreshold;
+
+    @Value("${app.ai.circuit-breaker.slow-call-duration-ms:20000}")
+    private long slowCallDurationMs;
+
+    @Value("${app.ai.circuit-breaker.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${app.ai.circuit-breaker.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    public CircuitBreakerRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * 申请调用许可
+     *
+     * @param configId 模型配置ID
+     * @return 是否允许调用, 未开启熔断时始终允许
+     */
+    public boolean tryAcquire(Long configId) {
+        if (!enabled) {
+            return true;
+        }
+        if (get(configId).tryAcquire()) {
+            return true;
+        }
+        Counter.builder("aiprompt2draw.circuit.rejected")
+                .description("熔断器拒绝的调用次数")
+                .tag("configId", String.valueOf(configId))
+                .register(meterRegistry)
+                .increment();
+        return false;
+    }
+
+    /**
+     * 判断配置当前是否可调用(不占用许可)
+     *
+     * @param configId 模型配置ID
+     * @return 是否可调用
+     */
+    public boolean isCallPermitted(Long configId) {
+        if (!enabled) {
+            return true;
+        }
+        CircuitBreaker breaker = breakers.get(configId);
+        return breaker == null || breaker.isCallPermitted();
+    }
+
+    /**
+     * 记录成功调用
+     */
+    public void onSuccess(Long configId, long durationMs) {
+        if (enabled) {
+            get(configId).onSuccess(durationMs);
+        }
+    }
+
+    /**
+     * 记录失败调用
+     */
+    public void onFailure(Long configId, long durationMs) {
+        if (enabled) {
+            get(configId).onFailure(durationMs);
+        }
+    }
+
+    /**
+     * 归还被取消调用的许可
+     */
+    public void release(Long configId) {
+        if (enabled) {
+            get(configId).release();
+        }
+    }
+
+    /**
+     * 获取熔断器状态
+     *
+     * @param configId 模型配置ID
+     * @return 状态名称, 未开启熔断时返回null
+     */
+    public String getState(Long configId) {
+        if (!enabled) {
+            return null;
+        }
+        CircuitBreaker breaker = breakers.get(configId);
+        return (breaker != null ? breaker.getState() : CircuitBreaker.State.CLOSED).name();
+    }
+
+    /**
+     * 获取熔断剩余时间
+     *
+     * @param configId 模型配置ID
+     * @return 剩余毫秒数, 未熔断时返回0
+     */
+    public long getRemainingOpenMillis(Long configId) {
+        CircuitBreaker breaker = breakers.get(configId);
+        return breaker != null ? breaker.getRemainingOpenMillis() : 0;
+    }
+
+    /**
+     * 移除配置对应的熔断器(配置修改或删除后重新统计)
+     *
+     * @param configId 模型配置ID
+     */
+    public void evict(Long configId) {
+        breakers.remove(configId);
+        Gauge gauge = gauges.remove(configId);
+        if (gauge != null) {
+            meterRegistry.remove(gauge);
+        }
+    }
+
+    private CircuitBreaker get(Long configId) {
+        CircuitBreaker breaker = breakers.get(configId);
+        if (breaker != null) {
+            return breaker;
+        }
+        return breakers.computeIfAbsent(configId, id -> {
+            CircuitBreaker created = new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold,
+                    slowCallRateThreshold, slowCallDurationMs, openDurationMs, halfOpenCalls,
+                    (from, to) -> onTransition(id, from, to));
+            gauges.put(id, Gauge.builder("aiprompt2draw.circuit.state", created, b -> b.getState().ordinal())
+                    .description("模型配置熔断器状态: 0-CLOSED 1-OPEN 2-HALF_OPEN")
+                    .tag("configId", String.valueOf(id))
+                    .register(meterRegistry));
+            return created;
+        });
+    }
+
+    private void onTransition(Long configId, CircuitBreaker.State from, CircuitBreaker.State to) {
+        if (to == CircuitBreaker.State.OPEN) {
+            log.warn("模型配置熔断器打开: configId={}, from={}", configId, from);
+        } else {
+            log.info("模型配置熔断器状态变更: configId={}, {} -> {}", configId, from, to);
+        }
+        Counter.builder("aiprompt2draw.circuit.transitions")
+                .description("熔断器状态变更次数")
+                .tag("configId", String.valueOf(configId))
+                .tag("to", to.name())
+                .register(meterRegistry)
+                .increment();
+    }
+}
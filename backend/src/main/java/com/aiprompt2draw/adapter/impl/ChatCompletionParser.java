@@ -0,0 +1,270 @@
+package com.aiprompt2draw.adapter.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * OpenAI兼容接口响应的流式解析器
+ * <p>
+ * 直接订阅HTTP响应体, 每收到一段字节即交给Jackson非阻塞解析器推进, 只提取
+ * choices[0].message.content(流式事件为delta.content)与usage中的Token数, 其余字段跳过不建对象;
+ * 响应体不会整体转为字符串, 也不构建JSON树, 内容字符串是解析过程中唯一的完整副本
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+final class ChatCompletionParser implements HttpResponse.BodySubscriber<ChatCompletionParser> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 向解析器输入的单次最大字节数, 网络缓冲区按此大小分段复制
+     */
+    private static final int FEED_CHUNK = 8 * 1024;
+
+    private final String container;
+
+    private final CompletableFuture<ChatCompletionParser> body = new CompletableFuture<>();
+
+    private JsonParser parser;
+
+    private byte[] chunk;
+
+    private Flow.Subscription subscription;
+
+    private boolean choiceSeen;
+
+    private boolean usageSeen;
+
+    private String content;
+
+    private Integer promptTokens;
+
+    private Integer completionTokens;
+
+    private Integer totalTokens;
+
+    private ChatCompletionParser(String container) {
+        this.container = container;
+    }
+
+    /**
+     * 创建非流式响应体的解析器
+     *
+     * @return 解析器(作为BodySubscriber使用, 完成后返回自身)
+     */
+    static ChatCompletionParser forCompletion() {
+        return new ChatCompletionParser("message");
+    }
+
+    /**
+     * 解析单个流式事件(SSE的data内容)
+     *
+     * @param data 事件JSON
+     * @return 解析结果
+     * @throws IOException JSON格式错误
+     */
+    static ChatCompletionParser parseChunk(String data) throws IOException {
+        ChatCompletionParser result = new ChatCompletionParser("delta");
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                result.accept(token, parser);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 响应中是否包含choices[0]
+     */
+    boolean hasChoice() {
+        return choiceSeen;
+    }
+
+    String getContent() {
+        return content;
+    }
+
+    /**
+     * 输入Token数, 响应不含usage时为0
+     */
+    Integer getPromptTokens() {
+        return usageSeen ? promptTokens : Integer.valueOf(0);
+    }
+
+    Integer getCompletionTokens() {
+        return usageSeen ? completionTokens : Integer.valueOf(0);
+    }
+
+    Integer getTotalTokens() {
+        return usageSeen ? totalTokens : Integer.valueOf(0);
+    }
+
+    /**
+     * 是否包含usage
+     */
+    boolean hasUsage() {
+        return usageSeen;
+    }
+
+    @Override
+    public CompletionStage<ChatCompletionParser> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        try {
+            parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            subscription.cancel();
+            body.completeExceptionally(e);
+            return;
+        }
+        chunk = new byte[FEED_CHUNK];
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        if (body.isDone()) {
+            return;
+        }
+        try {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    int length = Math.min(buffer.remaining(), chunk.length);
+                    buffer.get(chunk, 0, length);
+                    ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(chunk, 0, length);
+                    drain();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 格式错误时不再读取剩余内容
+            subscription.cancel();
+            close();
+            body.completeExceptionally(e);
+            return;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        close();
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (body.isDone()) {
+            return;
+        }
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+            drain();
+            if (parser.getParsingContext().getParent() != null) {
+                throw new JsonParseException(parser, "响应体不完整");
+            }
+            body.complete(this);
+        } catch (IOException | RuntimeException e) {
+            body.completeExceptionally(e);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 处理已输入字节中的全部完整Token, 字节耗尽时返回等待下一段
+     */
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            accept(token, parser);
+        }
+    }
+
+    private void close() {
+        try {
+            if (parser != null) {
+                parser.close();
+            }
+        } catch (IOException ignored) {
+            // 无底层资源
+        }
+        chunk = null;
+    }
+
+    /**
+     * 按当前路径提取所需字段
+     */
+    private void accept(JsonToken token, JsonParser parser) throws IOException {
+        JsonStreamContext context = parser.getParsingContext();
+        switch (token) {
+            case START_OBJECT:
+                // 此时上下文已是新对象: choices[0]或usage
+                JsonStreamContext parent = context.getParent();
+                if (parent.inArray() && parent.getCurrentIndex() == 0
+                        && isRootField(parent.getParent(), "choices")) {
+                    choiceSeen = true;
+                } else if (isRootField(parent, "usage")) {
+                    usageSeen = true;
+                }
+                break;
+            case VALUE_STRING:
+                if ("content".equals(context.getCurrentName()) && isContentObject(context)) {
+                    content = parser.getText();
+                }
+                break;
+            case VALUE_NUMBER_INT:
+                if (isRootField(context.getParent(), "usage")) {
+                    String name = context.getCurrentName();
+                    if ("prompt_tokens".equals(name)) {
+                        promptTokens = parser.getIntValue();
+                    } else if ("completion_tokens".equals(name)) {
+                        completionTokens = parser.getIntValue();
+                    } else if ("total_tokens".equals(name)) {
+                        totalTokens = parser.getIntValue();
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * content所在对象是否为choices[0].message(或delta)
+     */
+    private boolean isContentObject(JsonStreamContext context) {
+        JsonStreamContext choice = context.getParent();
+        if (choice == null || !choice.inObject() || !container.equals(choice.getCurrentName())) {
+            return false;
+        }
+        JsonStreamContext choices = choice.getParent();
+        return choices != null && choices.inArray() && choices.getCurrentIndex() == 0
+                && isRootField(choices.getParent(), "choices");
+    }
+
+    /**
+     * 上下文是否为根对象且当前字段为name
+     */
+    private static boolean isRootField(JsonStreamContext context, String name) {
+        return context != null && context.inObject() && name.equals(context.getCurrentName())
+                && context.getParent() != null && context.getParent().inRoot();
+    }
+}
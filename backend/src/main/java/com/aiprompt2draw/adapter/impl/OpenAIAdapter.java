@@ -1,18 +1,45 @@
 package com.aiprompt2draw.adapter.impl;
 
-import cn.hutool.http.HttpRequest;
-import cn.hutool.http.HttpResponse;
-import cn.hutool.json.JSONObject;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONUtil;
+import com.aiprompt2draw.adapter.AIHttpClientPool;
 import com.aiprompt2draw.adapter.AIModelAdapter;
 import com.aiprompt2draw.constant.FlowchartPromptTemplate;
 import com.aiprompt2draw.dto.AIResponse;
 import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.enums.GenerationMode;
 import com.aiprompt2draw.exception.BusinessException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 /**
  * OpenAI模型适配器
  *
@@ -21,128 +48,398 @@ import org.springframework.stereotype.Component;
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class OpenAIAdapter implements AIModelAdapter {
 
+    /**
+     * 错误响应体记录到日志的最大长度
+     */
+    private static final int MAX_LOGGED_BODY = 2000;
+
+    private final AIHttpClientPool httpClientPool;
+
     @Value("${app.ai.request-timeout:30000}")
     private int requestTimeout;
 
+    /**
+     * 请求体模板, 按模型配置ID + 生成模式 + 是否流式缓存
+     */
+    private final Map<String, RequestTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 流式响应体读取的截止定时器, 到期时关闭行流以唤醒阻塞中的读取
+     */
+    private final ScheduledExecutorService streamDeadlineTimer =
+            Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("stream-deadline-", true));
+
     @Override
-    public AIResponse generateFlowchart(String prompt, ModelConfig config) {
+    public AIResponse generateFlowchart(String prompt, ModelConfig config, GenerationMode mode) {
+        try {
+            return generateFlowchartAsync(prompt, config, mode, System.currentTimeMillis() + requestTimeout).join();
+        } catch (CompletionException e) {
+            throw toBusinessException(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<AIResponse> generateFlowchartAsync(String prompt, ModelConfig config,
+                                                                GenerationMode mode, long deadline) {
         long startTime = System.currentTimeMillis();
 
-        try {
-            // 构建请求体
-            JSONObject requestBody = buildRequestBody(prompt, config);
-
-            // 发送请求
-            HttpResponse response = HttpRequest.post(config.getApiUrl())
-                    .header("Authorization", "Bearer " + config.getApiKey())
-                    .header("Content-Type", "application/json")
-                    .body(requestBody.toString())
-                    .timeout(requestTimeout)
-                    .execute();
-
-            long responseTime = System.currentTimeMillis() - startTime;
-
-            // 检查响应状态
-            if (!response.isOk()) {
-                log.error("OpenAI API调用失败: status={}, body={}", response.getStatus(), response.body());
-                throw new BusinessException("AI服务调用失败: " + response.getStatus());
+        // 单次调用不超过请求剩余时间
+        long timeout = Math.min(requestTimeout, deadline - startTime);
+        if (timeout <= 0) {
+            return CompletableFuture.failedFuture(deadlineExceeded(config));
+        }
+
+        // 构建请求
+        HttpRequest request = buildHttpRequest(config, buildRequestBody(prompt, config, mode, false), timeout);
+
+        // 非阻塞发送, 等待期间不占用调用线程; 响应体边接收边解析, 不整体转为字符串
+        CompletableFuture<HttpResponse<ChatCompletionParser>> call = httpClientPool.getClient(config)
+                .sendAsync(request, this::completionSubscriber);
+
+        CompletableFuture<AIResponse> result = call
+                .orTimeout(timeout, TimeUnit.MILLISECONDS)
+                .handle((response, error) -> {
+                    if (error != null) {
+                        throw toBusinessException(error);
+                    }
+                    return parseResponse(response.body(), config, startTime);
+                });
+
+        // 调用方取消时中止底层HTTP交换
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
             }
+        });
 
-            // 解析响应
-            JSONObject responseBody = JSONUtil.parseObj(response.body());
+        return result;
+    }
 
-            // 提取内容
-            String xmlContent = extractContent(responseBody);
+    @Override
+    public AIResponse generateFlowchartStream(String prompt, ModelConfig config, GenerationMode mode,
+                                              long deadline, Consumer<String> onChunk) {
+        long startTime = System.currentTimeMillis();
 
-            // 提取Token使用情况
-            JSONObject usage = responseBody.getJSONObject("usage");
-            Integer promptTokens = usage != null ? usage.getInt("prompt_tokens") : 0;
-            Integer completionTokens = usage != null ? usage.getInt("completion_tokens") : 0;
-            Integer totalTokens = usage != null ? usage.getInt("total_tokens") : 0;
+        // 构建流式请求体, 要求在最后一个事件中返回usage
+        byte[] requestBody = buildRequestBody(prompt, config, mode, true);
 
-            // 构建响应
-            AIResponse aiResponse = new AIResponse();
-            aiResponse.setXmlContent(xmlContent);
-            aiResponse.setPromptTokens(promptTokens);
-            aiResponse.setCompletionTokens(completionTokens);
-            aiResponse.setTotalTokens(totalTokens);
-            aiResponse.setResponseTime(responseTime);
+        long remaining = deadline - startTime;
+        if (remaining <= 0) {
+            throw deadlineExceeded(config);
+        }
 
-            log.info("OpenAI调用成功: model={}, tokens={}, time={}ms",
-                    config.getModelName(), totalTokens, responseTime);
+        AtomicBoolean expired = new AtomicBoolean();
+        // 回调抛出的UncheckedIOException表示调用方已断开, 与上游读取失败区分
+        AtomicBoolean aborted = new AtomicBoolean();
+        Consumer<String> sink = chunk -> {
+            try {
+                onChunk.accept(chunk);
+            } catch (UncheckedIOException e) {
+                aborted.set(true);
+                throw e;
+            }
+        };
+        try {
+            // 请求超时只约束等待响应头的时间
+            HttpResponse<Stream<String>> response = httpClientPool.getClient(config)
+                    .send(buildHttpRequest(config, requestBody, Math.min(requestTimeout, remaining)),
+                            HttpResponse.BodyHandlers.ofLines());
 
-            return aiResponse;
+            // 关闭行流即释放连接, 回调抛出异常时也会中止上游读取
+            try (Stream<String> lines = response.body()) {
+                // 响应体读取同样受请求时限约束, 到期时关闭行流, 阻塞中的读取随即抛出异常
+                ScheduledFuture<?> watchdog = streamDeadlineTimer.schedule(() -> {
+                    expired.set(true);
+                    lines.close();
+                }, Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                try {
+                    return readStream(response.statusCode(), lines, config, startTime, expired, sink);
+                } finally {
+                    watchdog.cancel(false);
+                }
+            }
 
         } catch (BusinessException e) {
             throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("AI服务调用被中断");
+        } catch (HttpTimeoutException e) {
+            throw deadlineExceeded(config);
+        } catch (UncheckedIOException e) {
+            if (aborted.get()) {
+                // 调用方中止不是厂商错误, 原样抛出
+                log.info("调用方已断开, 中止OpenAI流式读取: model={}", config.getModelName());
+                throw e;
+            }
+            if (expired.get()) {
+                throw deadlineExceeded(config);
+            }
+            log.error("OpenAI流式调用异常", e);
+            throw new BusinessException("AI服务调用异常: " + e.getMessage());
         } catch (Exception e) {
-            log.error("OpenAI调用异常", e);
+            if (expired.get()) {
+                throw deadlineExceeded(config);
+            }
+            log.error("OpenAI流式调用异常", e);
             throw new BusinessException("AI服务调用异常: " + e.getMessage());
         }
     }
 
+    /**
+     * 逐行读取流式响应体并汇总内容与Token统计
+     */
+    private AIResponse readStream(int statusCode, Stream<String> lines, ModelConfig config, long startTime,
+                                  AtomicBoolean expired, Consumer<String> onChunk) throws IOException {
+        if (statusCode != 200) {
+            log.error("OpenAI流式API调用失败: status={}, body={}", statusCode,
+                    StrUtil.maxLength(lines.collect(Collectors.joining("\n")), MAX_LOGGED_BODY));
+            throw new BusinessException("AI服务调用失败: " + statusCode);
+        }
+
+        StringBuilder content = new StringBuilder();
+        ChatCompletionParser usage = null;
+
+        // 逐行读取SSE事件: data: {...}
+        Iterator<String> iterator = lines.iterator();
+        while (iterator.hasNext()) {
+            String line = iterator.next();
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+            String data = line.substring(5).trim();
+            if ("[DONE]".equals(data)) {
+                break;
+            }
+
+            ChatCompletionParser event = ChatCompletionParser.parseChunk(data);
+            String piece = event.getContent();
+            if (piece != null && !piece.isEmpty()) {
+                content.append(piece);
+                onChunk.accept(piece);
+            }
+            if (event.hasUsage()) {
+                usage = event;
+            }
+        }
+        if (expired.get()) {
+            // 截止时关闭行流可能表现为读取结束, 内容不完整
+            throw deadlineExceeded(config);
+        }
+
+        long responseTime = System.currentTimeMillis() - startTime;
+
+        AIResponse aiResponse = new AIResponse();
+        aiResponse.setXmlContent(cleanContent(content.toString()));
+        aiResponse.setPromptTokens(usage != null ? usage.getPromptTokens() : 0);
+        aiResponse.setCompletionTokens(usage != null ? usage.getCompletionTokens() : 0);
+        aiResponse.setTotalTokens(usage != null ? usage.getTotalTokens() : 0);
+        aiResponse.setResponseTime(responseTime);
+
+        log.info("OpenAI流式调用成功: model={}, tokens={}, time={}ms",
+                config.getModelName(), aiResponse.getTotalTokens(), responseTime);
+
+        return aiResponse;
+    }
+
     @Override
     public String getModelType() {
         return "openai";
     }
 
+    /**
+     * 构建HTTP请求, 指定等待响应头的超时时间
+     */
+    private HttpRequest buildHttpRequest(ModelConfig config, byte[] requestBody, long timeout) {
+        return HttpRequest.newBuilder(URI.create(config.getApiUrl()))
+                .header("Authorization", "Bearer " + config.getApiKey())
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMillis(timeout))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(requestBody))
+                .build();
+    }
+
     /**
      * 构建请求体
+     * <p>
+     * 除用户输入外的部分按模型配置预先编码, 每次请求只转义用户输入并拼接字节
      */
-    private JSONObject buildRequestBody(String prompt, ModelConfig config) {
-        JSONObject requestBody = new JSONObject();
-        requestBody.set("model", config.getModelName());
+    private byte[] buildRequestBody(String prompt, ModelConfig config, GenerationMode mode, boolean stream) {
+        RequestTemplate template = getTemplate(config, mode, stream);
+        byte[] input = JSONUtil.quote(prompt, false).getBytes(StandardCharsets.UTF_8);
 
-        // 构建消息
-        JSONObject systemMessage = new JSONObject();
-        systemMessage.set("role", "system");
-        systemMessage.set("content", FlowchartPromptTemplate.SYSTEM_PROMPT);
+        byte[] body = new byte[template.prefix.length + input.length + template.suffix.length];
+        System.arraycopy(template.prefix, 0, body, 0, template.prefix.length);
+        System.arraycopy(input, 0, body, template.prefix.length, input.length);
+        System.arraycopy(template.suffix, 0, body, template.prefix.length + input.length, template.suffix.length);
+        return body;
+    }
 
-        JSONObject userMessage = new JSONObject();
-        userMessage.set("role", "user");
-        userMessage.set("content", FlowchartPromptTemplate.buildUserPrompt(prompt));
+    /**
+     * 获取模型配置对应的请求体模板, 配置参数变更后重新编码
+     */
+    private RequestTemplate getTemplate(ModelConfig config, GenerationMode mode, boolean stream) {
+        String fingerprint = config.getModelName() + "|" + config.getMaxTokens() + "|" + config.getTemperature();
+        String key = config.getId() + ":" + mode.getCode() + (stream ? ":stream" : "");
 
-        requestBody.set("messages", new Object[]{systemMessage, userMessage});
-        requestBody.set("max_tokens", config.getMaxTokens());
-        requestBody.set("temperature", config.getTemperature());
+        RequestTemplate template = templates.get(key);
+        if (template == null || !template.fingerprint.equals(fingerprint)) {
+            template = RequestTemplate.create(config, fingerprint, mode, stream);
+            templates.put(key, template);
+        }
+        return template;
+    }
 
-        return requestBody;
+    /**
+     * 选择响应体的处理方式: 成功响应流式解析, 错误响应读取为字符串后记录日志并抛出
+     */
+    private HttpResponse.BodySubscriber<ChatCompletionParser> completionSubscriber(
+            HttpResponse.ResponseInfo responseInfo) {
+        if (responseInfo.statusCode() == 200) {
+            return ChatCompletionParser.forCompletion();
+        }
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8),
+                body -> {
+                    log.error("OpenAI API调用失败: status={}, body={}",
+                            responseInfo.statusCode(), StrUtil.maxLength(body, MAX_LOGGED_BODY));
+                    throw new BusinessException("AI服务调用失败: " + responseInfo.statusCode());
+                });
     }
 
     /**
-     * 提取响应内容
+     * 解析响应
      */
-    private String extractContent(JSONObject responseBody) {
-        try {
-            String content = responseBody
-                    .getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getStr("content");
-
-            if (content == null || content.isBlank()) {
-                throw new BusinessException("AI返回内容为空");
-            }
+    private AIResponse parseResponse(ChatCompletionParser completion, ModelConfig config, long startTime) {
+        long responseTime = System.currentTimeMillis() - startTime;
 
-            // 清理内容(移除可能的markdown标记)
-            content = content.trim();
-            if (content.startsWith("```xml")) {
-                content = content.substring(6);
+        // 提取内容
+        if (!completion.hasChoice()) {
+            log.error("解析OpenAI响应失败: 缺少choices");
+            throw new BusinessException("AI响应解析失败");
+        }
+        String xmlContent = cleanContent(completion.getContent());
+
+        // 提取Token使用情况
+        Integer promptTokens = completion.getPromptTokens();
+        Integer completionTokens = completion.getCompletionTokens();
+        Integer totalTokens = completion.getTotalTokens();
+
+        // 构建响应
+        AIResponse aiResponse = new AIResponse();
+        aiResponse.setXmlContent(xmlContent);
+        aiResponse.setPromptTokens(promptTokens);
+        aiResponse.setCompletionTokens(completionTokens);
+        aiResponse.setTotalTokens(totalTokens);
+        aiResponse.setResponseTime(responseTime);
+
+        log.info("OpenAI调用成功: model={}, tokens={}, time={}ms",
+                config.getModelName(), totalTokens, responseTime);
+
+        return aiResponse;
+    }
+
+    /**
+     * 将异步调用中的异常统一转换为业务异常
+     */
+    private BusinessException toBusinessException(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof BusinessException) {
+            return (BusinessException) cause;
+        }
+        if (cause instanceof JsonProcessingException) {
+            log.error("解析OpenAI响应失败: {}", cause.getMessage());
+            return new BusinessException("AI响应解析失败");
+        }
+        if (cause instanceof TimeoutException || cause instanceof HttpTimeoutException) {
+            log.error("OpenAI调用超时: {}ms", requestTimeout);
+            return new BusinessException(504, "AI服务调用超时");
+        }
+        log.error("OpenAI调用异常", cause);
+        return new BusinessException("AI服务调用异常: " + cause.getMessage());
+    }
+
+    /**
+     * 超过请求时限的异常
+     */
+    private BusinessException deadlineExceeded(ModelConfig config) {
+        log.error("OpenAI调用超过请求时限: model={}", config.getModelName());
+        return new BusinessException(504, "AI服务调用超时");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streamDeadlineTimer.shutdownNow();
+    }
+
+    /**
+     * 清理内容(移除可能的markdown标记)
+     */
+    private String cleanContent(String content) {
+        if (content == null || content.isBlank()) {
+            throw new BusinessException("AI返回内容为空");
+        }
+
+        content = content.trim();
+        if (content.startsWith("```")) {
+            // 去掉代码块起始行(可能带有xml等语言标记)
+            int lineEnd = content.indexOf('\n');
+            content = lineEnd > 0 ? content.substring(lineEnd + 1) : content.substring(3);
+        }
+        if (content.endsWith("```")) {
+            content = content.substring(0, content.length() - 3);
+        }
+
+        return content.trim();
+    }
+
+    /**
+     * 预编码的请求体模板
+     * <p>
+     * 字段顺序固定为model、messages(system在前)、参数, 使每次请求的前缀字节完全一致,
+     * 便于厂商侧的提示词前缀缓存命中; 用户输入拼接在prefix与suffix之间
+     */
+    private static final class RequestTemplate {
+
+        private final String fingerprint;
+        private final byte[] prefix;
+        private final byte[] suffix;
+
+        private RequestTemplate(String fingerprint, byte[] prefix, byte[] suffix) {
+            this.fingerprint = fingerprint;
+            this.prefix = prefix;
+            this.suffix = suffix;
+        }
+
+        private static RequestTemplate create(ModelConfig config, String fingerprint, GenerationMode mode,
+                                              boolean stream) {
+            String prefix = "{\"model\":" + JSONUtil.quote(config.getModelName())
+                    + ",\"messages\":[{\"role\":\"system\",\"content\":"
+                    + JSONUtil.quote(FlowchartPromptTemplate.systemPrompt(mode))
+                    + "},{\"role\":\"user\",\"content\":\""
+                    + JSONUtil.quote(FlowchartPromptTemplate.userPromptPrefix(mode), false);
+
+            StringBuilder suffix = new StringBuilder()
+                    .append(JSONUtil.quote(FlowchartPromptTemplate.userPromptSuffix(mode), false))
+                    .append("\"}]");
+            if (config.getMaxTokens() != null) {
+                suffix.append(",\"max_tokens\":").append(config.getMaxTokens());
             }
-            if (content.startsWith("```")) {
-                content = content.substring(3);
+            if (config.getTemperature() != null) {
+                suffix.append(",\"temperature\":").append(config.getTemperature().toPlainString());
             }
-            if (content.endsWith("```")) {
-                content = content.substring(0, content.length() - 3);
+            if (stream) {
+                suffix.append(",\"stream\":true,\"stream_options\":{\"include_usage\":true}");
             }
+            suffix.append('}');
 
-            return content.trim();
-
-        } catch (Exception e) {
-            log.error("解析OpenAI响应失败: {}", responseBody);
-            throw new BusinessException("AI响应解析失败");
+            return new RequestTemplate(fingerprint,
+                    prefix.getBytes(StandardCharsets.UTF_8), suffix.toString().getBytes(StandardCharsets.UTF_8));
         }
     }
 }
@@ -0,0 +1,81 @@
+package com.aiprompt2draw.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 异步执行器配置
+ * <p>
+ * 生成类任务(如SSE流式生成)使用独立线程池, 避免与@Async的记录写入等任务互相挤占
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Value("${app.ai.executor.core-size:16}")
+    private int coreSize;
+
+    @Value("${app.ai.executor.max-size:64}")
+    private int maxSize;
+
+    @Value("${app.ai.executor.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${app.job.executor-size:2}")
+    private int jobExecutorSize;
+
+    /**
+     * 默认异步执行器(@Async及Spring MVC异步请求使用)
+     * <p>
+     * 显式声明后Spring Boot不再自动创建, 因此沿用其构建器以保留spring.task.execution配置
+     */
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * AI生成执行器
+     */
+    @Bean
+    public ThreadPoolTaskExecutor generationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("generation-");
+        // 队列满时直接拒绝, 由调用方返回繁忙提示
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 异步任务执行器
+     * <p>
+     * 只负责领取任务、发起生成与写回结果, 等待上游响应期间不占用线程, 因此线程数很少;
+     * 并发数由任务执行器自身限制, 队列满时由调用线程执行
+     */
+    @Bean
+    public ThreadPoolTaskExecutor jobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(jobExecutorSize);
+        executor.setMaxPoolSize(jobExecutorSize);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
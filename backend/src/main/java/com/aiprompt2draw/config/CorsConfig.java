@@ -57,6 +57,15 @@ public class CorsConfig {
                     .forEach(config::addAllowedHeader);
         }
 
+        // XML格式的生成响应通过响应头返回额度等信息
+        config.addExposedHeader("X-Remaining-Quota");
+        config.addExposedHeader("X-Tokens-Used");
+        config.addExposedHeader("X-Model-Used");
+        config.addExposedHeader("Retry-After");
+        // 批量创建Key的CSV下载
+        config.addExposedHeader("Content-Disposition");
+        config.addExposedHeader("X-Key-Count");
+
         config.setAllowCredentials(allowCredentials);
         config.setMaxAge(maxAge);
 
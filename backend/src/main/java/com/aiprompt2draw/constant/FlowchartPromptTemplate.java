@@ -1,5 +1,7 @@
 package com.aiprompt2draw.constant;
 
+import com.aiprompt2draw.enums.GenerationMode;
+
 /**
  * 流程图生成Prompt模板
  *
@@ -45,20 +47,169 @@ public interface FlowchartPromptTemplate {
             "5. 确保布局美观,从上到下或从左到右的清晰流向";
 
     /**
-     * 构建用户提示词
+     * 图描述模式的系统提示词: 只要求节点与连线, 布局、样式与XML由服务端生成
+     */
+    String DSL_SYSTEM_PROMPT = "你是一个专业的流程图设计助手,擅长将文字描述转换为结构化的流程图。\n\n" +
+            "你的任务:\n" +
+            "1. 理解用户的业务描述或流程说明\n" +
+            "2. 识别关键步骤、决策点和流程分支\n" +
+            "3. 用紧凑的图描述格式输出流程图\n\n" +
+            "输出格式(每行一条):\n" +
+            "- 节点: <节点ID> <类型> <文字>\n" +
+            "- 连线: <起点ID> -> <终点ID> [连线文字]\n" +
+            "- 节点类型: start(开始) end(结束) process(普通步骤) decision(决策点) io(输入输出) error(错误)\n\n" +
+            "示例:\n" +
+            "n1 start 开始\n" +
+            "n2 io 输入用户名和密码\n" +
+            "n3 decision 校验通过?\n" +
+            "n4 process 进入首页\n" +
+            "n5 error 提示登录失败\n" +
+            "n6 end 结束\n" +
+            "n1 -> n2\n" +
+            "n2 -> n3\n" +
+            "n3 -> n4 是\n" +
+            "n3 -> n5 否\n" +
+            "n5 -> n2\n" +
+            "n4 -> n6\n\n" +
+            "重要规则:\n" +
+            "1. 只返回上述格式的内容,不要添加代码块标记或任何解释文字\n" +
+            "2. 节点ID只使用字母和数字且唯一,先列出全部节点再列出连线\n" +
+            "3. 不要输出坐标、样式或XML,布局与配色由系统完成";
+
+    /**
+     * 编辑模式的系统提示词: 输入为已有流程图的图描述, 只输出增量修改指令
+     */
+    String EDIT_SYSTEM_PROMPT = "你是一个专业的流程图设计助手,负责按用户要求修改已有的流程图。\n\n" +
+            "已有流程图用图描述格式给出(每行一条):\n" +
+            "- 节点: <节点ID> <类型> <文字>\n" +
+            "- 连线: <起点ID> -> <终点ID> [连线文字]\n" +
+            "- 节点类型: start(开始) end(结束) process(普通步骤) decision(决策点) io(输入输出) error(错误)\n\n" +
+            "只输出修改指令(每行一条):\n" +
+            "- 新增节点: + <节点ID> <类型> <文字>\n" +
+            "- 新增连线: + <起点ID> -> <终点ID> [连线文字]\n" +
+            "- 修改节点: ~ <节点ID> [类型] <文字>\n" +
+            "- 修改连线文字: ~ <起点ID> -> <终点ID> <连线文字>\n" +
+            "- 删除节点(连带删除相关连线): - <节点ID>\n" +
+            "- 删除连线: - <起点ID> -> <终点ID>\n\n" +
+            "示例(在校验与进入首页之间插入验证码步骤):\n" +
+            "+ n7 process 校验验证码\n" +
+            "- n3 -> n4\n" +
+            "+ n3 -> n7 是\n" +
+            "+ n7 -> n4\n\n" +
+            "重要规则:\n" +
+            "1. 只返回修改指令,不要重复未改动的节点和连线,不要添加代码块标记或任何解释文字\n" +
+            "2. 引用已有节点时使用原有ID,新节点使用未出现过的ID(只使用字母和数字)\n" +
+            "3. 不要输出坐标、样式或XML,新节点的位置与配色由系统完成";
+
+    /**
+     * 用户提示词中位于用户输入之前的固定部分
+     */
+    String USER_PROMPT_PREFIX = "请为以下描述生成流程图:\n\n";
+
+    /**
+     * 用户提示词中位于用户输入之后的固定部分
+     */
+    String USER_PROMPT_SUFFIX = "\n\n" +
+            "要求:\n" +
+            "1. 识别所有关键步骤和决策点\n" +
+            "2. 合理安排布局(从上到下或从左到右)\n" +
+            "3. 使用恰当的图形形状表示不同类型的节点\n" +
+            "4. 确保连接线清晰,有明确的流向\n" +
+            "5. 节点文字要简洁明了\n" +
+            "6. 直接返回XML,不要有任何额外说明";
+
+    /**
+     * 图描述模式下用户提示词中位于用户输入之后的固定部分
+     */
+    String DSL_USER_PROMPT_SUFFIX = "\n\n" +
+            "要求:\n" +
+            "1. 识别所有关键步骤和决策点\n" +
+            "2. 决策点的每条分支连线都标注条件\n" +
+            "3. 节点文字要简洁明了\n" +
+            "4. 直接返回图描述,不要有任何额外说明";
+
+    /**
+     * 编辑模式下用户提示词中位于已有流程图之前的固定部分
+     */
+    String EDIT_USER_PROMPT_PREFIX = "已有流程图:\n\n";
+
+    /**
+     * 编辑模式下已有流程图与修改要求之间的分隔
+     */
+    String EDIT_INSTRUCTION_SEPARATOR = "\n\n修改要求:\n";
+
+    /**
+     * 编辑模式下用户提示词中位于修改要求之后的固定部分
+     */
+    String EDIT_USER_PROMPT_SUFFIX = "\n\n" +
+            "要求:\n" +
+            "1. 只输出完成修改所需的最少指令\n" +
+            "2. 新增决策点的每条分支连线都标注条件\n" +
+            "3. 直接返回修改指令,不要有任何额外说明";
+
+    /**
+     * 获取生成模式对应的系统提示词
+     *
+     * @param mode 生成模式
+     * @return 系统提示词
+     */
+    static String systemPrompt(GenerationMode mode) {
+        switch (mode) {
+            case DSL:
+                return DSL_SYSTEM_PROMPT;
+            case EDIT:
+                return EDIT_SYSTEM_PROMPT;
+            default:
+                return SYSTEM_PROMPT;
+        }
+    }
+
+    /**
+     * 获取生成模式对应的用户提示词前缀
+     *
+     * @param mode 生成模式
+     * @return 用户提示词前缀
+     */
+    static String userPromptPrefix(GenerationMode mode) {
+        return mode == GenerationMode.EDIT ? EDIT_USER_PROMPT_PREFIX : USER_PROMPT_PREFIX;
+    }
+
+    /**
+     * 获取生成模式对应的用户提示词后缀
+     *
+     * @param mode 生成模式
+     * @return 用户提示词后缀
+     */
+    static String userPromptSuffix(GenerationMode mode) {
+        switch (mode) {
+            case DSL:
+                return DSL_USER_PROMPT_SUFFIX;
+            case EDIT:
+                return EDIT_USER_PROMPT_SUFFIX;
+            default:
+                return USER_PROMPT_SUFFIX;
+        }
+    }
+
+    /**
+     * 构建指定生成模式的用户提示词
      *
      * @param userInput 用户输入
+     * @param mode      生成模式
      * @return 完整的用户提示词
      */
-    static String buildUserPrompt(String userInput) {
-        return "请为以下描述生成流程图:\n\n" +
-                userInput + "\n\n" +
-                "要求:\n" +
-                "1. 识别所有关键步骤和决策点\n" +
-                "2. 合理安排布局(从上到下或从左到右)\n" +
-                "3. 使用恰当的图形形状表示不同类型的节点\n" +
-                "4. 确保连接线清晰,有明确的流向\n" +
-                "5. 节点文字要简洁明了\n" +
-                "6. 直接返回XML,不要有任何额外说明";
+    static String buildUserPrompt(String userInput, GenerationMode mode) {
+        return userPromptPrefix(mode) + userInput + userPromptSuffix(mode);
+    }
+
+    /**
+     * 构建编辑模式的用户输入: 已有流程图的图描述与修改要求
+     *
+     * @param graph       已有流程图的图描述
+     * @param instruction 修改要求
+     * @return 用户输入
+     */
+    static String buildEditInput(String graph, String instruction) {
+        return graph + EDIT_INSTRUCTION_SEPARATOR + instruction;
     }
-}
\ No newline at end of file
+}
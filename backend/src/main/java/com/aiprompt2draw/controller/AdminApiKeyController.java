@@ -1,8 +1,10 @@
 package com.aiprompt2draw.controller;
 
+import com.aiprompt2draw.dto.BulkCreateApiKeyRequest;
 import com.aiprompt2draw.dto.CreateApiKeyRequest;
 import com.aiprompt2draw.entity.ApiKey;
 import com.aiprompt2draw.mapper.ApiKeyMapper;
+import com.aiprompt2draw.service.ApiKeyBloomFilter;
 import com.aiprompt2draw.service.ApiKeyService;
 import com.aiprompt2draw.vo.Result;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
@@ -10,9 +12,14 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -30,6 +37,7 @@ public class AdminApiKeyController {
 
     private final ApiKeyService apiKeyService;
     private final ApiKeyMapper apiKeyMapper;
+    private final ApiKeyBloomFilter apiKeyBloomFilter;
 
     /**
      * 创建API Key
@@ -52,6 +60,32 @@ public class AdminApiKeyController {
         return Result.success(result);
     }
 
+    /**
+     * 批量创建API Key, 以CSV返回
+     * <p>
+     * 全部Key在一个事务内写入, 提交后再开始写出响应; 写出时按页从数据库读取, 不在内存中保留全部Key
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<StreamingResponseBody> bulkCreate(@Valid @RequestBody BulkCreateApiKeyRequest request) {
+        long[] ids = apiKeyService.bulkCreateApiKeys(
+                request.getCount(),
+                request.getKeyType(),
+                request.getQuota(),
+                request.getRateLimit(),
+                request.getExpireDays(),
+                request.getRemark(),
+                request.getModelIds()
+        );
+
+        StreamingResponseBody body = output -> apiKeyService.writeApiKeysCsv(ids, output);
+        String filename = "api-keys-" + System.currentTimeMillis() + ".csv";
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .header("X-Key-Count", String.valueOf(ids.length))
+                .body(body);
+    }
+
     /**
      * API Key列表
      */
@@ -109,8 +143,8 @@ public class AdminApiKeyController {
 
         apiKeyMapper.updateById(apiKey);
 
-        // 清除缓存
-        apiKeyService.clearCache(apiKey.getKeyValue());
+        // 清除缓存; 整行写回时额度同样被覆盖, 租约中未使用的额度直接丢弃
+        apiKeyService.clearCache(apiKey.getKeyValue(), true);
 
         return Result.success();
     }
@@ -124,6 +158,7 @@ public class AdminApiKeyController {
         if (apiKey != null) {
             apiKeyMapper.deleteById(id);
             apiKeyService.clearCache(apiKey.getKeyValue());
+            apiKeyBloomFilter.onDeleted();
         }
         return Result.success();
     }
@@ -0,0 +1,41 @@
+package com.aiprompt2draw.controller;
+
+import com.aiprompt2draw.service.GenerationCacheService;
+import com.aiprompt2draw.vo.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 后台生成结果缓存管理
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/cache")
+@RequiredArgsConstructor
+public class AdminCacheController {
+
+    private final GenerationCacheService generationCacheService;
+
+    /**
+     * 获取缓存统计(命中率等)
+     */
+    @GetMapping("/stats")
+    public Result<Map<String, Object>> stats() {
+        return Result.success(generationCacheService.getStats());
+    }
+
+    /**
+     * 清空缓存
+     */
+    @DeleteMapping
+    public Result<Map<String, Object>> purge() {
+        int purged = generationCacheService.purge();
+        return Result.success(Map.of("purged", purged));
+    }
+}
@@ -1,8 +1,13 @@
 package com.aiprompt2draw.controller;
 
+import com.aiprompt2draw.adapter.AIHttpClientPool;
+import com.aiprompt2draw.adapter.BulkheadRegistry;
+import com.aiprompt2draw.adapter.CircuitBreakerRegistry;
 import com.aiprompt2draw.dto.CreateModelConfigRequest;
 import com.aiprompt2draw.entity.ModelConfig;
 import com.aiprompt2draw.mapper.ModelConfigMapper;
+import com.aiprompt2draw.service.ModelRouterService;
+import com.aiprompt2draw.service.ModelStatsService;
 import com.aiprompt2draw.utils.EncryptUtils;
 import com.aiprompt2draw.vo.Result;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
@@ -15,7 +20,9 @@ import org.springframework.web.bind.annotation.*;
 import javax.validation.Valid;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,6 +39,11 @@ public class AdminModelController {
 
     private final ModelConfigMapper modelConfigMapper;
     private final EncryptUtils encryptUtils;
+    private final AIHttpClientPool httpClientPool;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final ModelStatsService modelStatsService;
+    private final ModelRouterService modelRouterService;
 
     /**
      * 获取模型配置列表
@@ -63,6 +75,7 @@ public class AdminModelController {
             if (model.getApiKey() != null && model.getApiKey().length() > 8) {
                 model.setApiKey(model.getApiKey().substring(0, 8) + "...");
             }
+            model.setCircuitState(circuitBreakerRegistry.getState(model.getId()));
         });
 
         Map<String, Object> result = new HashMap<>();
@@ -72,18 +85,46 @@ public class AdminModelController {
         return Result.success(result);
     }
 
+    /**
+     * 获取启用配置的路由统计
+     */
+    @GetMapping("/routing")
+    public Result<List<Map<String, Object>>> routing() {
+        LambdaQueryWrapper<ModelConfig> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(ModelConfig::getStatus, 1);
+        wrapper.orderByAsc(ModelConfig::getModelType);
+        wrapper.orderByDesc(ModelConfig::getPriority);
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ModelConfig model : modelConfigMapper.selectList(wrapper)) {
+            Map<String, Object> item = modelStatsService.getSnapshot(model.getId());
+            item.put("id", model.getId());
+            item.put("modelType", model.getModelType());
+            item.put("modelName", model.getModelName());
+            item.put("priority", model.getPriority());
+            item.put("score", Math.round(modelRouterService.getScore(model.getId())));
+            item.put("circuitState", circuitBreakerRegistry.getState(model.getId()));
+            item.put("bulkhead", bulkheadRegistry.getSnapshot(model.getId()));
+            result.add(item);
+        }
+
+        return Result.success(result);
+    }
+
     /**
      * 创建模型配置
      */
     @PostMapping
     public Result<ModelConfig> create(@Valid @RequestBody CreateModelConfigRequest request) {
-        // 检查模型类型是否已存在
+        // 同一类型允许配置多个端点(用于对冲与故障转移), 但不允许重复的模型名称+API地址
         LambdaQueryWrapper<ModelConfig> checkWrapper = new LambdaQueryWrapper<>();
-        checkWrapper.eq(ModelConfig::getModelType, request.getModelType());
-        ModelConfig existingModel = modelConfigMapper.selectOne(checkWrapper);
+        checkWrapper.eq(ModelConfig::getModelType, request.getModelType())
+                .eq(ModelConfig::getModelName, request.getModelName())
+                .eq(ModelConfig::getApiUrl, request.getApiUrl());
+        Long existingCount = modelConfigMapper.selectCount(checkWrapper);
 
-        if (existingModel != null) {
-            return Result.error(400, "模型类型已存在，请使用不同的类型");
+        if (existingCount > 0) {
+            return Result.error(400, "该类型下已存在相同模型名称和API地址的配置");
         }
 
         ModelConfig modelConfig = new ModelConfig();
@@ -94,9 +135,11 @@ public class AdminModelController {
         modelConfig.setApiSecret(request.getApiSecret() != null ?
             encryptUtils.encrypt(request.getApiSecret()) : null);
         modelConfig.setMaxTokens(request.getMaxTokens() != null ? request.getMaxTokens() : 2000);
+        modelConfig.setContextWindow(request.getContextWindow());
         modelConfig.setTemperature(request.getTemperature() != null ?
             request.getTemperature() : new BigDecimal("0.7"));
         modelConfig.setPriority(request.getPriority());
+        modelConfig.setMaxConcurrency(request.getMaxConcurrency());
         modelConfig.setStatus(1); // 默认启用
         modelConfig.setCostPerTkPromptTokens(request.getCostPer1kPromptTokens());
         modelConfig.setCostPerTkCompletionTokens(request.getCostPer1kCompletionTokens());
@@ -144,12 +187,18 @@ public class AdminModelController {
         if (updates.containsKey("maxTokens")) {
             modelConfig.setMaxTokens((Integer) updates.get("maxTokens"));
         }
+        if (updates.containsKey("contextWindow")) {
+            modelConfig.setContextWindow((Integer) updates.get("contextWindow"));
+        }
         if (updates.containsKey("temperature")) {
             modelConfig.setTemperature(new BigDecimal(updates.get("temperature").toString()));
         }
         if (updates.containsKey("priority")) {
             modelConfig.setPriority((Integer) updates.get("priority"));
         }
+        if (updates.containsKey("maxConcurrency")) {
+            modelConfig.setMaxConcurrency((Integer) updates.get("maxConcurrency"));
+        }
         if (updates.containsKey("status")) {
             modelConfig.setStatus((Integer) updates.get("status"));
         }
@@ -165,12 +214,16 @@ public class AdminModelController {
 
         modelConfig.setUpdateTime(LocalDateTime.now());
         modelConfigMapper.updateById(modelConfig);
+        httpClientPool.evict(id);
+        circuitBreakerRegistry.evict(id);
+        bulkheadRegistry.evict(id);
 
         log.info("更新模型配置成功: id={}, modelType={}", id, modelConfig.getModelType());
 
         // 返回时隐藏敏感信息
         modelConfig.setApiKey("******");
         modelConfig.setApiSecret(null);
+        modelConfig.setCircuitState(circuitBreakerRegistry.getState(id));
 
         return Result.success(modelConfig);
     }
@@ -189,6 +242,9 @@ public class AdminModelController {
         modelConfig.setDeleted(1);
         modelConfig.setUpdateTime(LocalDateTime.now());
         modelConfigMapper.updateById(modelConfig);
+        httpClientPool.evict(id);
+        circuitBreakerRegistry.evict(id);
+        bulkheadRegistry.evict(id);
 
         log.info("删除模型配置成功: id={}, modelType={}", id, modelConfig.getModelType());
 
@@ -230,6 +286,7 @@ public class AdminModelController {
             modelConfig.setApiKey(modelConfig.getApiKey().substring(0, 8) + "...");
         }
         modelConfig.setApiSecret(null);
+        modelConfig.setCircuitState(circuitBreakerRegistry.getState(id));
 
         return Result.success(modelConfig);
     }
@@ -1,25 +1,61 @@
 package com.aiprompt2draw.controller;
 
+import com.aiprompt2draw.diagram.DrawioFile;
+import com.aiprompt2draw.diagram.FlowchartEditor;
+import com.aiprompt2draw.diagram.FlowchartPatch;
 import com.aiprompt2draw.dto.AIResponse;
+import com.aiprompt2draw.dto.BatchGenerateRequest;
+import com.aiprompt2draw.dto.EditRequest;
 import com.aiprompt2draw.dto.GenerateRequest;
+import com.aiprompt2draw.dto.GenerationContext;
 import com.aiprompt2draw.dto.UserGenerateRequest;
 import com.aiprompt2draw.entity.ApiKey;
 import com.aiprompt2draw.entity.User;
 import com.aiprompt2draw.enums.ApiKeyType;
+import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.exception.RetryableException;
 import com.aiprompt2draw.service.ApiKeyService;
 import com.aiprompt2draw.service.FlowchartService;
+import com.aiprompt2draw.service.GenerationMetrics;
 import com.aiprompt2draw.service.UserService;
 import com.aiprompt2draw.utils.IpUtils;
 import com.aiprompt2draw.utils.JwtUtils;
+import com.aiprompt2draw.vo.BatchGenerateResponse;
+import com.aiprompt2draw.vo.EditResponse;
 import com.aiprompt2draw.vo.GenerateResponse;
 import com.aiprompt2draw.vo.QuotaResponse;
 import com.aiprompt2draw.vo.Result;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * 流程图生成API
@@ -33,16 +69,35 @@ import javax.validation.Valid;
 @RequiredArgsConstructor
 public class FlowchartController {
 
+    /**
+     * XML响应中返回剩余额度、Token数与模型类型的响应头
+     */
+    private static final String HEADER_REMAINING_QUOTA = "X-Remaining-Quota";
+    private static final String HEADER_TOKENS_USED = "X-Tokens-Used";
+    private static final String HEADER_MODEL_USED = "X-Model-Used";
+
     private final FlowchartService flowchartService;
     private final ApiKeyService apiKeyService;
     private final UserService userService;
     private final JwtUtils jwtUtils;
+    private final ThreadPoolTaskExecutor generationExecutor;
+    private final GenerationMetrics generationMetrics;
+    private final FlowchartEditor flowchartEditor;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.ai.request-timeout:30000}")
+    private long requestTimeout;
+
+    @Value("${app.ai.batch.timeout:120000}")
+    private long batchTimeout;
 
     /**
      * 生成流程图
+     * <p>
+     * 鉴权、限流和额度扣减完成后立即释放Servlet线程, 上游响应由生成线程池回填结果
      */
     @PostMapping("/generate")
-    public Result<GenerateResponse> generate(
+    public DeferredResult<Result<GenerateResponse>> generate(
             @RequestHeader("X-API-Key") String apiKey,
             @Valid @RequestBody GenerateRequest request,
             HttpServletRequest httpRequest) {
@@ -50,27 +105,382 @@ public class FlowchartController {
         String ipAddress = IpUtils.getIpAddress(httpRequest);
         String userAgent = httpRequest.getHeader("User-Agent");
 
-        // 调用服务生成流程图
-        AIResponse aiResponse = flowchartService.generate(
+        GenerationContext context = flowchartService.prepare(
                 apiKey,
                 request.getPrompt(),
                 request.getModelType(),
+                request.getMode(),
                 ipAddress,
                 userAgent
         );
 
-        // 获取剩余额度
-        Integer remainingQuota = apiKeyService.getQuota(apiKey);
+        // 调用服务生成流程图
+        CompletableFuture<AIResponse> generation = flowchartService.generateAsync(context);
 
-        // 构建响应
-        GenerateResponse response = new GenerateResponse(
-                aiResponse.getXmlContent(),
-                remainingQuota,
+        CompletableFuture<Result<GenerateResponse>> future = generation.thenApplyAsync(aiResponse -> {
+            // 获取剩余额度
+            Integer remainingQuota = apiKeyService.getQuota(apiKey);
+
+            // 构建响应
+            GenerateResponse response = new GenerateResponse(
+                    outputXml(aiResponse, request),
+                    remainingQuota,
+                    request.getModelType(),
+                    aiResponse.getTotalTokens(),
+                    aiResponse.getRepairs()
+            );
+
+            return Result.success(response);
+        }, this::executeResponse);
+
+        return toDeferredResult(future, generation);
+    }
+
+    /**
+     * 生成流程图, 直接返回XML(Accept: application/xml)
+     * <p>
+     * 响应体为mxGraphModel(compressed为true时为压缩的mxfile), 不经过JSON包装与转义,
+     * 由响应流边编码边写出; 剩余额度、Token数与模型类型通过响应头返回。出错时仍返回JSON格式的Result
+     */
+    @PostMapping(value = "/generate", produces = MediaType.APPLICATION_XML_VALUE)
+    public DeferredResult<ResponseEntity<StreamingResponseBody>> generateXml(
+            @RequestHeader("X-API-Key") String apiKey,
+            @Valid @RequestBody GenerateRequest request,
+            BindingResult bindingResult,
+            HttpServletRequest httpRequest) {
+
+        // 错误响应无法按application/xml协商, 因此在此处直接构建JSON响应
+        DeferredResult<ResponseEntity<StreamingResponseBody>> rejected = new DeferredResult<>();
+        if (bindingResult.hasErrors()) {
+            FieldError fieldError = bindingResult.getFieldError();
+            rejected.setResult(toErrorEntity(new BusinessException(400,
+                    fieldError != null ? fieldError.getDefaultMessage() : "参数校验失败")));
+            return rejected;
+        }
+
+        CompletableFuture<AIResponse> generation;
+        try {
+            GenerationContext context = flowchartService.prepare(
+                    apiKey,
+                    request.getPrompt(),
+                    request.getModelType(),
+                    request.getMode(),
+                    IpUtils.getIpAddress(httpRequest),
+                    httpRequest.getHeader("User-Agent")
+            );
+            generation = flowchartService.generateAsync(context);
+        } catch (RuntimeException e) {
+            rejected.setResult(toErrorEntity(e));
+            return rejected;
+        }
+
+        boolean compressed = Boolean.TRUE.equals(request.getCompressed());
+        CompletableFuture<ResponseEntity<StreamingResponseBody>> future = generation.thenApplyAsync(aiResponse -> {
+            Integer remainingQuota = apiKeyService.getQuota(apiKey);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(new MediaType(MediaType.APPLICATION_XML, StandardCharsets.UTF_8));
+            if (remainingQuota != null) {
+                headers.set(HEADER_REMAINING_QUOTA, String.valueOf(remainingQuota));
+            }
+            if (aiResponse.getTotalTokens() != null) {
+                headers.set(HEADER_TOKENS_USED, String.valueOf(aiResponse.getTotalTokens()));
+            }
+            if (request.getModelType() != null) {
+                headers.set(HEADER_MODEL_USED, request.getModelType());
+            }
+
+            String xml = aiResponse.getXmlContent();
+            StreamingResponseBody body = output -> DrawioFile.write(xml, compressed, output);
+            return ResponseEntity.ok().headers(headers).body(body);
+        }, this::executeResponse);
+
+        return toDeferredResult(future, generation, requestTimeout + 5000, this::toErrorEntity);
+    }
+
+    /**
+     * 构建JSON格式的错误响应, 与全局异常处理的结果一致
+     * <p>
+     * 响应体同为StreamingResponseBody, 使成功与失败共用一个返回类型并跳过按Accept的消息转换
+     */
+    private ResponseEntity<StreamingResponseBody> toErrorEntity(Throwable error) {
+        ResponseEntity.BodyBuilder builder;
+        Result<?> result;
+        if (error instanceof RetryableException) {
+            RetryableException retryable = (RetryableException) error;
+            HttpStatus status = HttpStatus.resolve(retryable.getCode());
+            builder = ResponseEntity.status(status != null ? status : HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryable.getRetryAfterSeconds()));
+            result = Result.error(retryable.getCode(), retryable.getMessage());
+        } else if (error instanceof BusinessException) {
+            BusinessException businessException = (BusinessException) error;
+            builder = ResponseEntity.ok();
+            result = Result.error(businessException.getCode(), businessException.getMessage());
+        } else {
+            log.error("生成流程图失败", error);
+            builder = ResponseEntity.ok();
+            result = Result.error("系统异常,请稍后重试");
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON)
+                .body(output -> output.write(objectMapper.writeValueAsBytes(result)));
+    }
+
+    /**
+     * 批量生成流程图
+     * <p>
+     * 整批只鉴权、限流一次并一次预留全部额度, 条目在API Key的并发限制下并行生成;
+     * 整批超时后未完成的条目取消, 失败条目的额度退还
+     */
+    @PostMapping("/generate/batch")
+    public DeferredResult<Result<BatchGenerateResponse>> generateBatch(
+            @RequestHeader("X-API-Key") String apiKey,
+            @Valid @RequestBody BatchGenerateRequest request,
+            HttpServletRequest httpRequest) {
+
+        String ipAddress = IpUtils.getIpAddress(httpRequest);
+        String userAgent = httpRequest.getHeader("User-Agent");
+
+        List<GenerationContext> contexts = flowchartService.prepareBatch(
+                apiKey,
+                request.getPrompts(),
                 request.getModelType(),
-                aiResponse.getTotalTokens()
+                request.getMode(),
+                ipAddress,
+                userAgent
         );
 
-        return Result.success(response);
+        List<CompletableFuture<AIResponse>> items = flowchartService.generateBatchAsync(contexts);
+
+        // 等待全部条目结束(成功或失败), 超过整批时限时以已完成的条目作答
+        CompletableFuture<Void> settled = CompletableFuture.allOf(items.stream()
+                        .map(item -> item.handle((aiResponse, error) -> null))
+                        .toArray(CompletableFuture[]::new))
+                .completeOnTimeout(null, batchTimeout, TimeUnit.MILLISECONDS);
+        settled.whenComplete((ignored, error) -> {
+            if (settled.isCancelled()) {
+                items.forEach(item -> item.cancel(true));
+            }
+        });
+
+        CompletableFuture<Result<BatchGenerateResponse>> future = settled.thenApplyAsync(ignored -> {
+            List<BatchGenerateResponse.Item> results = new ArrayList<>(items.size());
+            int succeeded = 0;
+            for (int i = 0; i < items.size(); i++) {
+                BatchGenerateResponse.Item result = toBatchItem(i, items.get(i));
+                if (result.getCode() == null) {
+                    succeeded++;
+                }
+                results.add(result);
+            }
+
+            // 获取剩余额度(已包含失败条目的退还)
+            Integer remainingQuota = apiKeyService.getQuota(apiKey);
+
+            BatchGenerateResponse response = new BatchGenerateResponse(
+                    results,
+                    succeeded,
+                    items.size() - succeeded,
+                    remainingQuota,
+                    request.getModelType()
+            );
+
+            return Result.success(response);
+        }, this::executeResponse);
+
+        return toDeferredResult(future, settled, batchTimeout + 5000);
+    }
+
+    /**
+     * 转换批量生成的单个条目结果, 未完成的条目取消并按超时处理
+     */
+    private BatchGenerateResponse.Item toBatchItem(int index, CompletableFuture<AIResponse> item) {
+        if (!item.isDone()) {
+            item.cancel(true);
+        }
+        try {
+            AIResponse aiResponse = item.join();
+            return new BatchGenerateResponse.Item(index, aiResponse.getXmlContent(), aiResponse.getTotalTokens(),
+                    aiResponse.getRepairs(), null, null);
+        } catch (CancellationException e) {
+            return new BatchGenerateResponse.Item(index, null, null, null, 504, "生成超时,请稍后重试");
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof BusinessException) {
+                BusinessException businessException = (BusinessException) cause;
+                return new BatchGenerateResponse.Item(index, null, null, null,
+                        businessException.getCode(), businessException.getMessage());
+            }
+            log.error("批量生成条目失败: index={}", index, cause);
+            return new BatchGenerateResponse.Item(index, null, null, null, 500, "系统异常,请稍后重试");
+        }
+    }
+
+    /**
+     * 编辑已有流程图
+     * <p>
+     * 已有流程图以图描述发送给模型, 模型只返回修改指令, 响应为需要新增、替换与删除的节点补丁
+     */
+    @PostMapping("/generate/edit")
+    public DeferredResult<Result<EditResponse>> edit(
+            @RequestHeader("X-API-Key") String apiKey,
+            @Valid @RequestBody EditRequest request,
+            HttpServletRequest httpRequest) {
+
+        String ipAddress = IpUtils.getIpAddress(httpRequest);
+        String userAgent = httpRequest.getHeader("User-Agent");
+
+        GenerationContext context = flowchartService.prepareEdit(
+                apiKey,
+                request.getXml(),
+                request.getInstruction(),
+                request.getModelType(),
+                ipAddress,
+                userAgent
+        );
+
+        CompletableFuture<AIResponse> generation = flowchartService.generateAsync(context);
+
+        CompletableFuture<Result<EditResponse>> future = generation.thenApplyAsync(aiResponse -> {
+            // 将修改指令应用到原流程图
+            FlowchartPatch patch = flowchartEditor.apply(request.getXml(), aiResponse.getXmlContent());
+
+            Integer remainingQuota = apiKeyService.getQuota(apiKey);
+
+            EditResponse response = new EditResponse(
+                    patch.getAdded(),
+                    patch.getUpdated(),
+                    patch.getRemoved(),
+                    remainingQuota,
+                    request.getModelType(),
+                    aiResponse.getTotalTokens()
+            );
+
+            return Result.success(response);
+        }, this::executeResponse);
+
+        return toDeferredResult(future, generation);
+    }
+
+    /**
+     * 流式生成流程图(SSE)
+     * <p>
+     * 事件类型: chunk-增量内容(图描述模式下为图描述文本, 命中缓存时不发送), done-生成完成(含额度、Token与最终XML), error-生成失败,
+     * retry-输出校验失败正在重新生成(客户端应丢弃此前收到的增量内容)
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generateStream(
+            @RequestHeader("X-API-Key") String apiKey,
+            @Valid @RequestBody GenerateRequest request,
+            HttpServletRequest httpRequest) {
+
+        String ipAddress = IpUtils.getIpAddress(httpRequest);
+        String userAgent = httpRequest.getHeader("User-Agent");
+
+        // 预留少量时间用于发送结束事件
+        SseEmitter emitter = new SseEmitter(requestTimeout + 5000);
+
+        GenerationContext context;
+        try {
+            // 鉴权、限流、扣减额度在请求线程中完成, 失败时直接返回error事件
+            context = flowchartService.prepare(
+                    apiKey,
+                    request.getPrompt(),
+                    request.getModelType(),
+                    request.getMode(),
+                    ipAddress,
+                    userAgent
+            );
+        } catch (BusinessException e) {
+            sendErrorEvent(emitter, Result.error(e.getCode(), e.getMessage()));
+            return emitter;
+        }
+
+        try {
+            generationExecutor.execute(() -> streamGenerate(emitter, context, apiKey, request));
+        } catch (TaskRejectedException e) {
+            // 额度已扣减但未调用厂商, 退还后再返回错误
+            log.warn("生成线程池已满, 拒绝流式请求");
+            flowchartService.refundRejected(context);
+            sendErrorEvent(emitter, Result.error(503, "服务繁忙,请稍后再试"));
+        }
+
+        return emitter;
+    }
+
+    /**
+     * 执行流式生成并推送事件
+     */
+    private void streamGenerate(SseEmitter emitter, GenerationContext context,
+                                String apiKey, GenerateRequest request) {
+        try {
+            AIResponse aiResponse = flowchartService.generateStream(context, chunk -> {
+                try {
+                    // 以JSON形式发送, 避免内容中的换行破坏SSE帧
+                    emitter.send(SseEmitter.event()
+                            .name("chunk")
+                            .data(Map.of("content", chunk), MediaType.APPLICATION_JSON));
+                } catch (IOException e) {
+                    // 客户端断开, 中止上游读取
+                    throw new UncheckedIOException(e);
+                }
+            }, () -> {
+                try {
+                    emitter.send(SseEmitter.event()
+                            .name("retry")
+                            .data(Map.of("message", "输出格式错误,正在重新生成"), MediaType.APPLICATION_JSON));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            // 获取剩余额度
+            Integer remainingQuota = apiKeyService.getQuota(apiKey);
+
+            GenerateResponse response = new GenerateResponse(
+                    outputXml(aiResponse, request),
+                    remainingQuota,
+                    request.getModelType(),
+                    aiResponse.getTotalTokens(),
+                    aiResponse.getRepairs()
+            );
+
+            emitter.send(SseEmitter.event()
+                    .name("done")
+                    .data(response, MediaType.APPLICATION_JSON));
+            emitter.complete();
+
+        } catch (BusinessException e) {
+            sendErrorEvent(emitter, Result.error(e.getCode(), e.getMessage()));
+        } catch (UncheckedIOException e) {
+            // 客户端已断开, 无法再发送事件
+            log.info("客户端已断开, 流式生成已中止: {}", e.getMessage());
+            emitter.completeWithError(e);
+        } catch (Exception e) {
+            log.error("流式生成流程图失败", e);
+            sendErrorEvent(emitter, Result.error("系统异常,请稍后重试"));
+        }
+    }
+
+    /**
+     * 按请求选择输出格式
+     */
+    private String outputXml(AIResponse aiResponse, GenerateRequest request) {
+        return Boolean.TRUE.equals(request.getCompressed())
+                ? DrawioFile.compress(aiResponse.getXmlContent()) : aiResponse.getXmlContent();
+    }
+
+    /**
+     * 发送错误事件并结束连接
+     */
+    private void sendErrorEvent(SseEmitter emitter, Result<?> error) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("error")
+                    .data(error, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
     }
 
     /**
@@ -141,7 +551,7 @@ public class FlowchartController {
      * 用户生成流程图（JWT认证）
      */
     @PostMapping("/user/generate")
-    public Result<GenerateResponse> userGenerate(
+    public CompletableFuture<Result<GenerateResponse>> userGenerate(
             @RequestHeader("Authorization") String token,
             @Valid @RequestBody UserGenerateRequest request,
             HttpServletRequest httpRequest) {
@@ -152,36 +562,128 @@ public class FlowchartController {
             User user = userService.findByUsername(username);
 
             if (user == null) {
-                return Result.error("用户不存在");
+                return CompletableFuture.completedFuture(Result.error("用户不存在"));
             }
 
-            String ipAddress = IpUtils.getIpAddress(httpRequest);
-            String userAgent = httpRequest.getHeader("User-Agent");
-
             // 注意：当前版本中，API Key由前端在配置中管理
             // 用户认证仅用于验证用户身份和权限控制
             // 实际的API调用使用前端配置的API Key
 
             // 由于架构设计变更，这里暂时返回模拟响应
             // 实际实现需要重新设计API Key管理机制
-            AIResponse aiResponse = new AIResponse();
-            aiResponse.setXmlContent(this.generateMockXML(request.getPrompt()));
-            aiResponse.setTotalTokens(100);
-
-            // 构建响应
-            GenerateResponse response = new GenerateResponse(
-                    aiResponse.getXmlContent(),
-                    null, // 用户模式下不返回配额信息
-                    request.getModel(),
-                    aiResponse.getTotalTokens()
-            );
-
-            return Result.success(response);
+            return CompletableFuture.supplyAsync(() -> {
+                AIResponse aiResponse = new AIResponse();
+                aiResponse.setXmlContent(this.generateMockXML(request.getPrompt()));
+                aiResponse.setTotalTokens(100);
+
+                // 构建响应
+                GenerateResponse response = new GenerateResponse(
+                        aiResponse.getXmlContent(),
+                        null, // 用户模式下不返回配额信息
+                        request.getModel(),
+                        aiResponse.getTotalTokens(),
+                        null
+                );
+
+                return Result.success(response);
+            }, generationExecutor);
 
         } catch (Exception e) {
             log.error("用户生成流程图失败", e);
-            return Result.error("生成失败：" + e.getMessage());
+            return CompletableFuture.completedFuture(Result.error("生成失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 将生成Future适配为DeferredResult, 并处理超时与等待数统计
+     *
+     * @param future     最终结果Future
+     * @param generation 上游生成Future, 超时时取消以中止上游调用
+     */
+    private <T> DeferredResult<T> toDeferredResult(CompletableFuture<T> future,
+                                                   CompletableFuture<?> generation) {
+        // 预留少量时间给适配器自身的超时处理
+        return toDeferredResult(future, generation, requestTimeout + 5000);
+    }
+
+    /**
+     * 将生成Future适配为DeferredResult
+     *
+     * @param future     最终结果Future
+     * @param generation 上游生成Future, 超时时取消以中止上游调用
+     * @param timeout    超时时间(毫秒)
+     */
+    private <T> DeferredResult<T> toDeferredResult(CompletableFuture<T> future,
+                                                   CompletableFuture<?> generation, long timeout) {
+        return toDeferredResult(future, generation, timeout, null);
+    }
+
+    /**
+     * 将生成Future适配为DeferredResult
+     *
+     * @param future      最终结果Future
+     * @param generation  上游生成Future, 超时时取消以中止上游调用
+     * @param timeout     超时时间(毫秒)
+     * @param errorMapper 将异常转换为结果, 为空时交由全局异常处理
+     */
+    private <T> DeferredResult<T> toDeferredResult(CompletableFuture<T> future, CompletableFuture<?> generation,
+                                                   long timeout, Function<Throwable, T> errorMapper) {
+        DeferredResult<T> deferredResult = new DeferredResult<>(timeout);
+
+        generationMetrics.requestStarted();
+        deferredResult.onCompletion(generationMetrics::requestCompleted);
+        deferredResult.onTimeout(() -> {
+            generationMetrics.recordTimeout();
+            generation.cancel(true);
+            setError(deferredResult, new BusinessException(504, "生成超时,请稍后重试"), errorMapper);
+        });
+
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                setError(deferredResult, unwrap(error), errorMapper);
+            } else {
+                deferredResult.setResult(result);
+            }
+        });
+
+        return deferredResult;
+    }
+
+    private <T> void setError(DeferredResult<T> deferredResult, Throwable error, Function<Throwable, T> errorMapper) {
+        if (errorMapper != null) {
+            deferredResult.setResult(errorMapper.apply(error));
+        } else {
+            deferredResult.setErrorResult(error);
+        }
+    }
+
+    /**
+     * 在生成线程池中构建响应, 线程池已满时在完成上游调用的线程中直接构建
+     * <p>
+     * 此时上游调用已完成并计费, 不能因线程池拒绝而丢弃结果
+     */
+    private void executeResponse(Runnable task) {
+        try {
+            generationExecutor.execute(task);
+        } catch (TaskRejectedException e) {
+            log.debug("生成线程池已满, 在当前线程构建响应");
+            task.run();
+        }
+    }
+
+    /**
+     * 解包异步异常
+     */
+    private Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RejectedExecutionException) {
+            log.warn("生成线程池已满, 拒绝请求");
+            return new BusinessException(503, "服务繁忙,请稍后再试");
         }
+        return cause;
     }
 
     /**
@@ -0,0 +1,146 @@
+package com.aiprompt2draw.controller;
+
+import com.aiprompt2draw.dto.JobRequest;
+import com.aiprompt2draw.entity.GenerationJob;
+import com.aiprompt2draw.enums.JobStatus;
+import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.service.GenerationJobService;
+import com.aiprompt2draw.utils.IpUtils;
+import com.aiprompt2draw.vo.JobBatchResponse;
+import com.aiprompt2draw.vo.JobResponse;
+import com.aiprompt2draw.vo.Result;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 异步生成任务API
+ * <p>
+ * 提交后立即返回任务ID, 客户端轮询任务状态; 文件上传的批次可整体打包下载
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/jobs")
+@RequiredArgsConstructor
+public class GenerationJobController {
+
+    private final GenerationJobService generationJobService;
+
+    /**
+     * 提交生成任务
+     */
+    @PostMapping
+    public Result<JobResponse> submit(
+            @RequestHeader("X-API-Key") String apiKey,
+            @Valid @RequestBody JobRequest request,
+            HttpServletRequest httpRequest) {
+
+        GenerationJob job = generationJobService.submit(
+                apiKey,
+                request.getPrompt(),
+                request.getModelType(),
+                request.getMode(),
+                IpUtils.getIpAddress(httpRequest),
+                httpRequest.getHeader("User-Agent")
+        );
+        return Result.success(toResponse(job));
+    }
+
+    /**
+     * 上传文件提交批量任务(UTF-8文本, 每行一条输入描述)
+     */
+    @PostMapping("/upload")
+    public Result<JobBatchResponse> upload(
+            @RequestHeader("X-API-Key") String apiKey,
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "modelType", required = false) String modelType,
+            @RequestParam(value = "mode", required = false) String mode,
+            HttpServletRequest httpRequest) {
+
+        if (file.isEmpty()) {
+            throw new BusinessException(400, "上传文件不能为空");
+        }
+
+        try (InputStream input = file.getInputStream()) {
+            JobBatchResponse response = generationJobService.submitFile(
+                    apiKey,
+                    input,
+                    modelType,
+                    mode,
+                    IpUtils.getIpAddress(httpRequest),
+                    httpRequest.getHeader("User-Agent")
+            );
+            return Result.success(response);
+        } catch (IOException e) {
+            log.error("读取上传文件失败", e);
+            throw new BusinessException(400, "文件读取失败");
+        }
+    }
+
+    /**
+     * 查询任务
+     */
+    @GetMapping("/{jobId}")
+    public Result<JobResponse> getJob(
+            @RequestHeader("X-API-Key") String apiKey,
+            @PathVariable String jobId) {
+
+        return Result.success(toResponse(generationJobService.getJob(apiKey, jobId)));
+    }
+
+    /**
+     * 查询批次状态
+     */
+    @GetMapping("/batches/{batchId}")
+    public Result<JobBatchResponse> getBatch(
+            @RequestHeader("X-API-Key") String apiKey,
+            @PathVariable String batchId) {
+
+        return Result.success(generationJobService.getBatch(apiKey, batchId));
+    }
+
+    /**
+     * 下载批次结果(zip), 边查询边写出
+     */
+    @GetMapping("/batches/{batchId}/download")
+    public ResponseEntity<StreamingResponseBody> download(
+            @RequestHeader("X-API-Key") String apiKey,
+            @PathVariable String batchId) {
+
+        // 先确认批次存在, 不存在时以普通错误响应返回
+        generationJobService.getBatch(apiKey, batchId);
+
+        StreamingResponseBody body = output -> generationJobService.writeBatchZip(apiKey, batchId, output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + batchId + ".zip\"")
+                .body(body);
+    }
+
+    private JobResponse toResponse(GenerationJob job) {
+        JobStatus status = JobStatus.getByCode(job.getStatus());
+        return new JobResponse(
+                job.getJobId(),
+                status != null ? status.getValue() : null,
+                job.getOutputXml(),
+                job.getTotalTokens(),
+                job.getErrorCode(),
+                job.getErrorMsg(),
+                job.getCreateTime(),
+                job.getFinishTime()
+        );
+    }
+}
@@ -0,0 +1,173 @@
+package com.aiprompt2draw.diagram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * draw.io文件输出
+ * <p>
+ * 压缩格式与draw.io保存的文件一致: diagram元素内容为
+ * base64(raw deflate(encodeURIComponent(mxGraphModel))), 三步均以流的方式直接写入输出,
+ * 不生成中间字符串或字节数组
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public final class DrawioFile {
+
+    private static final byte[] COMPRESSED_PREFIX = ("<mxfile host=\"AIPrompt2Draw\">"
+            + "<diagram id=\"page-1\" name=\"Page-1\">").getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] COMPRESSED_SUFFIX = "</diagram></mxfile>".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * encodeURIComponent不转义的ASCII字符
+     */
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+            UNRESERVED[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c : "-_.!~*'()".toCharArray()) {
+            UNRESERVED[c] = true;
+        }
+    }
+
+    private DrawioFile() {
+    }
+
+    /**
+     * 写出流程图XML
+     *
+     * @param xml        mxGraphModel(或模型直接输出的mxfile)
+     * @param compressed 是否输出为压缩的mxfile; 内容已是mxfile时原样输出
+     * @param output     输出流(不关闭)
+     * @throws IOException 写出失败
+     */
+    public static void write(String xml, boolean compressed, OutputStream output) throws IOException {
+        if (!compressed || xml.stripLeading().startsWith("<mxfile")) {
+            Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            writer.write(xml);
+            writer.flush();
+            return;
+        }
+
+        output.write(COMPRESSED_PREFIX);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try (OutputStream encoded = new DeflaterOutputStream(Base64.getEncoder().wrap(new NonClosing(output)),
+                deflater, 8192)) {
+            writeUriEncoded(xml, encoded);
+        } finally {
+            deflater.end();
+        }
+        output.write(COMPRESSED_SUFFIX);
+        output.flush();
+    }
+
+    /**
+     * 生成压缩的mxfile字符串(用于JSON响应)
+     *
+     * @param xml mxGraphModel
+     * @return mxfile, 内容已是mxfile时原样返回
+     */
+    public static String compress(String xml) {
+        if (xml.stripLeading().startsWith("<mxfile")) {
+            return xml;
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream(xml.length() / 2);
+        try {
+            write(xml, true, output);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return output.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 按encodeURIComponent规则编码: 非保留ASCII字符原样输出, 其余按UTF-8字节输出%XX
+     */
+    private static void writeUriEncoded(String text, OutputStream output) throws IOException {
+        byte[] buffer = new byte[4096];
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            // 单个字符最多编码为4个UTF-8字节(12个输出字节)
+            if (length > buffer.length - 12) {
+                output.write(buffer, 0, length);
+                length = 0;
+            }
+
+            char c = text.charAt(i);
+            if (c < 128 && UNRESERVED[c]) {
+                buffer[length++] = (byte) c;
+                continue;
+            }
+
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                codePoint = Character.toCodePoint(c, text.charAt(++i));
+            } else if (Character.isSurrogate(c)) {
+                codePoint = 0xFFFD;
+            }
+
+            if (codePoint < 0x80) {
+                length = percent(buffer, length, codePoint);
+            } else if (codePoint < 0x800) {
+                length = percent(buffer, length, 0xC0 | (codePoint >> 6));
+                length = percent(buffer, length, 0x80 | (codePoint & 0x3F));
+            } else if (codePoint < 0x10000) {
+                length = percent(buffer, length, 0xE0 | (codePoint >> 12));
+                length = percent(buffer, length, 0x80 | ((codePoint >> 6) & 0x3F));
+                length = percent(buffer, length, 0x80 | (codePoint & 0x3F));
+            } else {
+                length = percent(buffer, length, 0xF0 | (codePoint >> 18));
+                length = percent(buffer, length, 0x80 | ((codePoint >> 12) & 0x3F));
+                length = percent(buffer, length, 0x80 | ((codePoint >> 6) & 0x3F));
+                length = percent(buffer, length, 0x80 | (codePoint & 0x3F));
+            }
+        }
+        output.write(buffer, 0, length);
+    }
+
+    private static int percent(byte[] buffer, int length, int value) {
+        buffer[length] = '%';
+        buffer[length + 1] = HEX[(value >> 4) & 0xF];
+        buffer[length + 2] = HEX[value & 0xF];
+        return length + 3;
+    }
+
+    /**
+     * 关闭时只刷新不关闭底层流, 使base64编码器能在关闭时写出结尾而不关闭响应流
+     */
+    private static final class NonClosing extends FilterOutputStream {
+
+        private NonClosing(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.aiprompt2draw.diagram;
+
+import cn.hutool.core.util.StrUtil;
+import com.aiprompt2draw.exception.InvalidOutputException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 图描述展开器
+ * <p>
+ * 将模型输出的紧凑图描述展开为mxGraphModel XML, 每行一条:
+ * <pre>
+ * n1 start 开始
+ * n2 decision 校验通过?
+ * n1 -> n2
+ * n2 -> n3 是
+ * </pre>
+ * 解析尽量宽容: 忽略空行、注释与代码块标记, 连线也可写作紧凑的 n1->n2, 无法识别的类型按普通步骤处理,
+ * 连线引用的未声明节点自动补为普通步骤; 坐标由{@link LayeredLayout}计算
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FlowchartDslExpander {
+
+    private static final String ARROW = "->";
+
+    private final LayeredLayout layeredLayout;
+
+    /**
+     * 展开图描述
+     *
+     * @param dsl 图描述
+     * @return mxGraphModel XML
+     */
+    public String expand(String dsl) {
+        // 模型未遵循格式直接返回了XML时原样返回, 由调用方按XML模式校验
+        if (isXml(dsl)) {
+            return dsl;
+        }
+
+        FlowchartGraph graph = parse(dsl);
+        layout(graph);
+        return FlowchartXmlWriter.write(graph);
+    }
+
+    /**
+     * 判断模型是否未遵循图描述格式而直接返回了XML
+     *
+     * @param content 模型输出
+     * @return 是否为XML
+     */
+    public boolean isXml(String content) {
+        return content.stripLeading().startsWith("<");
+    }
+
+    /**
+     * 解析图描述
+     *
+     * @param dsl 图描述
+     * @return 流程图
+     */
+    public FlowchartGraph parse(String dsl) {
+        FlowchartGraph graph = new FlowchartGraph();
+        List<String[]> edges = new ArrayList<>();
+
+        for (String rawLine : dsl.split("\n")) {
+            String line = rawLine.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("//") || line.startsWith("```")) {
+                continue;
+            }
+
+            // 箭头只有作为两个ID之间的独立词时才表示连线, 节点文字中的箭头保持原样
+            String[] tokens = line.split("\\s+", 4);
+            if (tokens.length > 1 && ARROW.equals(tokens[1])) {
+                if (tokens.length > 2) {
+                    edges.add(new String[]{tokens[0], tokens[2], tokens.length > 3 ? unquote(tokens[3]) : null});
+                }
+                continue;
+            }
+            // 紧凑写法 n1->n2, 箭头两侧都是不含空白的ID
+            int arrow = compactArrow(tokens[0]);
+            if (arrow > 0) {
+                String[] rest = line.split("\\s+", 2);
+                edges.add(new String[]{tokens[0].substring(0, arrow), tokens[0].substring(arrow + ARROW.length()),
+                        rest.length > 1 ? unquote(rest[1]) : null});
+                continue;
+            }
+
+            String[] parts = line.split("\\s+", 3);
+            NodeKind kind = parts.length > 1 ? NodeKind.getByCode(parts[1]) : null;
+            String label;
+            if (kind != null) {
+                label = parts.length > 2 ? unquote(parts[2]) : parts[0];
+            } else {
+                // 缺少类型时整行余下部分都是文字
+                kind = NodeKind.PROCESS;
+                label = parts.length > 1 ? unquote(line.substring(parts[0].length()).trim()) : parts[0];
+            }
+            graph.addNode(parts[0], kind, label);
+        }
+
+        for (String[] edge : edges) {
+            graph.addNode(edge[0], NodeKind.PROCESS, edge[0]);
+            graph.addNode(edge[1], NodeKind.PROCESS, edge[1]);
+            graph.addEdge(edge[0], edge[1], edge[2]);
+        }
+
+        if (graph.getNodes().isEmpty()) {
+            log.error("图描述解析失败: {}", StrUtil.brief(dsl, 200));
+            throw new InvalidOutputException("图描述无法解析");
+        }
+        return graph;
+    }
+
+    /**
+     * 分层布局, 结果写回节点坐标与连线拐点
+     */
+    private void layout(FlowchartGraph graph) {
+        List<FlowchartGraph.Node> nodes = new ArrayList<>(graph.getNodes().values());
+        Map<String, Integer> indexes = new HashMap<>(nodes.size() * 2);
+        int[] widths = new int[nodes.size()];
+        int[] heights = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            FlowchartGraph.Node node = nodes.get(i);
+            indexes.put(node.getId(), i);
+            widths[i] = node.getWidth();
+            heights[i] = node.getHeight();
+        }
+
+        List<FlowchartGraph.Edge> edges = graph.getEdges();
+        int[] sources = new int[edges.size()];
+        int[] targets = new int[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            sources[i] = indexes.get(edges.get(i).getSource());
+            targets[i] = indexes.get(edges.get(i).getTarget());
+        }
+
+        LayeredLayout.Result result = layeredLayout.layout(widths, heights, sources, targets);
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).setX(result.getX()[i]);
+            nodes.get(i).setY(result.getY()[i]);
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            edges.get(i).setPoints(result.getEdgePoints()[i]);
+        }
+    }
+
+    /**
+     * 查找紧凑写法连线中箭头的位置
+     *
+     * @param token 不含空白的词
+     * @return 箭头下标, 不是"ID->ID"形式时为-1
+     */
+    private static int compactArrow(String token) {
+        int arrow = token.indexOf(ARROW);
+        if (arrow <= 0 || arrow + ARROW.length() == token.length()
+                || token.indexOf(ARROW, arrow + ARROW.length()) >= 0) {
+            return -1;
+        }
+        return arrow;
+    }
+
+    private String unquote(String text) {
+        String value = text.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.replace("\\n", "\n");
+    }
+}
@@ -0,0 +1,726 @@
+package com.aiprompt2draw.diagram;
+
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.XmlUtil;
+import cn.hutool.http.HtmlUtil;
+import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.exception.InvalidOutputException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 流程图增量编辑器
+ * <p>
+ * 已有流程图先转换为与图描述模式相同的紧凑格式发送给模型(只含节点类型、文字与连线, 不含坐标与样式),
+ * 模型返回每行一条的修改指令, 由本类应用到原XML并输出节点补丁:
+ * <pre>
+ * + n7 process 校验验证码      新增节点
+ * + n3 -> n7 是               新增连线
+ * ~ n4 进入个人首页            修改节点(类型可省略)
+ * ~ n3 -> n5 失败              修改连线文字
+ * - n5                        删除节点及其连线
+ * - n3 -> n4                  删除连线
+ * </pre>
+ * 解析尽量宽容: 缺少前缀的行按新增处理, 新增已存在的节点视为修改, 引用不存在节点的连线被忽略;
+ * 节点指令先于连线指令应用, 新节点放在与其相连的已有节点附近并避开重叠
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class FlowchartEditor {
+
+    private static final String ARROW = "->";
+
+    private static final char ADD = '+';
+    private static final char UPDATE = '~';
+    private static final char REMOVE = '-';
+
+    private static final int DEFAULT_WIDTH = 120;
+    private static final int DEFAULT_HEIGHT = 60;
+
+    /**
+     * 新节点与相连节点的垂直间距
+     */
+    private static final int LAYER_SPACING = 60;
+
+    /**
+     * 新节点与其它节点的最小间距
+     */
+    private static final int NODE_SPACING = 40;
+
+    private static final int MARGIN = 40;
+
+    private static final Pattern LINE_BREAK_TAG = Pattern.compile("(?i)<br\\s*/?>|</div>|</p>");
+
+    /**
+     * 将已有流程图转换为图描述
+     *
+     * @param xml mxGraphModel XML
+     * @return 图描述
+     * @throws BusinessException XML无法解析
+     */
+    public String describe(String xml) {
+        Diagram diagram = Diagram.parse(xml);
+        StringBuilder text = new StringBuilder(diagram.vertices.size() * 24 + diagram.edges.size() * 16);
+
+        for (Map.Entry<String, Element> entry : diagram.vertices.entrySet()) {
+            if (!isReferable(entry.getKey())) {
+                continue;
+            }
+            text.append(entry.getKey()).append(' ')
+                    .append(diagram.kindOf(entry.getKey()).getCode()).append(' ')
+                    .append(format(diagram.labelOf(entry.getValue()))).append('\n');
+        }
+        for (Element edge : diagram.edges) {
+            String source = edge.getAttribute("source");
+            String target = edge.getAttribute("target");
+            if (!diagram.vertices.containsKey(source) || !diagram.vertices.containsKey(target)
+                    || !isReferable(source) || !isReferable(target)) {
+                continue;
+            }
+            text.append(source).append(' ').append(ARROW).append(' ').append(target);
+            String label = diagram.labelOf(edge);
+            if (!label.isEmpty()) {
+                text.append(' ').append(format(label));
+            }
+            text.append('\n');
+        }
+        return text.length() > 0 ? text.toString() : "(空白流程图)\n";
+    }
+
+    /**
+     * 将修改指令应用到已有流程图
+     *
+     * @param xml          已有流程图的mxGraphModel XML
+     * @param instructions 模型返回的修改指令
+     * @return 节点补丁
+     */
+    public FlowchartPatch apply(String xml, String instructions) {
+        List<Operation> operations = parse(instructions);
+        Edit edit = new Edit(Diagram.parse(xml));
+
+        for (Operation operation : operations) {
+            if (operation.getTarget() == null) {
+                edit.node(operation);
+            }
+        }
+        for (Operation operation : operations) {
+            if (operation.getTarget() != null) {
+                edit.edge(operation);
+            }
+        }
+        return edit.toPatch();
+    }
+
+    /**
+     * 解析修改指令
+     *
+     * @param instructions 修改指令
+     * @return 指令列表
+     * @throws InvalidOutputException 没有可识别的指令
+     */
+    public List<Operation> parse(String instructions) {
+        List<Operation> operations = new ArrayList<>();
+
+        for (String rawLine : instructions.split("\n")) {
+            String line = rawLine.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("//") || line.startsWith("```")) {
+                continue;
+            }
+
+            char action = ADD;
+            char first = line.charAt(0);
+            if ((first == ADD || first == UPDATE || first == REMOVE)
+                    && (line.length() == 1 || Character.isWhitespace(line.charAt(1)))) {
+                action = first;
+                line = line.substring(1).trim();
+            }
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            // 箭头只有作为两个ID之间的独立词时才表示连线, 节点文字中的箭头保持原样
+            String[] tokens = line.split("\\s+", 4);
+            if (tokens.length > 1 && ARROW.equals(tokens[1])) {
+                if (tokens.length > 2) {
+                    String label = tokens.length > 3 && action != REMOVE ? unquote(tokens[3]) : null;
+                    operations.add(new Operation(action, tokens[0], tokens[2], null, label));
+                }
+                continue;
+            }
+            // 紧凑写法 n1->n2, 箭头两侧都是不含空白的ID
+            int arrow = compactArrow(tokens[0]);
+            if (arrow > 0) {
+                String[] rest = line.split("\\s+", 2);
+                String label = rest.length > 1 && action != REMOVE ? unquote(rest[1]) : null;
+                operations.add(new Operation(action, tokens[0].substring(0, arrow),
+                        tokens[0].substring(arrow + ARROW.length()), null, label));
+                continue;
+            }
+
+            String[] parts = line.split("\\s+", 3);
+            if (action == REMOVE) {
+                operations.add(new Operation(action, parts[0], null, null, null));
+                continue;
+            }
+            NodeKind kind = parts.length > 1 ? NodeKind.getByCode(parts[1]) : null;
+            String label;
+            if (kind != null) {
+                label = parts.length > 2 ? unquote(parts[2]) : null;
+            } else {
+                // 缺少类型时整行余下部分都是文字
+                label = parts.length > 1 ? unquote(line.substring(parts[0].length()).trim()) : null;
+            }
+            if (action == UPDATE && kind == null && label == null) {
+                continue;
+            }
+            operations.add(new Operation(action, parts[0], null, kind, label));
+        }
+
+        if (operations.isEmpty()) {
+            log.error("修改指令解析失败: {}", StrUtil.brief(instructions, 200));
+            throw new InvalidOutputException("修改指令无法解析");
+        }
+        return operations;
+    }
+
+    /**
+     * ID中不含空白与箭头时才能在图描述中引用
+     */
+    private static boolean isReferable(String id) {
+        if (id.isEmpty() || id.contains(ARROW)) {
+            return false;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (Character.isWhitespace(id.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String format(String label) {
+        return label.isEmpty() ? "\"\"" : label.replace("\n", "\\n");
+    }
+
+    /**
+     * 查找紧凑写法连线中箭头的位置
+     *
+     * @param token 不含空白的词
+     * @return 箭头下标, 不是"ID->ID"形式时为-1
+     */
+    private static int compactArrow(String token) {
+        int arrow = token.indexOf(ARROW);
+        if (arrow <= 0 || arrow + ARROW.length() == token.length()
+                || token.indexOf(ARROW, arrow + ARROW.length()) >= 0) {
+            return -1;
+        }
+        return arrow;
+    }
+
+    private static String unquote(String text) {
+        String value = text.trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.replace("\\n", "\n");
+    }
+
+    /**
+     * 修改指令
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Operation {
+
+        /**
+         * 操作: + 新增, ~ 修改, - 删除
+         */
+        private final char action;
+
+        /**
+         * 节点ID, 连线指令时为起点ID
+         */
+        private final String id;
+
+        /**
+         * 连线终点ID, 节点指令时为null
+         */
+        private final String target;
+
+        private final NodeKind kind;
+
+        private final String label;
+    }
+
+    /**
+     * 解析后的已有流程图
+     */
+    private static final class Diagram {
+
+        private final Map<String, Element> cells = new HashMap<>();
+
+        /**
+         * 节点(不含连线上的文字), 保持文档顺序
+         */
+        private final Map<String, Element> vertices = new LinkedHashMap<>();
+
+        private final List<Element> edges = new ArrayList<>();
+
+        private final Map<String, List<String>> children = new HashMap<>();
+
+        private final Set<String> targets = new HashSet<>();
+
+        /**
+         * 新节点与新连线所在的图层
+         */
+        private String layer;
+
+        private static Diagram parse(String xml) {
+            Document document;
+            try {
+                document = XmlUtil.parseXml(xml);
+            } catch (Exception e) {
+                throw new BusinessException(400, "流程图XML解析失败");
+            }
+
+            NodeList list = document.getElementsByTagName("mxCell");
+            if (list.getLength() == 0) {
+                throw new BusinessException(400, "流程图XML中没有mxCell节点(不支持压缩格式)");
+            }
+
+            Diagram diagram = new Diagram();
+            List<Element> all = new ArrayList<>(list.getLength());
+            for (int i = 0; i < list.getLength(); i++) {
+                Element cell = (Element) list.item(i);
+                String id = idOf(cell);
+                if (!id.isEmpty()) {
+                    diagram.cells.putIfAbsent(id, cell);
+                    all.add(cell);
+                }
+            }
+
+            for (Element cell : all) {
+                String id = idOf(cell);
+                String parent = cell.getAttribute("parent");
+                if (!parent.isEmpty()) {
+                    diagram.children.computeIfAbsent(parent, key -> new ArrayList<>()).add(id);
+                }
+                if ("1".equals(cell.getAttribute("edge"))) {
+                    diagram.edges.add(cell);
+                    diagram.targets.add(cell.getAttribute("target"));
+                } else if ("1".equals(cell.getAttribute("vertex"))) {
+                    Element parentCell = diagram.cells.get(parent);
+                    // 连线上的文字随连线处理
+                    if (parentCell == null || !"1".equals(parentCell.getAttribute("edge"))) {
+                        diagram.vertices.put(id, cell);
+                    }
+                }
+            }
+
+            diagram.layer = diagram.findLayer(all);
+            return diagram;
+        }
+
+        private String findLayer(List<Element> all) {
+            for (Element vertex : vertices.values()) {
+                Element parent = cells.get(vertex.getAttribute("parent"));
+                if (parent != null && !"1".equals(parent.getAttribute("vertex"))) {
+                    return idOf(parent);
+                }
+            }
+            // 空白流程图: 取根节点下的第一个图层
+            for (Element cell : all) {
+                Element parent = cells.get(cell.getAttribute("parent"));
+                if (parent != null && parent.getAttribute("parent").isEmpty()) {
+                    return idOf(cell);
+                }
+            }
+            return "1";
+        }
+
+        private NodeKind kindOf(String id) {
+            String style = cells.get(id).getAttribute("style").toLowerCase();
+            if (style.contains("rhombus")) {
+                return NodeKind.DECISION;
+            }
+            if (style.contains("parallelogram")) {
+                return NodeKind.IO;
+            }
+            if (style.contains("f8cecc")) {
+                return NodeKind.ERROR;
+            }
+            if (style.contains("d5e8d4") || style.contains("ellipse")) {
+                return targets.contains(id) ? NodeKind.END : NodeKind.START;
+            }
+            return NodeKind.PROCESS;
+        }
+
+        /**
+         * 获取节点或连线的纯文本文字, 连线自身没有文字时取其上的文字节点
+         */
+        private String labelOf(Element cell) {
+            Element outer = outer(cell);
+            String value = outer != cell ? outer.getAttribute("label") : cell.getAttribute("value");
+            if (value.isEmpty() && "1".equals(cell.getAttribute("edge"))) {
+                for (String child : children.getOrDefault(idOf(cell), Collections.emptyList())) {
+                    value = cells.get(child).getAttribute("value");
+                    if (!value.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+            if (cell.getAttribute("style").contains("html=1") && (value.contains("<") || value.contains("&"))) {
+                value = HtmlUtil.unescape(HtmlUtil.cleanHtmlTag(LINE_BREAK_TAG.matcher(value).replaceAll("\n")));
+            }
+            return value.trim();
+        }
+
+        private void setLabel(Element cell, String label) {
+            Element outer = outer(cell);
+            if (outer != cell) {
+                outer.setAttribute("label", label);
+            } else {
+                cell.setAttribute("value", label);
+            }
+        }
+
+        /**
+         * 获取节点的几何信息(x, y, width, height)
+         */
+        private int[] boundsOf(Element cell) {
+            for (Node child = cell.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child instanceof Element && "mxGeometry".equals(child.getNodeName())) {
+                    Element geometry = (Element) child;
+                    return new int[]{
+                            number(geometry.getAttribute("x"), 0),
+                            number(geometry.getAttribute("y"), 0),
+                            number(geometry.getAttribute("width"), DEFAULT_WIDTH),
+                            number(geometry.getAttribute("height"), DEFAULT_HEIGHT)
+                    };
+                }
+            }
+            return null;
+        }
+
+        private static int number(String value, int defaultValue) {
+            if (StrUtil.isBlank(value) || !NumberUtil.isNumber(value)) {
+                return defaultValue;
+            }
+            return (int) Math.round(Double.parseDouble(value));
+        }
+
+        /**
+         * 包装在object/UserObject中的节点, ID与文字由外层元素提供
+         */
+        private static Element outer(Element cell) {
+            Node parent = cell.getParentNode();
+            if (parent instanceof Element
+                    && ("object".equals(parent.getNodeName()) || "UserObject".equals(parent.getNodeName()))) {
+                return (Element) parent;
+            }
+            return cell;
+        }
+
+        private static String idOf(Element cell) {
+            String id = cell.getAttribute("id");
+            return id.isEmpty() ? outer(cell).getAttribute("id") : id;
+        }
+    }
+
+    /**
+     * 一次编辑的状态
+     */
+    private static final class Edit {
+
+        private final Diagram diagram;
+
+        private final Set<String> ids;
+
+        /**
+         * 模型使用的新节点ID到实际节点ID
+         */
+        private final Map<String, String> created = new HashMap<>();
+
+        private final Map<String, FlowchartGraph.Node> newNodes = new LinkedHashMap<>();
+
+        private final List<FlowchartGraph.Edge> newEdges = new ArrayList<>();
+
+        private final Map<String, Element> updated = new LinkedHashMap<>();
+
+        private final Set<String> removed = new LinkedHashSet<>();
+
+        private Edit(Diagram diagram) {
+            this.diagram = diagram;
+            this.ids = new HashSet<>(diagram.cells.keySet());
+        }
+
+        /**
+         * 应用节点指令
+         */
+        private void node(Operation operation) {
+            String cellId = resolve(operation.getId());
+            if (operation.getAction() == REMOVE) {
+                if (cellId != null) {
+                    removeNode(cellId);
+                }
+                return;
+            }
+
+            if (cellId != null) {
+                update(cellId, operation.getKind(), operation.getLabel());
+                return;
+            }
+            cellId = uniqueId(operation.getId());
+            created.put(operation.getId(), cellId);
+            newNodes.put(cellId, new FlowchartGraph.Node(cellId,
+                    operation.getKind() != null ? operation.getKind() : NodeKind.PROCESS,
+                    operation.getLabel() != null ? operation.getLabel() : operation.getId()));
+        }
+
+        /**
+         * 应用连线指令
+         */
+        private void edge(Operation operation) {
+            String source = resolve(operation.getId());
+            String target = resolve(operation.getTarget());
+            if (source == null || target == null) {
+                log.debug("忽略引用不存在节点的连线指令: {} -> {}", operation.getId(), operation.getTarget());
+                return;
+            }
+
+            List<Element> existing = new ArrayList<>();
+            for (Element edge : diagram.edges) {
+                if (source.equals(edge.getAttribute("source")) && target.equals(edge.getAttribute("target"))
+                        && !removed.contains(Diagram.idOf(edge))) {
+                    existing.add(edge);
+                }
+            }
+            FlowchartGraph.Edge added = null;
+            for (FlowchartGraph.Edge edge : newEdges) {
+                if (edge.getSource().equals(source) && edge.getTarget().equals(target)) {
+                    added = edge;
+                    break;
+                }
+            }
+
+            if (operation.getAction() == REMOVE) {
+                existing.forEach(edge -> removeCell(Diagram.idOf(edge)));
+                newEdges.remove(added);
+                return;
+            }
+
+            String label = operation.getLabel();
+            if (!existing.isEmpty()) {
+                if (label != null) {
+                    Element edge = existing.get(0);
+                    String edgeId = Diagram.idOf(edge);
+                    // 文字写在连线上, 原有的文字节点一并删除
+                    for (String child : diagram.children.getOrDefault(edgeId, Collections.emptyList())) {
+                        removeCell(child);
+                    }
+                    diagram.setLabel(edge, label);
+                    updated.put(edgeId, Diagram.outer(edge));
+                }
+            } else if (added != null) {
+                if (label != null) {
+                    added.setLabel(label);
+                }
+            } else {
+                newEdges.add(new FlowchartGraph.Edge(source, target, label, null));
+            }
+        }
+
+        /**
+         * 解析指令中的节点ID, 节点不存在或已删除时返回null
+         */
+        private String resolve(String id) {
+            String cellId = created.get(id);
+            if (cellId != null && newNodes.containsKey(cellId)) {
+                return cellId;
+            }
+            return diagram.vertices.containsKey(id) && !removed.contains(id) ? id : null;
+        }
+
+        private void update(String cellId, NodeKind kind, String label) {
+            FlowchartGraph.Node node = newNodes.get(cellId);
+            if (node != null) {
+                newNodes.put(cellId, new FlowchartGraph.Node(cellId,
+                        kind != null ? kind : node.getKind(), label != null ? label : node.getLabel()));
+                return;
+            }
+
+            Element cell = diagram.cells.get(cellId);
+            if (kind != null && kind != diagram.kindOf(cellId)) {
+                cell.setAttribute("style", kind.getStyle());
+            }
+            if (label != null) {
+                diagram.setLabel(cell, label);
+            }
+            updated.put(cellId, Diagram.outer(cell));
+        }
+
+        private void removeNode(String cellId) {
+            if (newNodes.remove(cellId) == null) {
+                removeCell(cellId);
+            }
+            newEdges.removeIf(edge -> edge.getSource().equals(cellId) || edge.getTarget().equals(cellId));
+        }
+
+        /**
+         * 删除已有节点, 连带删除与其相连的连线及其子节点
+         */
+        private void removeCell(String cellId) {
+            if (!removed.add(cellId)) {
+                return;
+            }
+            updated.remove(cellId);
+            for (Element edge : diagram.edges) {
+                if (cellId.equals(edge.getAttribute("source")) || cellId.equals(edge.getAttribute("target"))) {
+                    removeCell(Diagram.idOf(edge));
+                }
+            }
+            for (String child : diagram.children.getOrDefault(cellId, Collections.emptyList())) {
+                removeCell(child);
+            }
+        }
+
+        private String uniqueId(String base) {
+            String id = base;
+            for (int i = 1; !ids.add(id); i++) {
+                id = base + "-" + i;
+            }
+            return id;
+        }
+
+        private FlowchartPatch toPatch() {
+            FlowchartPatch patch = new FlowchartPatch();
+            patch.getRemoved().addAll(removed);
+            for (Map.Entry<String, Element> entry : updated.entrySet()) {
+                patch.getUpdated().add(new FlowchartPatch.Cell(entry.getKey(),
+                        XmlUtil.toStr(entry.getValue(), "UTF-8", false, true)));
+            }
+
+            Map<String, String> parents = place();
+            for (FlowchartGraph.Node node : newNodes.values()) {
+                StringBuilder xml = new StringBuilder(256);
+                FlowchartXmlWriter.appendVertex(xml, "", node.getId(), parents.get(node.getId()), node);
+                patch.getAdded().add(new FlowchartPatch.Cell(node.getId(), xml.toString()));
+            }
+            for (FlowchartGraph.Edge edge : newEdges) {
+                String edgeId = uniqueId("e" + edge.getSource() + "-" + edge.getTarget());
+                StringBuilder xml = new StringBuilder(224);
+                FlowchartXmlWriter.appendEdge(xml, "", edgeId, diagram.layer, edge.getSource(), edge.getTarget(), edge);
+                patch.getAdded().add(new FlowchartPatch.Cell(edgeId, xml.toString()));
+            }
+            return patch;
+        }
+
+        /**
+         * 计算新节点位置: 优先放在相连的已定位节点下方(或上方), 与同一父节点下的节点重叠时向右平移
+         *
+         * @return 节点ID到父节点ID
+         */
+        private Map<String, String> place() {
+            Map<String, int[]> bounds = new HashMap<>();
+            Map<String, String> parents = new HashMap<>();
+            for (Map.Entry<String, Element> entry : diagram.vertices.entrySet()) {
+                int[] box = removed.contains(entry.getKey()) ? null : diagram.boundsOf(entry.getValue());
+                if (box != null) {
+                    bounds.put(entry.getKey(), box);
+                    parents.put(entry.getKey(), entry.getValue().getAttribute("parent"));
+                }
+            }
+
+            List<FlowchartGraph.Node> pending = new ArrayList<>(newNodes.values());
+            while (!pending.isEmpty()) {
+                boolean progress = false;
+                for (Iterator<FlowchartGraph.Node> iterator = pending.iterator(); iterator.hasNext(); ) {
+                    if (placeNear(iterator.next(), bounds, parents)) {
+                        iterator.remove();
+                        progress = true;
+                    }
+                }
+                if (!progress) {
+                    // 与已定位节点都不相连: 放在图层最下方
+                    FlowchartGraph.Node node = pending.remove(0);
+                    int left = Integer.MAX_VALUE;
+                    int bottom = Integer.MIN_VALUE;
+                    for (Map.Entry<String, int[]> entry : bounds.entrySet()) {
+                        if (diagram.layer.equals(parents.get(entry.getKey()))) {
+                            left = Math.min(left, entry.getValue()[0]);
+                            bottom = Math.max(bottom, entry.getValue()[1] + entry.getValue()[3]);
+                        }
+                    }
+                    put(node, diagram.layer, left == Integer.MAX_VALUE ? MARGIN : left,
+                            bottom == Integer.MIN_VALUE ? MARGIN : bottom + LAYER_SPACING, bounds, parents);
+                }
+            }
+            return parents;
+        }
+
+        private boolean placeNear(FlowchartGraph.Node node, Map<String, int[]> bounds, Map<String, String> parents) {
+            for (FlowchartGraph.Edge edge : newEdges) {
+                boolean incoming = edge.getTarget().equals(node.getId());
+                String neighbor = incoming ? edge.getSource() : edge.getTarget();
+                if ((!incoming && !edge.getSource().equals(node.getId())) || !bounds.containsKey(neighbor)) {
+                    continue;
+                }
+                int[] box = bounds.get(neighbor);
+                int x = box[0] + box[2] / 2 - node.getWidth() / 2;
+                int y = incoming ? box[1] + box[3] + LAYER_SPACING : box[1] - node.getHeight() - LAYER_SPACING;
+                put(node, parents.get(neighbor), x, y, bounds, parents);
+                return true;
+            }
+            return false;
+        }
+
+        private void put(FlowchartGraph.Node node, String parent, int x, int y,
+                         Map<String, int[]> bounds, Map<String, String> parents) {
+            int width = node.getWidth();
+            int height = node.getHeight();
+            int[] overlap;
+            while ((overlap = overlap(parent, x, y, width, height, bounds, parents)) != null) {
+                x = overlap[0] + overlap[2] + NODE_SPACING;
+            }
+            node.setX(x);
+            node.setY(y);
+            bounds.put(node.getId(), new int[]{x, y, width, height});
+            parents.put(node.getId(), parent);
+        }
+
+        private int[] overlap(String parent, int x, int y, int width, int height,
+                              Map<String, int[]> bounds, Map<String, String> parents) {
+            for (Map.Entry<String, int[]> entry : bounds.entrySet()) {
+                int[] box = entry.getValue();
+                if (parent.equals(parents.get(entry.getKey()))
+                        && x < box[0] + box[2] + NODE_SPACING && box[0] < x + width + NODE_SPACING
+                        && y < box[1] + box[3] + NODE_SPACING && box[1] < y + height + NODE_SPACING) {
+                    return box;
+                }
+            }
+            return null;
+        }
+    }
+}
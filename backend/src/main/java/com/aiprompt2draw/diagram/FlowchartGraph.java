@@ -0,0 +1,97 @@
+package com.aiprompt2draw.diagram;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流程图结构
+ * <p>
+ * 节点保持声明顺序, 由布局计算坐标后输出为mxGraphModel XML
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Getter
+public class FlowchartGraph {
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    private final List<Edge> edges = new ArrayList<>();
+
+    /**
+     * 添加节点, ID已存在时返回已有节点
+     *
+     * @param id    节点ID
+     * @param kind  节点类型
+     * @param label 节点文字
+     * @return 节点
+     */
+    public Node addNode(String id, NodeKind kind, String label) {
+        return nodes.computeIfAbsent(id, key -> new Node(key, kind, label));
+    }
+
+    /**
+     * 获取节点
+     *
+     * @param id 节点ID
+     * @return 节点, 不存在时返回null
+     */
+    public Node getNode(String id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * 添加连线
+     *
+     * @param source 起点ID
+     * @param target 终点ID
+     * @param label  连线文字
+     */
+    public void addEdge(String source, String target, String label) {
+        edges.add(new Edge(source, target, label, null));
+    }
+
+    /**
+     * 流程图节点
+     */
+    @Data
+    public static class Node {
+
+        private final String id;
+        private final NodeKind kind;
+        private final String label;
+        private int x;
+        private int y;
+
+        public int getWidth() {
+            return kind.getWidth();
+        }
+
+        public int getHeight() {
+            return kind.getHeight();
+        }
+    }
+
+    /**
+     * 流程图连线
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Edge {
+
+        private String source;
+        private String target;
+        private String label;
+
+        /**
+         * 连线拐点(x0, y0, x1, y1...), 为空时由draw.io自动路由
+         */
+        private int[] points;
+    }
+}
@@ -0,0 +1,41 @@
+package com.aiprompt2draw.diagram;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流程图节点补丁
+ * <p>
+ * 描述编辑后需要新增、替换与删除的mxCell, 客户端按顺序应用:
+ * 删除removed中的节点, 用updated中的同ID节点替换原节点, 再将added中的节点追加到root末尾
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+public class FlowchartPatch {
+
+    private final List<Cell> added = new ArrayList<>();
+
+    private final List<Cell> updated = new ArrayList<>();
+
+    private final List<String> removed = new ArrayList<>();
+
+    /**
+     * 补丁中的单个节点
+     */
+    @Data
+    @AllArgsConstructor
+    public static class Cell {
+
+        private String id;
+
+        /**
+         * 完整的mxCell XML(包装在object中的节点为object元素)
+         */
+        private String xml;
+    }
+}
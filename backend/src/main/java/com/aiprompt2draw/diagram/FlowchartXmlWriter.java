@@ -0,0 +1,124 @@
+package com.aiprompt2draw.diagram;
+
+import cn.hutool.core.util.XmlUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * mxGraphModel XML输出
+ * <p>
+ * 节点ID按声明顺序从2开始递增(0、1为draw.io约定的根与默认图层), 连线排在全部节点之后
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public final class FlowchartXmlWriter {
+
+    private FlowchartXmlWriter() {
+    }
+
+    /**
+     * 将已完成布局的流程图输出为XML
+     *
+     * @param graph 流程图
+     * @return mxGraphModel XML
+     */
+    public static String write(FlowchartGraph graph) {
+        StringBuilder xml = new StringBuilder(256 + graph.getNodes().size() * 256 + graph.getEdges().size() * 224);
+        xml.append("<mxGraphModel>\n")
+                .append("  <root>\n")
+                .append("    <mxCell id=\"0\"/>\n")
+                .append("    <mxCell id=\"1\" parent=\"0\"/>\n");
+
+        Map<String, String> cellIds = new HashMap<>();
+        int nextId = 2;
+        for (FlowchartGraph.Node node : graph.getNodes().values()) {
+            String cellId = String.valueOf(nextId++);
+            cellIds.put(node.getId(), cellId);
+            appendVertex(xml, "    ", cellId, "1", node);
+        }
+
+        for (FlowchartGraph.Edge edge : graph.getEdges()) {
+            String source = cellIds.get(edge.getSource());
+            String target = cellIds.get(edge.getTarget());
+            if (source == null || target == null) {
+                continue;
+            }
+            appendEdge(xml, "    ", String.valueOf(nextId++), "1", source, target, edge);
+        }
+
+        return xml.append("  </root>\n")
+                .append("</mxGraphModel>")
+                .toString();
+    }
+
+    /**
+     * 输出节点
+     *
+     * @param xml    输出
+     * @param indent 缩进
+     * @param cellId 节点ID
+     * @param parent 父节点ID
+     * @param node   已完成布局的节点
+     */
+    static void appendVertex(StringBuilder xml, String indent, String cellId, String parent,
+                             FlowchartGraph.Node node) {
+        xml.append(indent).append("<mxCell id=\"").append(escape(cellId))
+                .append("\" value=\"").append(escape(node.getLabel()))
+                .append("\" style=\"").append(node.getKind().getStyle())
+                .append("\" vertex=\"1\" parent=\"").append(escape(parent)).append("\">\n")
+                .append(indent).append("  <mxGeometry x=\"").append(node.getX())
+                .append("\" y=\"").append(node.getY())
+                .append("\" width=\"").append(node.getWidth())
+                .append("\" height=\"").append(node.getHeight())
+                .append("\" as=\"geometry\"/>\n")
+                .append(indent).append("</mxCell>\n");
+    }
+
+    /**
+     * 输出连线
+     *
+     * @param xml    输出
+     * @param indent 缩进
+     * @param cellId 连线ID
+     * @param parent 父节点ID
+     * @param source 起点节点ID
+     * @param target 终点节点ID
+     * @param edge   连线(文字与拐点)
+     */
+    static void appendEdge(StringBuilder xml, String indent, String cellId, String parent,
+                           String source, String target, FlowchartGraph.Edge edge) {
+        xml.append(indent).append("<mxCell id=\"").append(escape(cellId))
+                .append("\" value=\"").append(escape(edge.getLabel()))
+                .append("\" style=\"").append(NodeKind.EDGE_STYLE)
+                .append("\" edge=\"1\" parent=\"").append(escape(parent))
+                .append("\" source=\"").append(escape(source))
+                .append("\" target=\"").append(escape(target)).append("\">\n");
+
+        int[] points = edge.getPoints();
+        if (points == null || points.length == 0) {
+            xml.append(indent).append("  <mxGeometry relative=\"1\" as=\"geometry\"/>\n");
+        } else {
+            xml.append(indent).append("  <mxGeometry relative=\"1\" as=\"geometry\">\n")
+                    .append(indent).append("    <Array as=\"points\">\n");
+            for (int i = 0; i + 1 < points.length; i += 2) {
+                xml.append(indent).append("      <mxPoint x=\"").append(points[i])
+                        .append("\" y=\"").append(points[i + 1]).append("\"/>\n");
+            }
+            xml.append(indent).append("    </Array>\n")
+                    .append(indent).append("  </mxGeometry>\n");
+        }
+        xml.append(indent).append("</mxCell>\n");
+    }
+
+    /**
+     * 转义属性值, 换行输出为draw.io可识别的字符引用
+     */
+    private static String escape(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        return XmlUtil.escape(value).replace("\n", "&#xa;");
+    }
+}
@@ -0,0 +1,626 @@
+package com.aiprompt2draw.diagram;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分层布局引擎(Sugiyama)
+ * <p>
+ * 自上而下布局有向图, 依次执行:
+ * <ol>
+ *     <li>消环: 深度优先遍历, 将回边临时反向</li>
+ *     <li>分层: 最长路径分层, 仅有出边的节点下沉到后继的上一层</li>
+ *     <li>跨层连线拆分为虚拟节点, 使每条连线只连接相邻两层</li>
+ *     <li>减少交叉: 重心法上下交替扫描, 保留交叉数最少的排列</li>
+ *     <li>坐标分配: 以相邻层重心为目标, 在同层次序与最小间距约束下做保序回归, 上下交替迭代</li>
+ * </ol>
+ * 全部计算基于数组下标, 不依赖具体图结构; 跨层连线经过的虚拟节点坐标作为连线拐点返回
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class LayeredLayout {
+
+    private static final byte WHITE = 0;
+    private static final byte GRAY = 1;
+    private static final byte BLACK = 2;
+
+    /**
+     * 重心排序键中次序所占位数
+     */
+    private static final int POS_BITS = 20;
+
+    /**
+     * 虚拟节点在坐标分配中的权重, 使长连线尽量保持竖直
+     */
+    private static final double DUMMY_WEIGHT = 2.0;
+
+    private final Timer timer;
+
+    @Value("${app.diagram.layout.margin:40}")
+    private int margin;
+
+    @Value("${app.diagram.layout.layer-spacing:80}")
+    private int layerSpacing;
+
+    @Value("${app.diagram.layout.node-spacing:60}")
+    private int nodeSpacing;
+
+    @Value("${app.diagram.layout.crossing-sweeps:8}")
+    private int crossingSweeps;
+
+    @Value("${app.diagram.layout.coordinate-passes:4}")
+    private int coordinatePasses;
+
+    public LayeredLayout(MeterRegistry meterRegistry) {
+        this.timer = Timer.builder("aiprompt2draw.diagram.layout")
+                .description("流程图自动布局耗时")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 计算布局
+     *
+     * @param widths  节点宽度
+     * @param heights 节点高度
+     * @param sources 连线起点下标
+     * @param targets 连线终点下标
+     * @return 节点左上角坐标与连线拐点
+     */
+    public Result layout(int[] widths, int[] heights, int[] sources, int[] targets) {
+        long startTime = System.nanoTime();
+        Result result = new Run(widths, heights, sources, targets).execute();
+        long elapsed = System.nanoTime() - startTime;
+        timer.record(elapsed, TimeUnit.NANOSECONDS);
+        log.debug("自动布局完成: nodes={}, edges={}, layers={}, crossings={}, time={}us",
+                widths.length, sources.length, result.getLayerCount(), result.getCrossings(), elapsed / 1000);
+        return result;
+    }
+
+    /**
+     * 布局结果
+     */
+    @Getter
+    public static class Result {
+
+        /**
+         * 节点左上角横坐标
+         */
+        private final int[] x;
+
+        /**
+         * 节点左上角纵坐标
+         */
+        private final int[] y;
+
+        /**
+         * 每条连线的拐点(x0, y0, x1, y1...), 不跨层的连线为null
+         */
+        private final int[][] edgePoints;
+
+        private final int layerCount;
+
+        private final int crossings;
+
+        Result(int[] x, int[] y, int[][] edgePoints, int layerCount, int crossings) {
+            this.x = x;
+            this.y = y;
+            this.edgePoints = edgePoints;
+            this.layerCount = layerCount;
+            this.crossings = crossings;
+        }
+    }
+
+    /**
+     * 单次布局的计算状态
+     */
+    private class Run {
+
+        private final int n;
+        private final int m;
+        private final int[] widths;
+        private final int[] heights;
+        private final int[] sources;
+        private final int[] targets;
+
+        /**
+         * 连线是否有效(排除自环与越界下标)
+         */
+        private final boolean[] valid;
+
+        /**
+         * 连线是否为消环时反向的回边
+         */
+        private final boolean[] reversed;
+
+        private int[] layer;
+        private int layerCount;
+
+        /**
+         * 含虚拟节点的节点总数, 虚拟节点下标从n开始
+         */
+        private int total;
+        private int[] vLayer;
+        private int[] vWidth;
+
+        /**
+         * 每条连线第一个虚拟节点的下标与跨越层数
+         */
+        private int[] chainStart;
+        private int[] span;
+
+        private int[] upStart;
+        private int[] upAdj;
+        private int[] downStart;
+        private int[] downAdj;
+
+        private int[][] layers;
+        private int[] pos;
+
+        Run(int[] widths, int[] heights, int[] sources, int[] targets) {
+            this.n = widths.length;
+            this.m = sources.length;
+            this.widths = widths;
+            this.heights = heights;
+            this.sources = sources;
+            this.targets = targets;
+            this.valid = new boolean[m];
+            this.reversed = new boolean[m];
+            for (int e = 0; e < m; e++) {
+                valid[e] = sources[e] != targets[e]
+                        && sources[e] >= 0 && sources[e] < n && targets[e] >= 0 && targets[e] < n;
+            }
+        }
+
+        Result execute() {
+            if (n == 0) {
+                return new Result(new int[0], new int[0], new int[m][], 0, 0);
+            }
+            removeCycles();
+            assignLayers();
+            insertDummies();
+            int crossings = minimizeCrossings();
+            double[] centers = assignCoordinates();
+            return buildResult(centers, crossings);
+        }
+
+        private int from(int e) {
+            return reversed[e] ? targets[e] : sources[e];
+        }
+
+        private int to(int e) {
+            return reversed[e] ? sources[e] : targets[e];
+        }
+
+        /**
+         * 深度优先遍历, 指向栈中节点的连线即为回边; 优先从无入边的节点出发以保持原有方向
+         */
+        private void removeCycles() {
+            int[] outStart = new int[n + 1];
+            int[] inDegree = new int[n];
+            for (int e = 0; e < m; e++) {
+                if (valid[e]) {
+                    outStart[sources[e] + 1]++;
+                    inDegree[targets[e]]++;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                outStart[i + 1] += outStart[i];
+            }
+            int[] outEdges = new int[outStart[n]];
+            int[] fill = Arrays.copyOf(outStart, n);
+            for (int e = 0; e < m; e++) {
+                if (valid[e]) {
+                    outEdges[fill[sources[e]]++] = e;
+                }
+            }
+
+            byte[] state = new byte[n];
+            int[] stack = new int[n];
+            int[] cursor = new int[n];
+            for (int pass = 0; pass < 2; pass++) {
+                for (int root = 0; root < n; root++) {
+                    if (state[root] != WHITE || (pass == 0 && inDegree[root] > 0)) {
+                        continue;
+                    }
+                    int depth = 0;
+                    stack[0] = root;
+                    cursor[0] = outStart[root];
+                    state[root] = GRAY;
+                    while (depth >= 0) {
+                        int u = stack[depth];
+                        if (cursor[depth] == outStart[u + 1]) {
+                            state[u] = BLACK;
+                            depth--;
+                            continue;
+                        }
+                        int e = outEdges[cursor[depth]++];
+                        int v = targets[e];
+                        if (state[v] == GRAY) {
+                            reversed[e] = true;
+                        } else if (state[v] == WHITE) {
+                            state[v] = GRAY;
+                            stack[++depth] = v;
+                            cursor[depth] = outStart[v];
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * 最长路径分层
+         */
+        private void assignLayers() {
+            int[] outStart = new int[n + 1];
+            int[] inDegree = new int[n];
+            for (int e = 0; e < m; e++) {
+                if (valid[e]) {
+                    outStart[from(e) + 1]++;
+                    inDegree[to(e)]++;
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                outStart[i + 1] += outStart[i];
+            }
+            int[] outAdj = new int[outStart[n]];
+            int[] fill = Arrays.copyOf(outStart, n);
+            for (int e = 0; e < m; e++) {
+                if (valid[e]) {
+                    outAdj[fill[from(e)]++] = to(e);
+                }
+            }
+
+            layer = new int[n];
+            int[] order = new int[n];
+            int[] remaining = Arrays.copyOf(inDegree, n);
+            int head = 0;
+            int tail = 0;
+            for (int i = 0; i < n; i++) {
+                if (remaining[i] == 0) {
+                    order[tail++] = i;
+                }
+            }
+            while (head < tail) {
+                int u = order[head++];
+                for (int k = outStart[u]; k < outStart[u + 1]; k++) {
+                    int v = outAdj[k];
+                    layer[v] = Math.max(layer[v], layer[u] + 1);
+                    if (--remaining[v] == 0) {
+                        order[tail++] = v;
+                    }
+                }
+            }
+
+            // 仅有出边的节点下沉到紧邻后继的位置, 避免分支起点都挤在第一层
+            for (int i = tail - 1; i >= 0; i--) {
+                int u = order[i];
+                if (inDegree[u] > 0 || outStart[u] == outStart[u + 1]) {
+                    continue;
+                }
+                int nearest = Integer.MAX_VALUE;
+                for (int k = outStart[u]; k < outStart[u + 1]; k++) {
+                    nearest = Math.min(nearest, layer[outAdj[k]]);
+                }
+                layer[u] = nearest - 1;
+            }
+
+            layerCount = 0;
+            for (int i = 0; i < n; i++) {
+                layerCount = Math.max(layerCount, layer[i] + 1);
+            }
+        }
+
+        /**
+         * 拆分跨层连线并建立相邻层之间的邻接表
+         */
+        private void insertDummies() {
+            chainStart = new int[m];
+            span = new int[m];
+            int dummies = 0;
+            int segments = 0;
+            for (int e = 0; e < m; e++) {
+                if (valid[e]) {
+                    span[e] = layer[to(e)] - layer[from(e)];
+                    chainStart[e] = n + dummies;
+                    dummies += span[e] - 1;
+                    segments += span[e];
+                }
+            }
+
+            total = n + dummies;
+            vLayer = Arrays.copyOf(layer, total);
+            vWidth = Arrays.copyOf(widths, total);
+            int[] segUpper = new int[segments];
+            int[] segLower = new int[segments];
+            int s = 0;
+            for (int e = 0; e < m; e++) {
+                if (!valid[e]) {
+                    continue;
+                }
+                int previous = from(e);
+                for (int k = 1; k < span[e]; k++) {
+                    int dummy = chainStart[e] + k - 1;
+                    vLayer[dummy] = layer[from(e)] + k;
+                    segUpper[s] = previous;
+                    segLower[s++] = dummy;
+                    previous = dummy;
+                }
+                segUpper[s] = previous;
+                segLower[s++] = to(e);
+            }
+
+            upStart = new int[total + 1];
+            downStart = new int[total + 1];
+            for (int k = 0; k < segments; k++) {
+                downStart[segUpper[k] + 1]++;
+                upStart[segLower[k] + 1]++;
+            }
+            for (int i = 0; i < total; i++) {
+                downStart[i + 1] += downStart[i];
+                upStart[i + 1] += upStart[i];
+            }
+            downAdj = new int[segments];
+            upAdj = new int[segments];
+            int[] downFill = Arrays.copyOf(downStart, total);
+            int[] upFill = Arrays.copyOf(upStart, total);
+            for (int k = 0; k < segments; k++) {
+                downAdj[downFill[segUpper[k]]++] = segLower[k];
+                upAdj[upFill[segLower[k]]++] = segUpper[k];
+            }
+
+            int[] sizes = new int[layerCount];
+            for (int v = 0; v < total; v++) {
+                sizes[vLayer[v]]++;
+            }
+            layers = new int[layerCount][];
+            for (int l = 0; l < layerCount; l++) {
+                layers[l] = new int[sizes[l]];
+            }
+            pos = new int[total];
+            Arrays.fill(sizes, 0);
+            for (int v = 0; v < total; v++) {
+                pos[v] = sizes[vLayer[v]]++;
+                layers[vLayer[v]][pos[v]] = v;
+            }
+        }
+
+        /**
+         * 重心法减少交叉
+         *
+         * @return 最终交叉数
+         */
+        private int minimizeCrossings() {
+            int best = countCrossings();
+            int[][] bestLayers = copyLayers();
+            for (int sweep = 0; sweep < crossingSweeps && best > 0; sweep++) {
+                for (int l = 1; l < layerCount; l++) {
+                    reorder(layers[l], upStart, upAdj);
+                }
+                for (int l = layerCount - 2; l >= 0; l--) {
+                    reorder(layers[l], downStart, downAdj);
+                }
+                int crossings = countCrossings();
+                if (crossings >= best) {
+                    break;
+                }
+                best = crossings;
+                bestLayers = copyLayers();
+            }
+
+            layers = bestLayers;
+            for (int[] row : layers) {
+                for (int j = 0; j < row.length; j++) {
+                    pos[row[j]] = j;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * 按相邻层邻居的平均次序重排一层, 没有邻居的节点保持原位, 重心相同时保持原有先后
+         */
+        private void reorder(int[] row, int[] start, int[] adj) {
+            long[] keys = new long[row.length];
+            for (int j = 0; j < row.length; j++) {
+                int v = row[j];
+                int degree = start[v + 1] - start[v];
+                double barycenter = j;
+                if (degree > 0) {
+                    long sum = 0;
+                    for (int k = start[v]; k < start[v + 1]; k++) {
+                        sum += pos[adj[k]];
+                    }
+                    barycenter = (double) sum / degree;
+                }
+                keys[j] = (Math.round(barycenter * 1024) << POS_BITS) | j;
+            }
+            Arrays.sort(keys);
+
+            int[] previous = row.clone();
+            for (int j = 0; j < row.length; j++) {
+                row[j] = previous[(int) (keys[j] & ((1 << POS_BITS) - 1))];
+                pos[row[j]] = j;
+            }
+        }
+
+        /**
+         * 逐对相邻层统计交叉数: 按上层次序展开连线, 下层次序中的逆序对即交叉
+         */
+        private int countCrossings() {
+            int crossings = 0;
+            int[] lowers = new int[16];
+            for (int l = 0; l + 1 < layerCount; l++) {
+                int[] tree = new int[layers[l + 1].length + 1];
+                int inserted = 0;
+                for (int u : layers[l]) {
+                    int degree = downStart[u + 1] - downStart[u];
+                    if (degree > lowers.length) {
+                        lowers = new int[degree];
+                    }
+                    for (int k = 0; k < degree; k++) {
+                        lowers[k] = pos[downAdj[downStart[u] + k]];
+                    }
+                    Arrays.sort(lowers, 0, degree);
+                    for (int k = 0; k < degree; k++) {
+                        int p = lowers[k] + 1;
+                        int notGreater = 0;
+                        for (int i = p; i > 0; i -= i & -i) {
+                            notGreater += tree[i];
+                        }
+                        crossings += inserted - notGreater;
+                        for (int i = p; i < tree.length; i += i & -i) {
+                            tree[i]++;
+                        }
+                        inserted++;
+                    }
+                }
+            }
+            return crossings;
+        }
+
+        private int[][] copyLayers() {
+            int[][] copy = new int[layers.length][];
+            for (int l = 0; l < layers.length; l++) {
+                copy[l] = layers[l].clone();
+            }
+            return copy;
+        }
+
+        /**
+         * 分配节点中心横坐标
+         */
+        private double[] assignCoordinates() {
+            double[] x = new double[total];
+            for (int[] row : layers) {
+                double cursor = 0;
+                for (int j = 0; j < row.length; j++) {
+                    if (j > 0) {
+                        cursor += separation(row[j - 1], row[j]);
+                    }
+                    x[row[j]] = cursor;
+                }
+            }
+
+            int maxRow = 0;
+            for (int[] row : layers) {
+                maxRow = Math.max(maxRow, row.length);
+            }
+            double[] offset = new double[maxRow];
+            double[] sumWeighted = new double[maxRow];
+            double[] sumWeight = new double[maxRow];
+            int[] blockEnd = new int[maxRow];
+
+            for (int pass = 0; pass < coordinatePasses; pass++) {
+                boolean down = pass % 2 == 0;
+                for (int i = 0; i < layerCount; i++) {
+                    int l = down ? i : layerCount - 1 - i;
+                    place(layers[l], x, down ? upStart : downStart, down ? upAdj : downAdj,
+                            offset, sumWeighted, sumWeight, blockEnd);
+                }
+            }
+            return x;
+        }
+
+        /**
+         * 在保持次序与最小间距的前提下, 使一层节点尽量靠近相邻层邻居的平均位置
+         * <p>
+         * 以累计最小间距为偏移量换元后, 约束变为单调不减, 用加权保序回归(相邻违例合并)一次线性求解
+         */
+        private void place(int[] row, double[] x, int[] start, int[] adj,
+                           double[] offset, double[] sumWeighted, double[] sumWeight, int[] blockEnd) {
+            int blocks = 0;
+            for (int j = 0; j < row.length; j++) {
+                int v = row[j];
+                offset[j] = j == 0 ? 0 : offset[j - 1] + separation(row[j - 1], v);
+
+                double target = x[v];
+                int degree = start[v + 1] - start[v];
+                if (degree > 0) {
+                    double sum = 0;
+                    for (int k = start[v]; k < start[v + 1]; k++) {
+                        sum += x[adj[k]];
+                    }
+                    target = sum / degree;
+                }
+                double weight = v >= n ? DUMMY_WEIGHT : 1.0;
+
+                sumWeighted[blocks] = weight * (target - offset[j]);
+                sumWeight[blocks] = weight;
+                blockEnd[blocks++] = j;
+                while (blocks > 1 && sumWeighted[blocks - 2] / sumWeight[blocks - 2]
+                        > sumWeighted[blocks - 1] / sumWeight[blocks - 1]) {
+                    sumWeighted[blocks - 2] += sumWeighted[blocks - 1];
+                    sumWeight[blocks - 2] += sumWeight[blocks - 1];
+                    blockEnd[blocks - 2] = blockEnd[blocks - 1];
+                    blocks--;
+                }
+            }
+
+            int j = 0;
+            for (int b = 0; b < blocks; b++) {
+                double value = sumWeighted[b] / sumWeight[b];
+                for (; j <= blockEnd[b]; j++) {
+                    x[row[j]] = value + offset[j];
+                }
+            }
+        }
+
+        private double separation(int left, int right) {
+            return (vWidth[left] + vWidth[right]) / 2.0 + nodeSpacing;
+        }
+
+        private Result buildResult(double[] centers, int crossings) {
+            double minLeft = Double.MAX_VALUE;
+            for (int v = 0; v < total; v++) {
+                minLeft = Math.min(minLeft, centers[v] - vWidth[v] / 2.0);
+            }
+            double shift = margin - minLeft;
+
+            int[] layerHeight = new int[layerCount];
+            for (int v = 0; v < n; v++) {
+                layerHeight[layer[v]] = Math.max(layerHeight[layer[v]], heights[v]);
+            }
+            int[] layerTop = new int[layerCount];
+            int top = margin;
+            for (int l = 0; l < layerCount; l++) {
+                layerTop[l] = top;
+                top += layerHeight[l] + layerSpacing;
+            }
+
+            int[] x = new int[n];
+            int[] y = new int[n];
+            for (int v = 0; v < n; v++) {
+                x[v] = (int) Math.round(centers[v] + shift - widths[v] / 2.0);
+                y[v] = layerTop[layer[v]] + (layerHeight[layer[v]] - heights[v]) / 2;
+            }
+
+            int[][] edgePoints = new int[m][];
+            for (int e = 0; e < m; e++) {
+                if (!valid[e] || span[e] < 2) {
+                    continue;
+                }
+                int count = span[e] - 1;
+                int[] points = new int[count * 2];
+                for (int k = 0; k < count; k++) {
+                    int dummy = chainStart[e] + k;
+                    // 回边的虚拟节点自下而上排列, 拐点需按连线方向输出
+                    int slot = reversed[e] ? count - 1 - k : k;
+                    points[slot * 2] = (int) Math.round(centers[dummy] + shift);
+                    points[slot * 2 + 1] = layerTop[vLayer[dummy]] + layerHeight[vLayer[dummy]] / 2;
+                }
+                edgePoints[e] = points;
+            }
+            return new Result(x, y, edgePoints, layerCount, crossings);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.aiprompt2draw.diagram;
+
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.XmlUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * mxGraphModel重新布局
+ * <p>
+ * 解析模型直接输出的XML, 用{@link LayeredLayout}重新计算顶层节点坐标并改写mxGeometry,
+ * 模型给出的坐标与连线拐点均被忽略; 容器内的子节点与连线上的文字保持相对坐标不变
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MxGraphLayouter {
+
+    private static final int DEFAULT_WIDTH = 120;
+    private static final int DEFAULT_HEIGHT = 60;
+
+    private final LayeredLayout layeredLayout;
+
+    /**
+     * 重新布局
+     *
+     * @param xml mxGraphModel XML
+     * @return 改写坐标后的XML, 无法解析或没有节点时原样返回
+     */
+    public String relayout(String xml) {
+        Document document;
+        try {
+            document = XmlUtil.parseXml(xml);
+        } catch (Exception e) {
+            log.warn("XML解析失败, 跳过自动布局: {}", e.getMessage());
+            return xml;
+        }
+
+        NodeList cells = document.getElementsByTagName("mxCell");
+        Set<String> shapeIds = new HashSet<>();
+        for (int i = 0; i < cells.getLength(); i++) {
+            Element cell = (Element) cells.item(i);
+            if ("1".equals(cell.getAttribute("vertex")) || "1".equals(cell.getAttribute("edge"))) {
+                shapeIds.add(cell.getAttribute("id"));
+            }
+        }
+
+        List<Element> geometries = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        List<Element> edgeCells = new ArrayList<>();
+        for (int i = 0; i < cells.getLength(); i++) {
+            Element cell = (Element) cells.item(i);
+            if ("1".equals(cell.getAttribute("edge"))) {
+                edgeCells.add(cell);
+                continue;
+            }
+            // 只布局直接位于图层上的节点, 容器内的子节点与连线文字随父元素移动
+            if (!"1".equals(cell.getAttribute("vertex")) || shapeIds.contains(cell.getAttribute("parent"))) {
+                continue;
+            }
+            Element geometry = geometryOf(cell);
+            if (geometry != null) {
+                indexes.put(cell.getAttribute("id"), geometries.size());
+                geometries.add(geometry);
+            }
+        }
+        if (geometries.isEmpty()) {
+            return xml;
+        }
+
+        int[] widths = new int[geometries.size()];
+        int[] heights = new int[geometries.size()];
+        for (int i = 0; i < geometries.size(); i++) {
+            widths[i] = dimension(geometries.get(i).getAttribute("width"), DEFAULT_WIDTH);
+            heights[i] = dimension(geometries.get(i).getAttribute("height"), DEFAULT_HEIGHT);
+        }
+
+        List<Element> laidOutEdges = new ArrayList<>();
+        List<int[]> endpoints = new ArrayList<>();
+        for (Element cell : edgeCells) {
+            Integer source = indexes.get(cell.getAttribute("source"));
+            Integer target = indexes.get(cell.getAttribute("target"));
+            if (source != null && target != null) {
+                laidOutEdges.add(cell);
+                endpoints.add(new int[]{source, target});
+            }
+        }
+        int[] sources = new int[endpoints.size()];
+        int[] targets = new int[endpoints.size()];
+        for (int i = 0; i < endpoints.size(); i++) {
+            sources[i] = endpoints.get(i)[0];
+            targets[i] = endpoints.get(i)[1];
+        }
+
+        LayeredLayout.Result result = layeredLayout.layout(widths, heights, sources, targets);
+        for (int i = 0; i < geometries.size(); i++) {
+            Element geometry = geometries.get(i);
+            geometry.setAttribute("x", String.valueOf(result.getX()[i]));
+            geometry.setAttribute("y", String.valueOf(result.getY()[i]));
+            geometry.setAttribute("width", String.valueOf(widths[i]));
+            geometry.setAttribute("height", String.valueOf(heights[i]));
+        }
+        for (int i = 0; i < laidOutEdges.size(); i++) {
+            rewritePoints(document, laidOutEdges.get(i), result.getEdgePoints()[i]);
+        }
+
+        return XmlUtil.toStr(document.getDocumentElement(), "UTF-8", false, true);
+    }
+
+    private Element geometryOf(Element cell) {
+        for (Node child = cell.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && "mxGeometry".equals(child.getNodeName())) {
+                return (Element) child;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 用布局计算的拐点替换模型给出的拐点
+     */
+    private void rewritePoints(Document document, Element edgeCell, int[] points) {
+        Element geometry = geometryOf(edgeCell);
+        if (geometry == null) {
+            geometry = document.createElement("mxGeometry");
+            geometry.setAttribute("relative", "1");
+            geometry.setAttribute("as", "geometry");
+            edgeCell.appendChild(geometry);
+        }
+        for (Node child = geometry.getFirstChild(); child != null; ) {
+            Node next = child.getNextSibling();
+            if (child instanceof Element && "Array".equals(child.getNodeName())
+                    && "points".equals(((Element) child).getAttribute("as"))) {
+                geometry.removeChild(child);
+            }
+            child = next;
+        }
+        if (points == null) {
+            return;
+        }
+
+        Element array = document.createElement("Array");
+        array.setAttribute("as", "points");
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            Element point = document.createElement("mxPoint");
+            point.setAttribute("x", String.valueOf(points[i]));
+            point.setAttribute("y", String.valueOf(points[i + 1]));
+            array.appendChild(point);
+        }
+        geometry.appendChild(array);
+    }
+
+    private int dimension(String value, int defaultValue) {
+        if (StrUtil.isBlank(value) || !NumberUtil.isNumber(value)) {
+            return defaultValue;
+        }
+        int parsed = (int) Math.round(Double.parseDouble(value));
+        return parsed > 0 ? parsed : defaultValue;
+    }
+}
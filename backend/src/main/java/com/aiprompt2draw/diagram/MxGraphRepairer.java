@@ -0,0 +1,549 @@
+package com.aiprompt2draw.diagram;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * mxGraphModel结构修复
+ * <p>
+ * 对接近正确的模型输出做确定性修复, 代替重新生成:
+ * <ul>
+ *     <li>因max_tokens截断的内容: 丢弃末尾不完整的标签并按嵌套顺序补全闭合标签</li>
+ *     <li>重复的节点id: 后出现的节点重命名, 引用仍指向首次出现的节点</li>
+ *     <li>缺少draw.io约定的根节点id="0"与默认图层id="1"</li>
+ *     <li>起点或终点不存在的连线: 连同挂在其上的文字一起移除</li>
+ *     <li>父节点不存在的节点: 挂到默认图层</li>
+ *     <li>根元素之后的多余内容</li>
+ * </ul>
+ * 先扫描一遍切分标签并收集节点信息, 再按决定的修复项输出一遍, 整体为线性时间;
+ * 未修改的标签按原文复制。内容无法切分(如属性语法错误)时原样返回, 交由校验决定是否重新生成
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public final class MxGraphRepairer {
+
+    private static final String ROOT_CELL = "0";
+    private static final String LAYER_CELL = "1";
+
+    private MxGraphRepairer() {
+    }
+
+    /**
+     * 修复类型
+     */
+    @Getter
+    public enum Kind {
+
+        TRUNCATED("truncated"),
+        DUPLICATE_ID("duplicate_id"),
+        MISSING_ROOT_CELL("missing_root_cell"),
+        DANGLING_EDGE("dangling_edge"),
+        ORPHAN_CELL("orphan_cell"),
+        TRAILING_CONTENT("trailing_content");
+
+        private final String code;
+
+        Kind(String code) {
+            this.code = code;
+        }
+    }
+
+    /**
+     * 修复结果
+     */
+    @Getter
+    public static class Result {
+
+        private final String content;
+
+        /**
+         * 已执行的修复项
+         */
+        private final List<Kind> kinds;
+
+        /**
+         * 修复说明
+         */
+        private final List<String> repairs;
+
+        Result(String content, List<Kind> kinds, List<String> repairs) {
+            this.content = content;
+            this.kinds = kinds;
+            this.repairs = repairs;
+        }
+
+        public boolean isRepaired() {
+            return !repairs.isEmpty();
+        }
+    }
+
+    /**
+     * 修复mxGraphModel XML
+     *
+     * @param xml 已去除代码块标记的XML
+     * @return 修复结果, 无需修复或无法修复时内容不变
+     */
+    public static Result repair(String xml) {
+        List<Token> tokens = tokenize(xml);
+        if (tokens == null) {
+            return new Result(xml, List.of(), List.of());
+        }
+        return new Repair(xml, tokens).run();
+    }
+
+    /**
+     * 切分标签
+     *
+     * @return 标签与文本片段, 无法切分时返回null
+     */
+    private static List<Token> tokenize(String xml) {
+        List<Token> tokens = new ArrayList<>();
+        int pos = 0;
+        int length = xml.length();
+        while (pos < length) {
+            int open = xml.indexOf('<', pos);
+            if (open != pos) {
+                int end = open < 0 ? length : open;
+                tokens.add(new Token(Token.TEXT, pos, end, null));
+                pos = end;
+                continue;
+            }
+
+            int end;
+            int type = Token.OTHER;
+            if (xml.startsWith("<!--", pos)) {
+                end = endOf(xml, "-->", pos + 4);
+            } else if (xml.startsWith("<![CDATA[", pos)) {
+                end = endOf(xml, "]]>", pos + 9);
+            } else if (xml.startsWith("<?", pos)) {
+                end = endOf(xml, "?>", pos + 2);
+            } else if (xml.startsWith("<!", pos)) {
+                return null;
+            } else {
+                end = tagEnd(xml, pos);
+                type = xml.startsWith("</", pos) ? Token.CLOSE
+                        : end > 0 && xml.charAt(end - 2) == '/' ? Token.SELF : Token.OPEN;
+            }
+
+            if (end < 0) {
+                // 末尾不完整的标签
+                tokens.add(new Token(Token.PARTIAL, pos, length, null));
+                return tokens;
+            }
+            Token token = new Token(type, pos, end, null);
+            if (type == Token.CLOSE) {
+                token.name = xml.substring(pos + 2, end - 1).trim();
+            } else if (type == Token.OPEN || type == Token.SELF) {
+                if (!parseTag(xml, token)) {
+                    return null;
+                }
+            }
+            tokens.add(token);
+            pos = end;
+        }
+        return tokens;
+    }
+
+    private static int endOf(String xml, String terminator, int from) {
+        int end = xml.indexOf(terminator, from);
+        return end < 0 ? -1 : end + terminator.length();
+    }
+
+    private static int tagEnd(String xml, int start) {
+        char quote = 0;
+        for (int i = start + 1; i < xml.length(); i++) {
+            char c = xml.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析开始标签的名称与属性
+     */
+    private static boolean parseTag(String xml, Token token) {
+        int end = token.type == Token.SELF ? token.end - 2 : token.end - 1;
+        int pos = token.start + 1;
+        while (pos < end && isNameChar(xml.charAt(pos))) {
+            pos++;
+        }
+        if (pos == token.start + 1) {
+            return false;
+        }
+        token.name = xml.substring(token.start + 1, pos);
+
+        token.attributes = new ArrayList<>();
+        while (pos < end) {
+            if (Character.isWhitespace(xml.charAt(pos))) {
+                pos++;
+                continue;
+            }
+            int nameStart = pos;
+            while (pos < end && isNameChar(xml.charAt(pos))) {
+                pos++;
+            }
+            if (pos == nameStart) {
+                return false;
+            }
+            String name = xml.substring(nameStart, pos);
+            while (pos < end && Character.isWhitespace(xml.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= end || xml.charAt(pos) != '=') {
+                return false;
+            }
+            pos++;
+            while (pos < end && Character.isWhitespace(xml.charAt(pos))) {
+                pos++;
+            }
+            char quote = pos < end ? xml.charAt(pos) : 0;
+            int valueEnd = quote == '"' || quote == '\'' ? xml.indexOf(quote, pos + 1) : -1;
+            if (valueEnd < 0 || valueEnd >= end) {
+                return false;
+            }
+            token.attributes.add(new String[]{name, xml.substring(pos + 1, valueEnd)});
+            pos = valueEnd + 1;
+        }
+        return true;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+    }
+
+    /**
+     * 标签或文本片段
+     */
+    private static final class Token {
+
+        static final int TEXT = 0;
+        static final int OPEN = 1;
+        static final int CLOSE = 2;
+        static final int SELF = 3;
+        static final int OTHER = 4;
+        static final int PARTIAL = 5;
+
+        final int type;
+        final int start;
+        final int end;
+        String name;
+        List<String[]> attributes;
+
+        /**
+         * 开始标签对应的结束标签下标, 未闭合时为-1
+         */
+        int match = -1;
+
+        Token(int type, int start, int end, String name) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.name = name;
+        }
+
+        String get(String attribute) {
+            if (attributes != null) {
+                for (String[] pair : attributes) {
+                    if (pair[0].equals(attribute)) {
+                        return pair[1];
+                    }
+                }
+            }
+            return null;
+        }
+
+        void set(String attribute, String value) {
+            for (String[] pair : attributes) {
+                if (pair[0].equals(attribute)) {
+                    pair[1] = value;
+                    return;
+                }
+            }
+            attributes.add(new String[]{attribute, value});
+        }
+
+        boolean isCell() {
+            return (type == OPEN || type == SELF) && "mxCell".equals(name);
+        }
+
+        boolean hasId() {
+            return (type == OPEN || type == SELF)
+                    && ("mxCell".equals(name) || "object".equals(name) || "UserObject".equals(name));
+        }
+    }
+
+    /**
+     * 单次修复的计算状态
+     */
+    private static final class Repair {
+
+        private final String xml;
+        private final List<Token> tokens;
+        private final List<Kind> kinds = new ArrayList<>();
+        private final List<String> repairs = new ArrayList<>();
+
+        /**
+         * 需要重新输出的标签
+         */
+        private final Set<Token> modified = new HashSet<>();
+
+        /**
+         * 需要连同子元素一起移除的标签
+         */
+        private final Set<Token> removed = new HashSet<>();
+
+        private int rootIndex = -1;
+        private int rootEnd = -1;
+        private int rootCellsAt = -1;
+        private boolean truncated;
+
+        Repair(String xml, List<Token> tokens) {
+            this.xml = xml;
+            this.tokens = tokens;
+        }
+
+        Result run() {
+            if (!matchTags()) {
+                return new Result(xml, List.of(), List.of());
+            }
+
+            Set<String> ids = new HashSet<>();
+            for (int i = rootIndex; i < rootEnd; i++) {
+                Token token = tokens.get(i);
+                if (token.hasId() && token.get("id") != null) {
+                    ids.add(token.get("id"));
+                }
+            }
+            renameDuplicates(ids);
+            boolean missingRoot = !ids.contains(ROOT_CELL);
+            boolean missingLayer = !ids.contains(LAYER_CELL);
+            if (missingRoot) {
+                ids.add(ROOT_CELL);
+            }
+            if (missingLayer) {
+                ids.add(LAYER_CELL);
+            }
+            removeDanglingEdges(ids);
+            reparentOrphans(ids);
+            return new Result(write(missingRoot, missingLayer), kinds, repairs);
+        }
+
+        private void record(Kind kind, String message) {
+            if (!kinds.contains(kind)) {
+                kinds.add(kind);
+            }
+            repairs.add(message);
+        }
+
+        /**
+         * 配对开始与结束标签, 确定根元素范围
+         *
+         * @return 嵌套错误(非截断)时返回false
+         */
+        private boolean matchTags() {
+            Deque<Integer> stack = new ArrayDeque<>();
+            for (int i = 0; i < tokens.size(); i++) {
+                Token token = tokens.get(i);
+                if (rootIndex < 0) {
+                    if (token.type == Token.OPEN || token.type == Token.SELF) {
+                        rootIndex = i;
+                    } else {
+                        continue;
+                    }
+                } else if (stack.isEmpty()) {
+                    // 根元素已闭合
+                    rootEnd = i;
+                    for (int j = i; j < tokens.size(); j++) {
+                        if (tokens.get(j).type != Token.TEXT || !xml.substring(tokens.get(j).start,
+                                tokens.get(j).end).isBlank()) {
+                            record(Kind.TRAILING_CONTENT, "移除根元素之后的多余内容");
+                            break;
+                        }
+                    }
+                    return true;
+                }
+
+                if (token.type == Token.OPEN) {
+                    stack.push(i);
+                    if ("root".equals(token.name) && rootCellsAt < 0) {
+                        rootCellsAt = i;
+                    }
+                } else if (token.type == Token.CLOSE) {
+                    if (stack.isEmpty() || !tokens.get(stack.peek()).name.equals(token.name)) {
+                        return false;
+                    }
+                    tokens.get(stack.pop()).match = i;
+                } else if (token.type == Token.PARTIAL) {
+                    truncated = true;
+                }
+            }
+            if (rootIndex < 0) {
+                return false;
+            }
+            rootEnd = tokens.size();
+            if (!stack.isEmpty()) {
+                truncated = true;
+            }
+            if (truncated) {
+                record(Kind.TRUNCATED, "补全被截断的内容(" + stack.size() + "个未闭合的标签)");
+            }
+            return true;
+        }
+
+        private void renameDuplicates(Set<String> ids) {
+            Set<String> seen = new HashSet<>();
+            Map<String, Integer> suffixes = new HashMap<>();
+            for (int i = rootIndex; i < rootEnd; i++) {
+                Token token = tokens.get(i);
+                String id = token.hasId() ? token.get("id") : null;
+                if (id == null || seen.add(id)) {
+                    continue;
+                }
+                int suffix = suffixes.getOrDefault(id, 0);
+                String renamed;
+                do {
+                    renamed = id + "_" + (++suffix);
+                } while (ids.contains(renamed));
+                suffixes.put(id, suffix);
+                ids.add(renamed);
+                seen.add(renamed);
+
+                token.set("id", renamed);
+                modified.add(token);
+                record(Kind.DUPLICATE_ID, "节点id重复, " + id + "重命名为" + renamed);
+            }
+        }
+
+        private void removeDanglingEdges(Set<String> ids) {
+            Set<String> removedIds = new HashSet<>();
+            for (int i = rootIndex; i < rootEnd; i++) {
+                Token token = tokens.get(i);
+                if (!token.isCell() || !"1".equals(token.get("edge"))) {
+                    continue;
+                }
+                String source = token.get("source");
+                String target = token.get("target");
+                if ((source != null && !ids.contains(source)) || (target != null && !ids.contains(target))) {
+                    removed.add(token);
+                    if (token.get("id") != null) {
+                        removedIds.add(token.get("id"));
+                    }
+                    record(Kind.DANGLING_EDGE, "移除引用不存在节点的连线: " + token.get("id"));
+                }
+            }
+            if (removedIds.isEmpty()) {
+                return;
+            }
+
+            // 连线上的文字以连线为父节点, 随连线一起移除
+            for (int i = rootIndex; i < rootEnd; i++) {
+                Token token = tokens.get(i);
+                if (token.isCell() && removedIds.contains(token.get("parent"))) {
+                    removed.add(token);
+                }
+            }
+            ids.removeAll(removedIds);
+        }
+
+        private void reparentOrphans(Set<String> ids) {
+            for (int i = rootIndex; i < rootEnd; i++) {
+                Token token = tokens.get(i);
+                String id = token.isCell() ? token.get("id") : null;
+                if (id == null || ROOT_CELL.equals(id) || removed.contains(token)) {
+                    continue;
+                }
+                String parent = token.get("parent");
+                String expected = LAYER_CELL.equals(id) ? ROOT_CELL : LAYER_CELL;
+                if (parent == null || !ids.contains(parent) || parent.equals(id)) {
+                    token.set("parent", expected);
+                    modified.add(token);
+                    record(Kind.ORPHAN_CELL, "节点" + id + "的父节点不存在, 挂到" + expected);
+                }
+            }
+        }
+
+        private String write(boolean missingRoot, boolean missingLayer) {
+            boolean insertRootCells = (missingRoot || missingLayer) && rootCellsAt >= 0;
+            if (insertRootCells) {
+                record(Kind.MISSING_ROOT_CELL, "补充缺失的根节点"
+                        + (missingRoot ? " id=0" : "") + (missingLayer ? " id=1" : ""));
+            }
+            if (repairs.isEmpty()) {
+                return xml;
+            }
+
+            StringBuilder out = new StringBuilder(xml.length() + 64);
+            Deque<String> open = new ArrayDeque<>();
+            for (int i = rootIndex; i < rootEnd; i++) {
+                Token token = tokens.get(i);
+                if (removed.contains(token)) {
+                    if (token.type == Token.OPEN) {
+                        if (token.match < 0) {
+                            break;
+                        }
+                        i = token.match;
+                    }
+                    continue;
+                }
+
+                switch (token.type) {
+                    case Token.PARTIAL:
+                        continue;
+                    case Token.OPEN:
+                        open.push(token.name);
+                        break;
+                    case Token.CLOSE:
+                        open.pop();
+                        break;
+                    default:
+                        break;
+                }
+                if (modified.contains(token)) {
+                    writeTag(out, token);
+                } else {
+                    out.append(xml, token.start, token.end);
+                }
+
+                if (insertRootCells && i == rootCellsAt) {
+                    if (missingRoot) {
+                        out.append("<mxCell id=\"0\"/>");
+                    }
+                    if (missingLayer) {
+                        out.append("<mxCell id=\"1\" parent=\"0\"/>");
+                    }
+                }
+            }
+
+            while (!open.isEmpty()) {
+                out.append("</").append(open.pop()).append('>');
+            }
+            return out.toString();
+        }
+
+        private void writeTag(StringBuilder out, Token token) {
+            out.append('<').append(token.name);
+            for (String[] pair : token.attributes) {
+                out.append(' ').append(pair[0]).append("=\"")
+                        .append(pair[1].replace("\"", "&quot;")).append('"');
+            }
+            out.append(token.type == Token.SELF ? "/>" : ">");
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.aiprompt2draw.diagram;
+
+import com.aiprompt2draw.exception.InvalidOutputException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * mxGraphModel输出校验器
+ * <p>
+ * 流式输出时逐段调用{@link #feed}, 每拼出一个完整标签即检查:
+ * 根元素必须为mxGraphModel或mxfile、标签正确嵌套、属性语法正确、根元素前只能有代码块标记。
+ * 一旦出现无法恢复的错误立即抛出{@link InvalidOutputException}, 调用方据此中止上游读取;
+ * 可由{@link MxGraphRepairer}修复的问题(重复ID、截断、悬空引用)不中止, 在{@link #finish}时检查。
+ * <p>
+ * 完整内容用{@link #validate}校验, 在结构检查之外再以StAX完整解析一遍, 覆盖实体与字符合法性
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class MxGraphValidator {
+
+    /**
+     * 单个未完成标签的最大长度, 超过视为输出失控
+     */
+    private static final int MAX_PENDING = 64 * 1024;
+
+    /**
+     * 根元素前允许的最大文本长度(代码块标记)
+     */
+    private static final int MAX_PREAMBLE = 64;
+
+    private static final String FENCE = "```";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final StringBuilder pending = new StringBuilder();
+
+    private final StringBuilder preamble = new StringBuilder();
+
+    private final Deque<String> stack = new ArrayDeque<>();
+
+    private final Set<String> ids = new HashSet<>();
+
+    private final List<String> references = new ArrayList<>();
+
+    private boolean rootSeen;
+
+    private boolean rootClosed;
+
+    private boolean trailingText;
+
+    private String duplicateId;
+
+    /**
+     * 校验完整内容
+     *
+     * @param content 已去除代码块标记的XML
+     * @throws InvalidOutputException 内容不合法
+     */
+    public static void validate(String content) {
+        MxGraphValidator validator = new MxGraphValidator();
+        validator.feed(content);
+        validator.finish();
+
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(content));
+            try {
+                while (reader.hasNext()) {
+                    reader.next();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            String location = e.getLocation() != null
+                    ? "第" + e.getLocation().getLineNumber() + "行第" + e.getLocation().getColumnNumber() + "列" : "";
+            throw new InvalidOutputException("XML解析失败" + location);
+        }
+    }
+
+    /**
+     * 输入一段输出内容
+     *
+     * @param chunk 内容片段
+     * @throws InvalidOutputException 已出现无法恢复的错误
+     */
+    public void feed(CharSequence chunk) {
+        pending.append(chunk);
+        int consumed = scan();
+        pending.delete(0, consumed);
+        if (pending.length() > MAX_PENDING) {
+            throw new InvalidOutputException("标签过长");
+        }
+    }
+
+    /**
+     * 输出结束, 检查内容完整性与引用
+     *
+     * @throws InvalidOutputException 内容不完整或引用了不存在的节点
+     */
+    public void finish() {
+        if (pending.length() > 0 && pending.charAt(0) == '<') {
+            throw new InvalidOutputException("内容被截断");
+        }
+        if (!rootSeen) {
+            throw new InvalidOutputException("缺少mxGraphModel根元素");
+        }
+        if (!rootClosed) {
+            throw new InvalidOutputException("标签未闭合(内容被截断): " + stack.peek());
+        }
+        if (trailingText) {
+            throw new InvalidOutputException("XML之后存在多余内容");
+        }
+        if (duplicateId != null) {
+            throw new InvalidOutputException("节点id重复: " + duplicateId);
+        }
+        for (String reference : references) {
+            if (!ids.contains(reference)) {
+                throw new InvalidOutputException("引用了不存在的节点: " + reference);
+            }
+        }
+    }
+
+    /**
+     * 扫描缓冲区中完整的文本与标签
+     *
+     * @return 已处理的字符数
+     */
+    private int scan() {
+        int pos = 0;
+        int length = pending.length();
+        while (pos < length) {
+            if (pending.charAt(pos) != '<') {
+                int next = indexOf('<', pos);
+                text(pos, next < 0 ? length : next);
+                if (next < 0) {
+                    return length;
+                }
+                pos = next;
+                continue;
+            }
+
+            int end = markupEnd(pos);
+            if (end < 0) {
+                // 标签尚未输出完整, 等待后续片段
+                return pos;
+            }
+            markup(pos, end);
+            pos = end;
+        }
+        return pos;
+    }
+
+    /**
+     * 检查标签之间的文本: 根元素前只允许空白与代码块标记, 根元素后只允许空白与代码块结束标记
+     */
+    private void text(int start, int end) {
+        if (rootClosed) {
+            for (int i = start; i < end; i++) {
+                char c = pending.charAt(i);
+                if (!Character.isWhitespace(c) && c != '`') {
+                    trailingText = true;
+                }
+            }
+            return;
+        }
+        if (rootSeen) {
+            return;
+        }
+
+        for (int i = start; i < end; i++) {
+            char c = pending.charAt(i);
+            if (preamble.length() == 0 && Character.isWhitespace(c)) {
+                continue;
+            }
+            preamble.append(c);
+        }
+        if (preamble.length() == 0) {
+            return;
+        }
+        // 代码块起始行: ```xml
+        int prefix = Math.min(preamble.length(), FENCE.length());
+        if (!FENCE.startsWith(preamble.substring(0, prefix)) || preamble.length() > MAX_PREAMBLE) {
+            throw new InvalidOutputException("XML之前存在多余内容");
+        }
+    }
+
+    /**
+     * 查找标记结束位置
+     *
+     * @return 结束位置(不含), 标记尚不完整时返回-1
+     */
+    private int markupEnd(int start) {
+        if (startsWith(start, "<!--")) {
+            int end = indexOf("-->", start + 4);
+            return end < 0 ? -1 : end + 3;
+        }
+        if (startsWith(start, "<![CDATA[")) {
+            int end = indexOf("]]>", start + 9);
+            return end < 0 ? -1 : end + 3;
+        }
+        if (startsWith(start, "<?")) {
+            int end = indexOf("?>", start + 2);
+            return end < 0 ? -1 : end + 2;
+        }
+        if (pending.length() - start < 9 && ("<![CDATA[".startsWith(tail(start)) || "<!--".startsWith(tail(start)))) {
+            return -1;
+        }
+
+        char quote = 0;
+        for (int i = start + 1; i < pending.length(); i++) {
+            char c = pending.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i + 1;
+            } else if (c == '<') {
+                throw new InvalidOutputException("标签格式错误");
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 处理一个完整的标记
+     */
+    private void markup(int start, int end) {
+        if (startsWith(start, "<!--") || startsWith(start, "<?")) {
+            return;
+        }
+        if (startsWith(start, "<![CDATA[")) {
+            if (stack.isEmpty()) {
+                throw new InvalidOutputException("根元素之外存在CDATA");
+            }
+            return;
+        }
+        if (startsWith(start, "<!")) {
+            throw new InvalidOutputException("不支持DOCTYPE声明");
+        }
+        if (pending.charAt(start + 1) == '/') {
+            closeTag(start + 2, end - 1);
+        } else {
+            boolean selfClosing = pending.charAt(end - 2) == '/';
+            openTag(start + 1, selfClosing ? end - 2 : end - 1, selfClosing);
+        }
+    }
+
+    private void closeTag(int start, int end) {
+        String name = pending.substring(start, end).trim();
+        if (stack.isEmpty() || !stack.peek().equals(name)) {
+            throw new InvalidOutputException("标签嵌套错误: </" + name + ">");
+        }
+        stack.pop();
+        if (stack.isEmpty()) {
+            rootClosed = true;
+        }
+    }
+
+    private void openTag(int start, int end, boolean selfClosing) {
+        int pos = start;
+        while (pos < end && isNameChar(pending.charAt(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            throw new InvalidOutputException("标签格式错误");
+        }
+        String name = pending.substring(start, pos);
+
+        if (rootClosed) {
+            throw new InvalidOutputException("存在多个根元素");
+        }
+        if (!rootSeen) {
+            if (!"mxGraphModel".equals(name) && !"mxfile".equals(name)) {
+                throw new InvalidOutputException("根元素必须为mxGraphModel: " + name);
+            }
+            rootSeen = true;
+        }
+
+        String id = null;
+        Set<String> seen = new HashSet<>();
+        while (pos < end) {
+            char c = pending.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+                continue;
+            }
+            int nameStart = pos;
+            while (pos < end && isNameChar(pending.charAt(pos))) {
+                pos++;
+            }
+            if (pos == nameStart) {
+                throw new InvalidOutputException("属性格式错误: <" + name + ">");
+            }
+            String attribute = pending.substring(nameStart, pos);
+            pos = skipWhitespace(pos, end);
+            if (pos >= end || pending.charAt(pos) != '=') {
+                throw new InvalidOutputException("属性格式错误: " + attribute);
+            }
+            pos = skipWhitespace(pos + 1, end);
+            char quote = pos < end ? pending.charAt(pos) : 0;
+            if (quote != '"' && quote != '\'') {
+                throw new InvalidOutputException("属性值缺少引号: " + attribute);
+            }
+            int valueEnd = indexOf(quote, pos + 1);
+            if (valueEnd < 0 || valueEnd >= end) {
+                throw new InvalidOutputException("属性格式错误: " + attribute);
+            }
+            String value = pending.substring(pos + 1, valueEnd);
+            pos = valueEnd + 1;
+            if (pos < end && !Character.isWhitespace(pending.charAt(pos))) {
+                throw new InvalidOutputException("属性格式错误: " + attribute);
+            }
+            if (!seen.add(attribute)) {
+                throw new InvalidOutputException("属性重复: " + attribute);
+            }
+
+            if ("id".equals(attribute)) {
+                id = value;
+            } else if ("mxCell".equals(name)
+                    && ("parent".equals(attribute) || "source".equals(attribute) || "target".equals(attribute))) {
+                references.add(value);
+            }
+        }
+
+        cell(name, id);
+        if (!selfClosing) {
+            stack.push(name);
+        }
+    }
+
+    /**
+     * 检查节点ID: mxCell必须有ID(包装在object/UserObject中时由外层提供), 重复ID记录到结束时报告
+     */
+    private void cell(String name, String id) {
+        boolean wrapper = "object".equals(name) || "UserObject".equals(name);
+        if (!"mxCell".equals(name) && !wrapper) {
+            return;
+        }
+        if (id == null) {
+            boolean wrapped = "mxCell".equals(name)
+                    && ("object".equals(stack.peek()) || "UserObject".equals(stack.peek()));
+            if (!wrapped) {
+                throw new InvalidOutputException("节点缺少id");
+            }
+            return;
+        }
+        if (!ids.add(id) && duplicateId == null) {
+            duplicateId = id;
+        }
+    }
+
+    private boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+    }
+
+    private int skipWhitespace(int pos, int end) {
+        while (pos < end && Character.isWhitespace(pending.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private boolean startsWith(int start, String prefix) {
+        return pending.length() - start >= prefix.length()
+                && pending.substring(start, start + prefix.length()).equals(prefix);
+    }
+
+    private String tail(int start) {
+        return pending.substring(start);
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < pending.length(); i++) {
+            if (pending.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String text, int from) {
+        return pending.indexOf(text, from);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        return factory;
+    }
+}
@@ -0,0 +1,61 @@
+package com.aiprompt2draw.diagram;
+
+import lombok.Getter;
+
+/**
+ * 流程图节点类型
+ * <p>
+ * 样式沿用提示词中的约定: 开始/结束(绿色圆角矩形), 普通步骤(蓝色矩形), 决策点(黄色菱形), 错误(红色)
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Getter
+public enum NodeKind {
+
+    START("start", "rounded=1;whiteSpace=wrap;html=1;fillColor=#d5e8d4;strokeColor=#82b366;", 120, 60),
+
+    END("end", "rounded=1;whiteSpace=wrap;html=1;fillColor=#d5e8d4;strokeColor=#82b366;", 120, 60),
+
+    PROCESS("process", "rounded=0;whiteSpace=wrap;html=1;fillColor=#dae8fc;strokeColor=#6c8ebf;", 120, 60),
+
+    DECISION("decision", "shape=rhombus;perimeter=rhombusPerimeter;whiteSpace=wrap;html=1;"
+            + "fillColor=#fff2cc;strokeColor=#d6b656;", 140, 80),
+
+    IO("io", "shape=parallelogram;perimeter=parallelogramPerimeter;whiteSpace=wrap;html=1;"
+            + "fillColor=#dae8fc;strokeColor=#6c8ebf;", 140, 60),
+
+    ERROR("error", "rounded=0;whiteSpace=wrap;html=1;fillColor=#f8cecc;strokeColor=#b85450;", 120, 60);
+
+    /**
+     * 连线样式
+     */
+    public static final String EDGE_STYLE = "edgeStyle=orthogonalEdgeStyle;rounded=0;orthogonalLoop=1;jettySize=auto;html=1;";
+
+    private final String code;
+    private final String style;
+    private final int width;
+    private final int height;
+
+    NodeKind(String code, String style, int width, int height) {
+        this.code = code;
+        this.style = style;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * 根据类型标识获取节点类型
+     *
+     * @param code 类型标识
+     * @return 节点类型, 无法识别时返回null
+     */
+    public static NodeKind getByCode(String code) {
+        for (NodeKind kind : values()) {
+            if (kind.code.equalsIgnoreCase(code)) {
+                return kind;
+            }
+        }
+        return null;
+    }
+}
@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * AI响应DTO
  *
@@ -35,8 +37,28 @@ public class AIResponse {
      */
     private Integer totalTokens;
 
+    /**
+     * Token数是否为本地估算(厂商未返回usage时)
+     */
+    private Boolean tokensEstimated;
+
+    /**
+     * 对模型输出执行的结构修复说明, 未修复时为null
+     */
+    private List<String> repairs;
+
     /**
      * 响应时间(毫秒)
      */
     private Long responseTime;
+
+    /**
+     * 是否命中缓存
+     */
+    private Boolean cacheHit;
+
+    /**
+     * 是否合并到其他相同请求的调用结果
+     */
+    private Boolean coalesced;
 }
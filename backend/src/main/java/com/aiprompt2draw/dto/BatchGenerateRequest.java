@@ -0,0 +1,27 @@
+package com.aiprompt2draw.dto;
+
+
+import javax.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量生成流程图请求DTO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+public class BatchGenerateRequest {
+
+    @NotEmpty(message = "输入描述列表不能为空")
+    private List<String> prompts;
+
+    private String modelType;
+
+    /**
+     * 生成模式: xml/dsl, 整批相同(为空使用默认模式)
+     */
+    private String mode;
+}
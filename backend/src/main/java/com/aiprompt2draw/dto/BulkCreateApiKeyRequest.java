@@ -0,0 +1,43 @@
+package com.aiprompt2draw.dto;
+
+import lombok.Data;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * 批量创建API Key请求DTO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+public class BulkCreateApiKeyRequest {
+
+    @NotNull(message = "数量不能为空")
+    @Min(value = 1, message = "数量必须大于0")
+    @Max(value = 100000, message = "单次最多创建100000个")
+    private Integer count;
+
+    @NotNull(message = "Key类型不能为空")
+    private Integer keyType;
+
+    @NotNull(message = "额度不能为空")
+    @Min(value = 1, message = "额度必须大于0")
+    private Integer quota;
+
+    @NotNull(message = "限流次数不能为空")
+    @Min(value = 1, message = "限流次数必须大于0")
+    private Integer rateLimit;
+
+    private Integer expireDays;
+
+    private String remark;
+
+    /**
+     * 允许使用的模型ID列表(可选)
+     */
+    private List<Long> modelIds;
+}
@@ -33,11 +33,17 @@ public class CreateModelConfigRequest {
     @Positive(message = "最大Token数必须大于0")
     private Integer maxTokens;
 
+    @Positive(message = "上下文长度必须大于0")
+    private Integer contextWindow;
+
     private BigDecimal temperature;
 
     @NotNull(message = "优先级不能为空")
     private Integer priority;
 
+    @Positive(message = "最大并发数必须大于0")
+    private Integer maxConcurrency;
+
     private BigDecimal costPer1kPromptTokens;
 
     private BigDecimal costPer1kCompletionTokens;
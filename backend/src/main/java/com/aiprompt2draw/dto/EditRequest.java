@@ -0,0 +1,28 @@
+package com.aiprompt2draw.dto;
+
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * 编辑流程图请求DTO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+public class EditRequest {
+
+    /**
+     * 已有流程图的mxGraphModel XML
+     */
+    @NotBlank(message = "流程图XML不能为空")
+    private String xml;
+
+    @NotBlank(message = "修改要求不能为空")
+    @Size(max = 2000, message = "修改要求不能超过2000字符")
+    private String instruction;
+
+    private String modelType;
+}
@@ -19,4 +19,14 @@ public class GenerateRequest {
     private String prompt;
 
     private String modelType;
+
+    /**
+     * 生成模式: xml-模型直接输出XML, dsl-模型输出图描述后由服务端展开(为空使用默认模式)
+     */
+    private String mode;
+
+    /**
+     * 是否返回draw.io压缩格式的mxfile(diagram内容为deflate + base64), 默认返回mxGraphModel
+     */
+    private Boolean compressed;
 }
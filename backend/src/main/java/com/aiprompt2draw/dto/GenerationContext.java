@@ -0,0 +1,63 @@
+package com.aiprompt2draw.dto;
+
+import com.aiprompt2draw.entity.ApiKey;
+import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.enums.GenerationMode;
+import lombok.Data;
+
+/**
+ * 生成上下文DTO
+ * <p>
+ * 保存一次生成请求在完成鉴权、限流、额度扣减后确定的参数
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+public class GenerationContext {
+
+    /**
+     * API Key实体
+     */
+    private ApiKey apiKey;
+
+    /**
+     * 模型配置
+     */
+    private ModelConfig modelConfig;
+
+    /**
+     * 用户输入
+     */
+    private String prompt;
+
+    /**
+     * 生成模式
+     */
+    private GenerationMode mode;
+
+    /**
+     * 估算的输入Token数(含系统提示词)
+     */
+    private Integer estimatedPromptTokens;
+
+    /**
+     * 请求时限(时间戳, 毫秒), 输出校验失败后只在时限内重新生成
+     */
+    private long deadline;
+
+    /**
+     * 生成失败时是否退还额度(批量生成按条目计费, 失败条目退还)
+     */
+    private boolean refundOnFailure;
+
+    /**
+     * IP地址
+     */
+    private String ipAddress;
+
+    /**
+     * 用户代理
+     */
+    private String userAgent;
+}
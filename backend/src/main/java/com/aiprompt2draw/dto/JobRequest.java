@@ -0,0 +1,27 @@
+package com.aiprompt2draw.dto;
+
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+import lombok.Data;
+
+/**
+ * 提交异步生成任务请求DTO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+public class JobRequest {
+
+    @NotBlank(message = "输入描述不能为空")
+    @Size(max = 2000, message = "输入描述不能超过2000字符")
+    private String prompt;
+
+    private String modelType;
+
+    /**
+     * 生成模式: xml/dsl(为空使用默认模式)
+     */
+    private String mode;
+}
@@ -0,0 +1,35 @@
+package com.aiprompt2draw.dto;
+
+import lombok.Data;
+
+/**
+ * 额度租约的申请与结果
+ * <p>
+ * 作为{@link com.aiprompt2draw.mapper.ApiKeyMapper#leaseQuota}的参数, 执行后回填实际取得的数量与数据库剩余额度
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+public class QuotaGrant {
+
+    /**
+     * API Key值
+     */
+    private String keyValue;
+
+    /**
+     * 申请数量
+     */
+    private Integer amount;
+
+    /**
+     * 实际取得的数量(剩余额度不足申请数量时取得全部剩余额度)
+     */
+    private Long granted;
+
+    /**
+     * 扣减后数据库中的剩余额度
+     */
+    private Integer remaining;
+}
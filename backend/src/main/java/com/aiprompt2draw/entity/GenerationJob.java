@@ -0,0 +1,137 @@
+package com.aiprompt2draw.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableLogic;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 异步生成任务实体类
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+@TableName("generation_job")
+public class GenerationJob {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 任务ID(对外)
+     */
+    private String jobId;
+
+    /**
+     * 批次ID(文件上传的任务共用)
+     */
+    private String batchId;
+
+    /**
+     * 批次内序号(文件行号)
+     */
+    private Integer seq;
+
+    /**
+     * API Key ID
+     */
+    private Long apiKeyId;
+
+    /**
+     * API Key值
+     */
+    private String keyValue;
+
+    /**
+     * 用户输入内容
+     */
+    private String prompt;
+
+    /**
+     * 模型类型(为空使用默认)
+     */
+    private String modelType;
+
+    /**
+     * 生成模式
+     */
+    private String mode;
+
+    /**
+     * 状态: 0-排队中 1-执行中 2-成功 3-失败
+     */
+    private Integer status;
+
+    /**
+     * 已执行次数
+     */
+    private Integer attempts;
+
+    /**
+     * 执行节点
+     */
+    private String workerId;
+
+    /**
+     * 生成的XML内容
+     */
+    private String outputXml;
+
+    /**
+     * 总Token数
+     */
+    private Integer totalTokens;
+
+    /**
+     * 错误码
+     */
+    private Integer errorCode;
+
+    /**
+     * 错误信息
+     */
+    private String errorMsg;
+
+    /**
+     * 请求IP
+     */
+    private String ipAddress;
+
+    /**
+     * 用户代理
+     */
+    private String userAgent;
+
+    /**
+     * 开始执行时间
+     */
+    private LocalDateTime startTime;
+
+    /**
+     * 完成时间
+     */
+    private LocalDateTime finishTime;
+
+    /**
+     * 逻辑删除: 0-未删除 1-已删除
+     */
+    @TableLogic
+    private Integer deleted;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -1,6 +1,7 @@
 package com.aiprompt2draw.entity;
 
 import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableLogic;
 import com.baomidou.mybatisplus.annotation.TableName;
@@ -55,6 +56,11 @@ public class ModelConfig {
      */
     private Integer maxTokens;
 
+    /**
+     * 上下文长度(Token数, 为空不做预检)
+     */
+    private Integer contextWindow;
+
     /**
      * 温度参数
      */
@@ -65,6 +71,11 @@ public class ModelConfig {
      */
     private Integer priority;
 
+    /**
+     * 最大并发调用数(为空使用全局默认)
+     */
+    private Integer maxConcurrency;
+
     /**
      * 状态: 0-禁用 1-启用
      */
@@ -91,6 +102,12 @@ public class ModelConfig {
     @TableLogic
     private Integer deleted;
 
+    /**
+     * 熔断器状态: CLOSED/OPEN/HALF_OPEN(非数据库字段)
+     */
+    @TableField(exist = false)
+    private String circuitState;
+
     /**
      * 创建时间
      */
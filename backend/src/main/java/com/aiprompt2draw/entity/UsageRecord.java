@@ -80,6 +80,11 @@ public class UsageRecord {
      */
     private Integer responseTime;
 
+    /**
+     * 是否命中缓存: 0-否 1-是
+     */
+    private Integer cacheHit;
+
     /**
      * 状态: 1-成功 0-失败
      */
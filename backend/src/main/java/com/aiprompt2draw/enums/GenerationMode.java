@@ -0,0 +1,45 @@
+package com.aiprompt2draw.enums;
+
+import lombok.Getter;
+
+/**
+ * 生成模式枚举
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Getter
+public enum GenerationMode {
+
+    /**
+     * 模型直接输出mxGraphModel XML
+     */
+    XML("xml", "XML"),
+
+    /**
+     * 模型输出紧凑的图描述, 由服务端展开为XML
+     */
+    DSL("dsl", "图描述"),
+
+    /**
+     * 基于已有流程图输出增量修改指令, 由服务端应用为节点补丁
+     */
+    EDIT("edit", "编辑");
+
+    private final String code;
+    private final String desc;
+
+    GenerationMode(String code, String desc) {
+        this.code = code;
+        this.desc = desc;
+    }
+
+    public static GenerationMode getByCode(String code) {
+        for (GenerationMode mode : values()) {
+            if (mode.code.equalsIgnoreCase(code)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.aiprompt2draw.enums;
+
+import lombok.Getter;
+
+/**
+ * 异步生成任务状态枚举
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Getter
+public enum JobStatus {
+
+    /**
+     * 排队中
+     */
+    PENDING(0, "pending", "排队中"),
+
+    /**
+     * 执行中
+     */
+    RUNNING(1, "running", "执行中"),
+
+    /**
+     * 成功
+     */
+    SUCCEEDED(2, "succeeded", "成功"),
+
+    /**
+     * 失败
+     */
+    FAILED(3, "failed", "失败");
+
+    private final Integer code;
+    private final String value;
+    private final String desc;
+
+    JobStatus(Integer code, String value, String desc) {
+        this.code = code;
+        this.value = value;
+        this.desc = desc;
+    }
+
+    public static JobStatus getByCode(Integer code) {
+        for (JobStatus status : values()) {
+            if (status.code.equals(code)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.aiprompt2draw.exception;
+
+/**
+ * 舱壁已满异常
+ * <p>
+ * 模型配置的并发名额与等待队列已满, 或在等待时限内未获得名额时抛出, 此时未向厂商发起调用
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class BulkheadFullException extends RetryableException {
+
+    public BulkheadFullException(long retryAfterSeconds) {
+        super(429, "AI服务繁忙,请" + retryAfterSeconds + "秒后再试", retryAfterSeconds);
+    }
+}
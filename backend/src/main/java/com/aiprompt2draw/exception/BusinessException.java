@@ -4,6 +4,8 @@ import lombok.Getter;
 
 /**
  * 业务异常
+ * <p>
+ * 401/403/429等拒绝请求的异常数量随无效请求增长且堆栈没有排查价值, 不记录堆栈
  *
  * @author AIPrompt2Draw
  * @since 1.0.0
@@ -19,7 +21,7 @@ public class BusinessException extends RuntimeException {
     }
 
     public BusinessException(Integer code, String message) {
-        super(message);
+        super(message, null, true, !isRejection(code));
         this.code = code;
     }
 
@@ -27,4 +29,17 @@ public class BusinessException extends RuntimeException {
         super(message, cause);
         this.code = 500;
     }
+
+    /**
+     * 是否为拒绝请求(认证失败、无权限、限流)的异常
+     *
+     * @return 是否为拒绝请求
+     */
+    public boolean isRejection() {
+        return isRejection(code);
+    }
+
+    private static boolean isRejection(Integer code) {
+        return code != null && (code == 401 || code == 403 || code == 429);
+    }
 }
@@ -0,0 +1,16 @@
+package com.aiprompt2draw.exception;
+
+/**
+ * 熔断快速失败异常
+ * <p>
+ * 模型配置处于熔断状态且没有可切换的配置时抛出, 此时未向厂商发起调用
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class CircuitOpenException extends RetryableException {
+
+    public CircuitOpenException(long retryAfterSeconds) {
+        super(503, "AI服务暂时不可用,请" + retryAfterSeconds + "秒后再试", retryAfterSeconds);
+    }
+}
@@ -2,6 +2,9 @@ package com.aiprompt2draw.exception;
 
 import com.aiprompt2draw.vo.Result;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -22,10 +25,27 @@ public class GlobalExceptionHandler {
      */
     @ExceptionHandler(BusinessException.class)
     public Result<?> handleBusinessException(BusinessException e) {
-        log.error("业务异常: {}", e.getMessage());
+        if (e.isRejection()) {
+            // 无效Key扫描等请求会大量触发, 不逐条记录错误日志
+            log.debug("请求被拒绝: {}", e.getMessage());
+        } else {
+            log.error("业务异常: {}", e.getMessage());
+        }
         return Result.error(e.getCode(), e.getMessage());
     }
 
+    /**
+     * 可重试异常: 以对应HTTP状态码返回并携带Retry-After头
+     */
+    @ExceptionHandler(RetryableException.class)
+    public ResponseEntity<Result<?>> handleRetryableException(RetryableException e) {
+        log.warn("服务暂时不可用: {}", e.getMessage());
+        HttpStatus status = HttpStatus.resolve(e.getCode());
+        return ResponseEntity.status(status != null ? status : HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(Result.error(e.getCode(), e.getMessage()));
+    }
+
     /**
      * 参数校验异常
      */
@@ -0,0 +1,17 @@
+package com.aiprompt2draw.exception;
+
+/**
+ * 模型输出格式错误异常
+ * <p>
+ * 模型返回的内容不是合法的流程图(XML结构错误、引用不存在的节点、图描述无法解析等)时抛出,
+ * 可在请求时限内重新生成
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class InvalidOutputException extends BusinessException {
+
+    public InvalidOutputException(String reason) {
+        super(502, "AI返回的流程图格式错误: " + reason);
+    }
+}
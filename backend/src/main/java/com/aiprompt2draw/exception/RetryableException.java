@@ -0,0 +1,25 @@
+package com.aiprompt2draw.exception;
+
+import lombok.Getter;
+
+/**
+ * 可重试的业务异常
+ * <p>
+ * 服务端暂时无法处理请求时抛出, 响应会以对应的HTTP状态码返回并携带Retry-After头
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Getter
+public class RetryableException extends BusinessException {
+
+    /**
+     * 建议的重试等待时间(秒)
+     */
+    private final long retryAfterSeconds;
+
+    public RetryableException(Integer code, String message, long retryAfterSeconds) {
+        super(code, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
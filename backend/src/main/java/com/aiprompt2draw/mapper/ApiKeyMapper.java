@@ -1,11 +1,19 @@
 package com.aiprompt2draw.mapper;
 
+import com.aiprompt2draw.dto.QuotaGrant;
 import com.aiprompt2draw.entity.ApiKey;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.SelectKey;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * API Key Mapper接口
  *
@@ -25,4 +33,83 @@ public interface ApiKeyMapper extends BaseMapper<ApiKey> {
     @Update("UPDATE api_key SET quota = quota - #{amount}, update_time = NOW() " +
             "WHERE key_value = #{keyValue} AND quota >= #{amount}")
     int deductQuota(@Param("keyValue") String keyValue, @Param("amount") int amount);
+
+    /**
+     * 租用额度: 一条UPDATE取走min(剩余额度, 申请数量), 取得的数量经LAST_INSERT_ID在同一连接上读回
+     * <p>
+     * 影响行数为0(额度已用完)时grant中的回填值无效
+     *
+     * @param grant 申请, 执行后回填granted与remaining
+     * @return 影响行数
+     */
+    @Update("UPDATE api_key SET quota = quota - LAST_INSERT_ID(LEAST(quota, #{amount})), update_time = NOW() " +
+            "WHERE key_value = #{keyValue} AND quota > 0")
+    @SelectKey(statement = "SELECT CAST(LAST_INSERT_ID() AS SIGNED) AS granted, quota AS remaining " +
+            "FROM api_key WHERE key_value = #{keyValue}",
+            keyProperty = "granted,remaining", keyColumn = "granted,remaining",
+            before = false, resultType = QuotaGrant.class)
+    int leaseQuota(QuotaGrant grant);
+
+    /**
+     * 退还额度
+     *
+     * @param keyValue API Key值
+     * @param amount   退还数量
+     * @return 影响行数
+     */
+    @Update("UPDATE api_key SET quota = quota + #{amount}, update_time = NOW() " +
+            "WHERE key_value = #{keyValue}")
+    int refundQuota(@Param("keyValue") String keyValue, @Param("amount") int amount);
+
+    /**
+     * 按ID顺序分页查询Key值(只查询id与key_value)
+     *
+     * @param afterId 起始ID(不含)
+     * @param limit   数量
+     * @return API Key列表
+     */
+    @Select("SELECT id, key_value FROM api_key WHERE id > #{afterId} AND deleted = 0 ORDER BY id LIMIT #{limit}")
+    List<ApiKey> selectKeyValuesAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 查询到期时间不晚于指定时间的启用中Key(走idx_expire_time, 先到期的在前)
+     *
+     * @param until 截止时间
+     * @param limit 数量
+     * @return API Key列表(只含id、key_value、expire_time)
+     */
+    @Select("SELECT id, key_value, expire_time FROM api_key " +
+            "WHERE expire_time <= #{until} AND status = 1 AND deleted = 0 " +
+            "ORDER BY expire_time LIMIT #{limit}")
+    List<ApiKey> selectExpiring(@Param("until") LocalDateTime until, @Param("limit") int limit);
+
+    /**
+     * 批量置为已过期, 只更新仍为启用且已到期的Key(到期时间被延长或已被其他节点处理的跳过)
+     *
+     * @param ids 主键ID列表
+     * @return 影响行数
+     */
+    @Update("<script>" +
+            "UPDATE api_key SET status = 2, update_time = NOW() " +
+            "WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "AND status = 1 AND expire_time &lt;= NOW()" +
+            "</script>")
+    int expireByIds(@Param("ids") List<Long> ids);
+
+    /**
+     * 批量插入(单条多行INSERT), 生成的主键回填到各实体
+     *
+     * @param keys API Key列表
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO api_key (key_value, key_type, quota, total_quota, status, rate_limit, expire_time, remark, " +
+            "create_time, update_time) VALUES " +
+            "<foreach collection='keys' item='key' separator=','>" +
+            "(#{key.keyValue}, #{key.keyType}, #{key.quota}, #{key.totalQuota}, #{key.status}, #{key.rateLimit}, " +
+            "#{key.expireTime}, #{key.remark}, #{key.createTime}, #{key.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "keys.id", keyColumn = "id")
+    int insertBatch(@Param("keys") List<ApiKey> keys);
 }
@@ -2,7 +2,11 @@ package com.aiprompt2draw.mapper;
 
 import com.aiprompt2draw.entity.ApiKeyModelPermission;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * API密钥模型权限关联数据访问层
@@ -12,4 +16,19 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface ApiKeyModelPermissionMapper extends BaseMapper<ApiKeyModelPermission> {
-}
\ No newline at end of file
+
+    /**
+     * 批量插入(单条多行INSERT)
+     *
+     * @param permissions 权限列表
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO api_key_model_permission (api_key_id, model_id, enabled, create_time, update_time) VALUES " +
+            "<foreach collection='permissions' item='permission' separator=','>" +
+            "(#{permission.apiKeyId}, #{permission.modelId}, #{permission.enabled}, " +
+            "#{permission.createTime}, #{permission.updateTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("permissions") List<ApiKeyModelPermission> permissions);
+}
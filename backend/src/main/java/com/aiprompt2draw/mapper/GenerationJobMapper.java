@@ -0,0 +1,123 @@
+package com.aiprompt2draw.mapper;
+
+import com.aiprompt2draw.entity.GenerationJob;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 异步生成任务Mapper接口
+ * <p>
+ * 任务表同时作为持久化队列: 排队中的任务按ID顺序领取, 领取与完成均为带状态条件的UPDATE,
+ * 多个节点同时领取时只有一个成功
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Mapper
+public interface GenerationJobMapper extends BaseMapper<GenerationJob> {
+
+    /**
+     * 批量插入任务
+     *
+     * @param jobs 任务列表
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO generation_job (job_id, batch_id, seq, api_key_id, key_value, prompt, model_type, mode, " +
+            "status, ip_address, user_agent) VALUES " +
+            "<foreach collection='jobs' item='job' separator=','>" +
+            "(#{job.jobId}, #{job.batchId}, #{job.seq}, #{job.apiKeyId}, #{job.keyValue}, #{job.prompt}, " +
+            "#{job.modelType}, #{job.mode}, #{job.status}, #{job.ipAddress}, #{job.userAgent})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("jobs") List<GenerationJob> jobs);
+
+    /**
+     * 查询排队中的任务ID
+     *
+     * @param limit 数量
+     * @return 任务主键ID列表(先提交的在前)
+     */
+    @Select("SELECT id FROM generation_job WHERE status = 0 AND deleted = 0 ORDER BY id LIMIT #{limit}")
+    List<Long> selectPendingIds(@Param("limit") int limit);
+
+    /**
+     * 领取任务
+     *
+     * @param id       任务主键ID
+     * @param workerId 执行节点
+     * @return 影响行数, 0表示已被其他节点领取
+     */
+    @Update("UPDATE generation_job SET status = 1, attempts = attempts + 1, worker_id = #{workerId}, " +
+            "start_time = NOW(), update_time = NOW() WHERE id = #{id} AND status = 0")
+    int claim(@Param("id") Long id, @Param("workerId") String workerId);
+
+    /**
+     * 完成任务
+     *
+     * @param id          任务主键ID
+     * @param attempts    领取时的执行次数(防止覆盖被回收后重新执行的结果)
+     * @param status      最终状态
+     * @param outputXml   生成的XML
+     * @param totalTokens 总Token数
+     * @param errorCode   错误码
+     * @param errorMsg    错误信息
+     * @return 影响行数
+     */
+    @Update("UPDATE generation_job SET status = #{status}, output_xml = #{outputXml}, total_tokens = #{totalTokens}, " +
+            "error_code = #{errorCode}, error_msg = #{errorMsg}, finish_time = NOW(), update_time = NOW() " +
+            "WHERE id = #{id} AND status = 1 AND attempts = #{attempts}")
+    int finish(@Param("id") Long id, @Param("attempts") int attempts, @Param("status") int status,
+               @Param("outputXml") String outputXml, @Param("totalTokens") Integer totalTokens,
+               @Param("errorCode") Integer errorCode, @Param("errorMsg") String errorMsg);
+
+    /**
+     * 将执行中的任务放回队列
+     *
+     * @param id       任务主键ID
+     * @param attempts 领取时的执行次数
+     * @return 影响行数
+     */
+    @Update("UPDATE generation_job SET status = 0, worker_id = NULL, update_time = NOW() " +
+            "WHERE id = #{id} AND status = 1 AND attempts = #{attempts}")
+    int requeue(@Param("id") Long id, @Param("attempts") int attempts);
+
+    /**
+     * 查询执行超过租约时间的任务(执行节点已宕机)
+     *
+     * @param leaseSeconds 租约时间(秒)
+     * @param limit        数量
+     * @return 任务列表(只含id、attempts与key_value)
+     */
+    @Select("SELECT id, attempts, key_value FROM generation_job WHERE status = 1 AND deleted = 0 " +
+            "AND start_time < DATE_SUB(NOW(), INTERVAL #{leaseSeconds} SECOND) ORDER BY id LIMIT #{limit}")
+    List<GenerationJob> selectExpired(@Param("leaseSeconds") long leaseSeconds, @Param("limit") int limit);
+
+    /**
+     * 查询指定节点执行中的任务(节点重启前未完成的任务)
+     *
+     * @param workerId 执行节点
+     * @return 任务列表(只含id、attempts与key_value)
+     */
+    @Select("SELECT id, attempts, key_value FROM generation_job WHERE status = 1 AND deleted = 0 " +
+            "AND worker_id = #{workerId}")
+    List<GenerationJob> selectRunningByWorker(@Param("workerId") String workerId);
+
+    /**
+     * 按状态统计批次内的任务数
+     *
+     * @param batchId  批次ID
+     * @param keyValue API Key值
+     * @return status与count列表
+     */
+    @Select("SELECT status, COUNT(*) AS count FROM generation_job " +
+            "WHERE batch_id = #{batchId} AND key_value = #{keyValue} AND deleted = 0 GROUP BY status")
+    List<Map<String, Object>> countByStatus(@Param("batchId") String batchId, @Param("keyValue") String keyValue);
+}
@@ -0,0 +1,325 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.entity.ApiKey;
+import com.aiprompt2draw.mapper.ApiKeyMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 已发放API Key的布隆过滤器
+ * <p>
+ * 启动时从api_key表构建, 本节点创建Key时直接加入, 其他节点创建的Key由定时的增量同步(按ID递增)加入;
+ * 过滤器判定不存在的Key直接拒绝, 不查询缓存和数据库。判定不存在时若距上次同步已超过最小间隔,
+ * 先同步一次再判定, 其他节点刚创建的Key也能立即使用, 而无效Key扫描每秒最多触发一次同步查询;
+ * 同步或重建进行中的未命中视为未知, 交给缓存和数据库判定。
+ * <p>
+ * 判定窗口: 上次同步开始后其他节点创建的Key, 在距上次同步不足 min-sync-interval-ms 时会被拒绝,
+ * 即其他节点新建的Key最长在该间隔(默认1秒)内可能返回401, 之后的第一次请求触发同步后即可使用。
+ * <p>
+ * 布隆过滤器不能删除元素, 删除的Key仍判定为可能存在(之后由缓存和数据库拒绝), 有删除或Key数量超过容量时定时重建
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class ApiKeyBloomFilter {
+
+    private static final int PAGE_SIZE = 5000;
+
+    private final ApiKeyMapper apiKeyMapper;
+
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /**
+     * 构建完成前为null, 此时所有Key都判定为可能存在
+     */
+    private volatile Bits active;
+
+    /**
+     * 重建中的过滤器, 重建期间创建的Key同时加入
+     */
+    private volatile Bits building;
+
+    /**
+     * 已同步的最大ID
+     */
+    private long maxId;
+
+    private volatile long lastSyncAt;
+
+    private final AtomicInteger deletions = new AtomicInteger();
+
+    @Value("${app.api-key.bloom.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.api-key.bloom.expected-keys:1000000}")
+    private int expectedKeys;
+
+    @Value("${app.api-key.bloom.fpp:0.001}")
+    private double fpp;
+
+    @Value("${app.api-key.bloom.sync-overlap:100}")
+    private int syncOverlap;
+
+    @Value("${app.api-key.bloom.min-sync-interval-ms:1000}")
+    private long minSyncInterval;
+
+    public ApiKeyBloomFilter(ApiKeyMapper apiKeyMapper) {
+        this.apiKeyMapper = apiKeyMapper;
+    }
+
+    /**
+     * 判断Key是否可能已发放
+     *
+     * @param keyValue API Key值(格式已校验)
+     * @return false表示一定未发放
+     */
+    public boolean mightContain(String keyValue) {
+        Bits bits = active;
+        if (!enabled || bits == null || bits.mightContain(keyValue)) {
+            return true;
+        }
+
+        // 可能是其他节点刚创建的Key: 同步一次再判定; 距上次同步不足最小间隔时按未发放处理
+        if (System.currentTimeMillis() - lastSyncAt < minSyncInterval) {
+            return false;
+        }
+        // 其他线程正在同步或重建, 结果未知, 交给缓存和数据库判定
+        if (!syncLock.tryLock()) {
+            return true;
+        }
+        try {
+            if (System.currentTimeMillis() - lastSyncAt >= minSyncInterval) {
+                sync();
+            }
+        } catch (RuntimeException e) {
+            log.warn("同步API Key布隆过滤器失败", e);
+        } finally {
+            syncLock.unlock();
+        }
+        return active.mightContain(keyValue);
+    }
+
+    /**
+     * 加入新创建的Key
+     *
+     * @param keyValue API Key值
+     */
+    public void put(String keyValue) {
+        Bits bits = active;
+        if (bits != null) {
+            bits.put(keyValue);
+        }
+        Bits next = building;
+        if (next != null) {
+            next.put(keyValue);
+        }
+        // 重建恰好在两次读取之间完成切换时, 两次都没有写入新的过滤器, 补写一次
+        Bits current = active;
+        if (current != null && current != bits && current != next) {
+            current.put(keyValue);
+        }
+    }
+
+    /**
+     * 记录有Key被删除, 下次定时检查时重建
+     */
+    public void onDeleted() {
+        deletions.incrementAndGet();
+    }
+
+    /**
+     * 启动后构建
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 增量同步其他节点创建的Key
+     */
+    @Scheduled(fixedDelayString = "${app.api-key.bloom.sync-interval-ms:10000}")
+    public void scheduledSync() {
+        if (!enabled || active == null) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            log.warn("同步API Key布隆过滤器失败", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * 有Key被删除或Key数量超过容量时重建
+     */
+    @Scheduled(fixedDelayString = "${app.api-key.bloom.rebuild-check-interval-ms:600000}")
+    public void rebuildIfNeeded() {
+        Bits bits = active;
+        if (!enabled || bits == null) {
+            return;
+        }
+        if (deletions.get() > 0 || bits.count.get() > bits.capacity) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 从数据库全量重建
+     */
+    public void rebuild() {
+        syncLock.lock();
+        try {
+            long start = System.currentTimeMillis();
+            int deleted = deletions.get();
+            // 容量至少为现有Key数的2倍, 留出增长空间
+            long existing = apiKeyMapper.selectCount(null);
+            int capacity = (int) Math.max(expectedKeys, Math.min(Integer.MAX_VALUE / 2, existing) * 2);
+            Bits next = new Bits(capacity, fpp);
+            building = next;
+
+            long lastId = 0;
+            List<ApiKey> page;
+            do {
+                page = apiKeyMapper.selectKeyValuesAfter(lastId, PAGE_SIZE);
+                for (ApiKey apiKey : page) {
+                    next.put(apiKey.getKeyValue());
+                    lastId = apiKey.getId();
+                }
+            } while (page.size() == PAGE_SIZE);
+
+            active = next;
+            building = null;
+            maxId = lastId;
+            lastSyncAt = System.currentTimeMillis();
+            deletions.addAndGet(-deleted);
+            log.info("API Key布隆过滤器构建完成: keys={}, capacity={}, bits={}, hashes={}, 耗时={}ms",
+                    next.count.get(), capacity, next.numBits, next.numHashes, lastSyncAt - start);
+        } catch (RuntimeException e) {
+            building = null;
+            log.error("构建API Key布隆过滤器失败", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * 加入ID大于已同步位置的Key; 从已同步位置往前重叠一段, 覆盖ID较小但较晚提交的插入(需持有syncLock)
+     */
+    private void sync() {
+        lastSyncAt = System.currentTimeMillis();
+        Bits bits = active;
+        long lastId = Math.max(0, maxId - syncOverlap);
+        List<ApiKey> page;
+        do {
+            page = apiKeyMapper.selectKeyValuesAfter(lastId, PAGE_SIZE);
+            for (ApiKey apiKey : page) {
+                bits.put(apiKey.getKeyValue());
+                lastId = apiKey.getId();
+            }
+        } while (page.size() == PAGE_SIZE);
+        maxId = Math.max(maxId, lastId);
+    }
+
+    /**
+     * 位数组, 以双重哈希生成各哈希位置, 判定过程不分配对象
+     */
+    private static final class Bits {
+
+        private final AtomicLongArray words;
+
+        private final long numBits;
+
+        private final int numHashes;
+
+        private final int capacity;
+
+        /**
+         * 加入的Key数(重复加入不计), 用于判断是否超过容量
+         */
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Bits(int capacity, double fpp) {
+            this.capacity = capacity;
+            long bits = (long) Math.ceil(-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) ((bits + 63) >>> 6));
+            this.numBits = (long) words.length() << 6;
+            this.numHashes = Math.max(1, (int) Math.round((double) numBits / capacity * Math.log(2)));
+        }
+
+        private void put(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            boolean changed = false;
+            for (int i = 0; i < numHashes; i++) {
+                long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+                int word = (int) (index >>> 6);
+                long mask = 1L << index;
+                long current;
+                do {
+                    current = words.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(word, current, current | mask));
+                changed |= (current & mask) == 0;
+            }
+            // 所有位都已置位时视为重复加入(同步的重叠部分)
+            if (changed) {
+                count.incrementAndGet();
+            }
+        }
+
+        private boolean mightContain(String value) {
+            long h1 = hash(value);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < numHashes; i++) {
+                long index = Long.remainderUnsigned(h1 + i * h2, numBits);
+                if ((words.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * FNV-1a 64位哈希, 直接按字符计算不编码为字节
+         */
+        private static long hash(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                h ^= value.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+
+        /**
+         * MurmurHash3 fmix64
+         */
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
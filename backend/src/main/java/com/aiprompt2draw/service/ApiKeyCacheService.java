@@ -0,0 +1,168 @@
+package com.aiprompt2draw.service;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.aiprompt2draw.entity.ApiKey;
+import com.aiprompt2draw.mapper.ApiKeyMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * API Key近端缓存
+ * <p>
+ * 在本节点缓存API Key的查询结果(快照), 同一Key的校验在有效期内不再查询数据库; 不存在的Key同样缓存较短时间,
+ * 避免无效Key反复穿透到数据库。快照过期后的一段时间内仍直接返回旧值并在后台刷新, 数据库变慢时请求不必等待查询。
+ * <p>
+ * 管理员修改或删除Key时立即失效本节点的缓存; 其他节点的缓存最长在过期并刷新后生效
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ApiKeyCacheService {
+
+    private final ApiKeyMapper apiKeyMapper;
+    private final ThreadPoolTaskExecutor applicationTaskExecutor;
+
+    /**
+     * 正在后台刷新的Key, 同一Key同时只刷新一次
+     */
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 失效次数: 查询期间发生过失效时不写入查询结果, 避免旧数据覆盖失效
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Value("${app.api-key.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.api-key.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${app.api-key.cache.ttl-ms:5000}")
+    private long ttlMs;
+
+    @Value("${app.api-key.cache.stale-ms:30000}")
+    private long staleMs;
+
+    @Value("${app.api-key.cache.negative-ttl-ms:2000}")
+    private long negativeTtlMs;
+
+    private LRUCache<String, Entry> cache;
+
+    public ApiKeyCacheService(ApiKeyMapper apiKeyMapper, ThreadPoolTaskExecutor applicationTaskExecutor) {
+        this.apiKeyMapper = apiKeyMapper;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = CacheUtil.newLRUCache(maxSize);
+    }
+
+    /**
+     * 查询API Key
+     * <p>
+     * 返回的实体为缓存中的共享快照, 调用方不应修改
+     *
+     * @param keyValue API Key值
+     * @return API Key实体, 不存在时返回null
+     */
+    public ApiKey get(String keyValue) {
+        if (!enabled) {
+            return select(keyValue);
+        }
+
+        // 不更新访问时间, 条目的过期时间从查询时算起
+        Entry entry = cache.get(keyValue, false);
+        if (entry == null) {
+            return load(keyValue);
+        }
+        if (System.currentTimeMillis() - entry.loadedAt >= ttlMs) {
+            // 已过有效期但仍在可用期内: 先返回旧值, 后台刷新
+            refreshAsync(keyValue);
+        }
+        return entry.apiKey;
+    }
+
+    /**
+     * 失效单个Key
+     *
+     * @param keyValue API Key值
+     */
+    public void invalidate(String keyValue) {
+        invalidations.incrementAndGet();
+        cache.remove(keyValue);
+    }
+
+    /**
+     * 当前缓存条目数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 查询数据库并写入缓存
+     */
+    private ApiKey load(String keyValue) {
+        long version = invalidations.get();
+        ApiKey apiKey = select(keyValue);
+        if (invalidations.get() == version) {
+            // 存在的Key在有效期之后还可使用一段时间(后台刷新), 不存在的Key到期即重新查询
+            cache.put(keyValue, new Entry(apiKey), apiKey != null ? ttlMs + staleMs : negativeTtlMs);
+        }
+        return apiKey;
+    }
+
+    private void refreshAsync(String keyValue) {
+        if (!refreshing.add(keyValue)) {
+            return;
+        }
+        try {
+            applicationTaskExecutor.execute(() -> {
+                try {
+                    load(keyValue);
+                } catch (RuntimeException e) {
+                    // 保留旧值, 可用期内的下一次访问再次尝试
+                    log.warn("刷新API Key缓存失败: {}", keyValue, e);
+                } finally {
+                    refreshing.remove(keyValue);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(keyValue);
+        }
+    }
+
+    private ApiKey select(String keyValue) {
+        LambdaQueryWrapper<ApiKey> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(ApiKey::getKeyValue, keyValue);
+        return apiKeyMapper.selectOne(wrapper);
+    }
+
+    /**
+     * 缓存条目, apiKey为null表示Key不存在
+     */
+    private static final class Entry {
+
+        private final ApiKey apiKey;
+
+        private final long loadedAt = System.currentTimeMillis();
+
+        private Entry(ApiKey apiKey) {
+            this.apiKey = apiKey;
+        }
+    }
+}
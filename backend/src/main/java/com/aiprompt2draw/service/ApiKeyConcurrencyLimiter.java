@@ -0,0 +1,66 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.exception.BulkheadFullException;
+import com.aiprompt2draw.utils.Bulkhead;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * API Key并发限制
+ * <p>
+ * 按API Key限制批量生成同时进行的条目数, 超出的条目在有界队列中等待, 避免单个调用方的大批量请求占满厂商舱壁;
+ * 空闲的Key不保留状态
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Component
+public class ApiKeyConcurrencyLimiter {
+
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    @Value("${app.ai.batch.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${app.ai.batch.queue-capacity:200}")
+    private int queueCapacity;
+
+    /**
+     * 申请名额
+     * <p>
+     * 队列已满时返回的Future以{@link BulkheadFullException}失败; 取消返回的Future即放弃排队
+     *
+     * @param keyValue API Key值
+     * @return 获得名额时完成的Future
+     */
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<Bulkhead.Permit> acquire(String keyValue) {
+        CompletableFuture<Bulkhead.Permit>[] waiter = new CompletableFuture[1];
+        // 申请与空闲移除都在compute中进行, 保证同一Key只有一个舱壁
+        bulkheads.compute(keyValue, (key, bulkhead) -> {
+            Bulkhead target = bulkhead != null ? bulkhead : new Bulkhead(maxConcurrency, queueCapacity);
+            waiter[0] = target.acquire();
+            return target;
+        });
+        if (waiter[0] == null) {
+            return CompletableFuture.failedFuture(new BulkheadFullException(1));
+        }
+        return waiter[0];
+    }
+
+    /**
+     * 归还名额, Key空闲时移除其舱壁
+     *
+     * @param keyValue API Key值
+     * @param permit   名额
+     */
+    public void release(String keyValue, Bulkhead.Permit permit) {
+        permit.release();
+        bulkheads.computeIfPresent(keyValue,
+                (key, bulkhead) -> bulkhead.getActive() == 0 && bulkhead.getQueueDepth() == 0 ? null : bulkhead);
+    }
+}
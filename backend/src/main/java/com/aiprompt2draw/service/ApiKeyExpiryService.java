@@ -0,0 +1,192 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.entity.ApiKey;
+import com.aiprompt2draw.mapper.ApiKeyMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * API Key过期服务
+ * <p>
+ * 按到期时间排序维护即将到期的启用中Key(从idx_expire_time加载未来一段时间内到期的部分), 定时取出已到期的Key,
+ * 以一条批量UPDATE置为已过期, 并清除本节点的缓存与额度租约; 请求线程只按快照中的到期时间拒绝, 不再写数据库。
+ * <p>
+ * 每个节点都加载同样的到期队列: UPDATE带状态与到期时间条件, 重复执行无影响, 各节点也都能按时清除自己的缓存。
+ * 其他节点创建或修改的Key在下次重新加载时加入
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class ApiKeyExpiryService {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final ApiKeyMapper apiKeyMapper;
+    private final ApiKeyCacheService apiKeyCacheService;
+    private final QuotaLeaseService quotaLeaseService;
+
+    /**
+     * 按到期时间排序的队列, 同一Key可能重复出现(到期时间被修改), 以数据库中的到期时间为准
+     */
+    private final PriorityQueue<Expiry> queue = new PriorityQueue<>(
+            Comparator.comparing((Expiry expiry) -> expiry.expireTime));
+
+    /**
+     * 队列覆盖的时间范围: 到期时间不晚于该时间的启用中Key都已在队列中
+     */
+    private LocalDateTime loadedUntil;
+
+    /**
+     * 上次加载是否因超过一页而未覆盖完整范围
+     */
+    private boolean truncated;
+
+    @Value("${app.api-key.expiry.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.api-key.expiry.horizon-ms:3600000}")
+    private long horizonMs;
+
+    public ApiKeyExpiryService(ApiKeyMapper apiKeyMapper, ApiKeyCacheService apiKeyCacheService,
+                               QuotaLeaseService quotaLeaseService) {
+        this.apiKeyMapper = apiKeyMapper;
+        this.apiKeyCacheService = apiKeyCacheService;
+        this.quotaLeaseService = quotaLeaseService;
+    }
+
+    /**
+     * 加入或更新Key的到期时间(创建Key或修改到期时间时调用)
+     *
+     * @param apiKey API Key(需含id、keyValue、expireTime)
+     */
+    public void schedule(ApiKey apiKey) {
+        if (apiKey.getExpireTime() == null) {
+            return;
+        }
+        synchronized (queue) {
+            // 超出加载范围的Key由之后的重新加载加入
+            if (loadedUntil != null && !apiKey.getExpireTime().isAfter(loadedUntil)) {
+                queue.add(new Expiry(apiKey.getId(), apiKey.getKeyValue(), apiKey.getExpireTime()));
+            }
+        }
+    }
+
+    /**
+     * 启动后加载, 并立即处理停机期间已到期的Key
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        if (enabled) {
+            reload();
+            expireDue();
+        }
+    }
+
+    /**
+     * 重新加载到期队列
+     */
+    @Scheduled(initialDelayString = "${app.api-key.expiry.reload-interval-ms:300000}",
+            fixedDelayString = "${app.api-key.expiry.reload-interval-ms:300000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        // 加载范围远大于重新加载间隔, 下次加载前到期的Key都已在队列中
+        LocalDateTime until = LocalDateTime.now().plusNanos(horizonMs * 1_000_000);
+        try {
+            List<ApiKey> page = apiKeyMapper.selectExpiring(until, BATCH_SIZE);
+            boolean full = page.size() == BATCH_SIZE;
+            if (full) {
+                // 超过一页时只覆盖到本页最后的到期时间, 队列取空后再加载
+                until = page.get(page.size() - 1).getExpireTime();
+            }
+
+            synchronized (queue) {
+                queue.clear();
+                for (ApiKey apiKey : page) {
+                    queue.add(new Expiry(apiKey.getId(), apiKey.getKeyValue(), apiKey.getExpireTime()));
+                }
+                loadedUntil = until;
+                truncated = full;
+            }
+            log.debug("加载API Key到期队列: count={}, until={}", page.size(), until);
+        } catch (RuntimeException e) {
+            log.error("加载API Key到期队列失败", e);
+        }
+    }
+
+    /**
+     * 处理已到期的Key
+     */
+    @Scheduled(fixedDelayString = "${app.api-key.expiry.tick-ms:1000}")
+    public void expireDue() {
+        if (!enabled) {
+            return;
+        }
+        List<Expiry> due = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        boolean reload;
+        synchronized (queue) {
+            while (!queue.isEmpty() && !queue.peek().expireTime.isAfter(now) && due.size() < BATCH_SIZE) {
+                due.add(queue.poll());
+            }
+            reload = truncated && queue.isEmpty();
+        }
+        if (due.isEmpty()) {
+            if (reload) {
+                // 大量Key集中到期: 上次加载的一页已处理完, 加载下一页
+                reload();
+            }
+            return;
+        }
+
+        List<Long> ids = new ArrayList<>(due.size());
+        for (Expiry expiry : due) {
+            ids.add(expiry.id);
+        }
+        try {
+            int updated = apiKeyMapper.expireByIds(ids);
+            log.info("API Key已过期: count={}, updated={}", due.size(), updated);
+        } catch (RuntimeException e) {
+            // 放回队列, 下次再试
+            synchronized (queue) {
+                queue.addAll(due);
+            }
+            log.error("批量更新API Key过期状态失败: count={}", due.size(), e);
+            return;
+        }
+
+        // 已由其他节点更新或到期时间已被延长的Key同样清除缓存, 下次校验时重新查询
+        for (Expiry expiry : due) {
+            apiKeyCacheService.invalidate(expiry.keyValue);
+            quotaLeaseService.release(expiry.keyValue);
+        }
+    }
+
+    private static final class Expiry {
+
+        private final Long id;
+
+        private final String keyValue;
+
+        private final LocalDateTime expireTime;
+
+        private Expiry(Long id, String keyValue, LocalDateTime expireTime) {
+            this.id = id;
+            this.keyValue = keyValue;
+            this.expireTime = expireTime;
+        }
+    }
+}
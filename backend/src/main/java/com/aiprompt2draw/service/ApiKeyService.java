@@ -1,5 +1,6 @@
 package com.aiprompt2draw.service;
 
+import cn.hutool.core.date.DatePattern;
 import cn.hutool.core.util.StrUtil;
 import com.aiprompt2draw.entity.ApiKey;
 import com.aiprompt2draw.entity.ApiKeyModelPermission;
@@ -17,9 +18,20 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -35,9 +47,18 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 public class ApiKeyService {
 
+    /**
+     * 批量创建时单条INSERT的行数
+     */
+    private static final int BULK_BATCH_SIZE = 1000;
+
     private final ApiKeyMapper apiKeyMapper;
     private final UserApiKeyMapper userApiKeyMapper;
     private final ApiKeyModelPermissionMapper apiKeyModelPermissionMapper;
+    private final QuotaLeaseService quotaLeaseService;
+    private final ApiKeyCacheService apiKeyCacheService;
+    private final ApiKeyBloomFilter apiKeyBloomFilter;
+    private final ApiKeyExpiryService apiKeyExpiryService;
 
     /**
      * 创建API Key
@@ -72,6 +93,8 @@ public class ApiKeyService {
 
         // 保存到数据库
         apiKeyMapper.insert(apiKey);
+        apiKeyBloomFilter.put(keyValue);
+        apiKeyExpiryService.schedule(apiKey);
 
         log.info("创建API Key成功: {}, 类型: {}, 额度: {}", keyValue, keyType, quota);
 
@@ -80,6 +103,8 @@ public class ApiKeyService {
 
     /**
      * 验证API Key
+     * <p>
+     * 查询走本节点的近端缓存, 返回的实体为共享快照, 调用方不应修改
      *
      * @param keyValue API Key值
      * @return API Key实体
@@ -94,8 +119,13 @@ public class ApiKeyService {
             throw new BusinessException(401, "API Key格式不正确");
         }
 
-        // 从数据库查询
-        ApiKey apiKey = getApiKeyByValue(keyValue);
+        // 未发放过的Key直接拒绝, 不查询缓存和数据库
+        if (!apiKeyBloomFilter.mightContain(keyValue)) {
+            throw new BusinessException(401, "无效的API Key");
+        }
+
+        // 从缓存查询, 未命中时查询数据库
+        ApiKey apiKey = apiKeyCacheService.get(keyValue);
 
         if (apiKey == null) {
             throw new BusinessException(401, "无效的API Key");
@@ -106,17 +136,14 @@ public class ApiKeyService {
             throw new BusinessException(403, "API Key已被禁用或已过期");
         }
 
-        // 验证是否过期
+        // 验证是否过期(状态由ApiKeyExpiryService在到期时批量更新, 请求线程不写数据库)
         if (apiKey.getExpireTime() != null && LocalDateTime.now().isAfter(apiKey.getExpireTime())) {
-            // 更新状态为已过期
-            apiKey.setStatus(ApiKeyStatus.EXPIRED.getCode());
-            apiKeyMapper.updateById(apiKey);
-
             throw new BusinessException(403, "API Key已过期");
         }
 
-        // 验证额度
-        if (apiKey.getQuota() <= 0) {
+        // 验证额度: 本节点持有租约时以租约估算为准, 快照中的额度可能已过时
+        Integer remaining = quotaLeaseService.estimateRemaining(keyValue);
+        if ((remaining != null ? remaining : apiKey.getQuota()) <= 0) {
             throw new BusinessException(403, "额度不足,请联系管理员");
         }
 
@@ -137,20 +164,41 @@ public class ApiKeyService {
 
     /**
      * 检查并扣减额度
+     * <p>
+     * 从本节点的额度租约中扣减, 租约用完时才更新数据库
      *
      * @param keyValue API Key值
      * @return 是否成功
      */
     public boolean checkAndDeductQuota(String keyValue) {
-        // 直接从数据库查询和操作
-        ApiKey apiKey = getApiKeyByValue(keyValue);
-        if (apiKey == null || apiKey.getQuota() <= 0) {
-            return false;
-        }
+        return quotaLeaseService.acquire(keyValue);
+    }
+
+    /**
+     * 一次预留多个额度
+     * <p>
+     * 单条UPDATE完成检查与扣减, 剩余额度不足时不扣减
+     *
+     * @param keyValue API Key值
+     * @param amount   预留数量
+     * @return 是否成功
+     */
+    public boolean reserveQuota(String keyValue, int amount) {
+        return apiKeyMapper.deductQuota(keyValue, amount) > 0;
+    }
 
-        // 扣减额度
-        int result = apiKeyMapper.deductQuota(keyValue, 1);
-        return result > 0;
+    /**
+     * 退还额度
+     *
+     * @param keyValue API Key值
+     * @param amount   退还数量
+     */
+    public void refundQuota(String keyValue, int amount) {
+        if (amount <= 0) {
+            return;
+        }
+        quotaLeaseService.refund(keyValue, amount);
+        log.info("退还额度: {}, 数量: {}", keyValue, amount);
     }
 
     /**
@@ -171,12 +219,18 @@ public class ApiKeyService {
 
     /**
      * 获取剩余额度
+     * <p>
+     * 本节点持有该Key的额度租约时直接由租约估算, 否则取缓存的快照
      *
      * @param keyValue API Key值
      * @return 剩余额度
      */
     public Integer getQuota(String keyValue) {
-        ApiKey apiKey = getApiKeyByValue(keyValue);
+        Integer estimated = quotaLeaseService.estimateRemaining(keyValue);
+        if (estimated != null) {
+            return estimated;
+        }
+        ApiKey apiKey = apiKeyCacheService.get(keyValue);
         return apiKey != null ? apiKey.getQuota() : 0;
     }
 
@@ -186,11 +240,59 @@ public class ApiKeyService {
      * @param keyValue API Key值
      */
     public void clearCache(String keyValue) {
-        // 这里可以实现缓存清理逻辑
-        // 如果使用Redis或其他缓存，可以在这里清理
+        clearCache(keyValue, false);
+    }
+
+    /**
+     * 清除API Key缓存
+     *
+     * @param keyValue         API Key值
+     * @param quotaOverwritten 是否写入了新的额度
+     */
+    public void clearCache(String keyValue, boolean quotaOverwritten) {
+        if (StrUtil.isBlank(keyValue)) {
+            return;
+        }
+        apiKeyCacheService.invalidate(keyValue);
+
+        // 结束本节点的租约; 写入了新额度时丢弃未使用的额度, 否则退还
+        if (quotaOverwritten) {
+            quotaLeaseService.discard(keyValue);
+        } else {
+            quotaLeaseService.release(keyValue);
+        }
         log.info("清除API Key缓存: {}", keyValue);
     }
 
+    /**
+     * 在事务提交后清除缓存; 提交前清除时并发的校验可能把未提交前的旧数据重新写入缓存
+     *
+     * @param keyValue         API Key值
+     * @param quotaOverwritten 是否写入了新的额度
+     */
+    private void clearCacheAfterCommit(String keyValue, boolean quotaOverwritten) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            clearCache(keyValue, quotaOverwritten);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                clearCache(keyValue, quotaOverwritten);
+            }
+        });
+    }
+
+    /**
+     * 按ID查询Key值(用于清除缓存)
+     */
+    private String getKeyValueById(Long apiKeyId) {
+        LambdaQueryWrapper<ApiKey> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(ApiKey::getKeyValue).eq(ApiKey::getId, apiKeyId);
+        ApiKey apiKey = apiKeyMapper.selectOne(wrapper);
+        return apiKey != null ? apiKey.getKeyValue() : null;
+    }
+
     // =================== 管理员密钥管理功能 ===================
 
     /**
@@ -229,12 +331,139 @@ public class ApiKeyService {
 
         // 保存到数据库
         apiKeyMapper.insert(apiKey);
+        apiKeyBloomFilter.put(keyValue);
+        apiKeyExpiryService.schedule(apiKey);
 
         log.info("管理员创建API Key成功: {}, 类型: {}, 额度: {}", keyValue, keyType, quota);
 
         return apiKey;
     }
 
+    /**
+     * 管理员批量创建API Key
+     * <p>
+     * 在一个事务内按批生成Key, 以多行INSERT写入Key及其模型权限; 内存中只保留当前批次与已创建的主键ID,
+     * Key值在提交后由{@link #writeApiKeysCsv}从数据库分页读出
+     *
+     * @param count      数量
+     * @param keyType    Key类型
+     * @param quota      额度
+     * @param rateLimit  限流次数
+     * @param expireDays 过期天数
+     * @param remark     备注
+     * @param modelIds   允许使用的模型ID列表(可选)
+     * @return 创建的API Key主键ID(按创建顺序)
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public long[] bulkCreateApiKeys(int count, Integer keyType, Integer quota, Integer rateLimit,
+                                     Integer expireDays, String remark, List<Long> modelIds) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expireTime = expireDays != null && expireDays > 0 ? now.plusDays(expireDays) : null;
+        Collection<Long> models = modelIds != null ? new LinkedHashSet<>(modelIds) : List.of();
+
+        long[] ids = new long[count];
+        int created = 0;
+        List<ApiKey> batch = new ArrayList<>(Math.min(count, BULK_BATCH_SIZE));
+        List<ApiKeyModelPermission> permissions = new ArrayList<>(BULK_BATCH_SIZE);
+        while (created < count) {
+            batch.clear();
+            int size = Math.min(BULK_BATCH_SIZE, count - created);
+            for (int i = 0; i < size; i++) {
+                ApiKey apiKey = new ApiKey();
+                apiKey.setKeyValue(ApiKeyGenerator.generate(keyType));
+                apiKey.setKeyType(keyType);
+                apiKey.setQuota(quota);
+                apiKey.setTotalQuota(quota);
+                apiKey.setStatus(ApiKeyStatus.ENABLED.getCode());
+                apiKey.setRateLimit(rateLimit);
+                apiKey.setExpireTime(expireTime);
+                apiKey.setRemark(remark);
+                apiKey.setCreateTime(now);
+                apiKey.setUpdateTime(now);
+                batch.add(apiKey);
+            }
+            apiKeyMapper.insertBatch(batch);
+
+            for (ApiKey apiKey : batch) {
+                ids[created++] = apiKey.getId();
+                apiKeyBloomFilter.put(apiKey.getKeyValue());
+                apiKeyExpiryService.schedule(apiKey);
+
+                for (Long modelId : models) {
+                    ApiKeyModelPermission permission = new ApiKeyModelPermission();
+                    permission.setApiKeyId(apiKey.getId());
+                    permission.setModelId(modelId);
+                    permission.setEnabled(1); // 启用
+                    permission.setCreateTime(now);
+                    permission.setUpdateTime(now);
+                    permissions.add(permission);
+                    if (permissions.size() == BULK_BATCH_SIZE) {
+                        apiKeyModelPermissionMapper.insertBatch(permissions);
+                        permissions.clear();
+                    }
+                }
+            }
+        }
+        if (!permissions.isEmpty()) {
+            apiKeyModelPermissionMapper.insertBatch(permissions);
+        }
+
+        log.info("管理员批量创建API Key成功, 数量: {}, 类型: {}, 额度: {}, 模型数: {}",
+                count, keyType, quota, models.size());
+        return ids;
+    }
+
+    /**
+     * 以CSV写出API Key, 按ID分页查询, 每页写出后刷新
+     *
+     * @param ids    API Key主键ID
+     * @param output 输出流
+     * @throws IOException 写出失败
+     */
+    public void writeApiKeysCsv(long[] ids, OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write("key_value,key_type,quota,rate_limit,expire_time,remark\n");
+
+        for (int from = 0; from < ids.length; from += BULK_BATCH_SIZE) {
+            int to = Math.min(from + BULK_BATCH_SIZE, ids.length);
+            List<Long> page = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                page.add(ids[i]);
+            }
+
+            LambdaQueryWrapper<ApiKey> wrapper = new LambdaQueryWrapper<>();
+            wrapper.select(ApiKey::getId, ApiKey::getKeyValue, ApiKey::getKeyType, ApiKey::getQuota,
+                            ApiKey::getRateLimit, ApiKey::getExpireTime, ApiKey::getRemark)
+                    .in(ApiKey::getId, page)
+                    .orderByAsc(ApiKey::getId);
+            for (ApiKey apiKey : apiKeyMapper.selectList(wrapper)) {
+                writer.write(apiKey.getKeyValue());
+                writer.write(',');
+                writer.write(String.valueOf(apiKey.getKeyType()));
+                writer.write(',');
+                writer.write(String.valueOf(apiKey.getQuota()));
+                writer.write(',');
+                writer.write(String.valueOf(apiKey.getRateLimit()));
+                writer.write(',');
+                if (apiKey.getExpireTime() != null) {
+                    writer.write(DatePattern.NORM_DATETIME_FORMATTER.format(apiKey.getExpireTime()));
+                }
+                writer.write(',');
+                writer.write(csv(apiKey.getRemark()));
+                writer.write('\n');
+            }
+            // 每页写出后立即刷新, 客户端可以边查询边接收
+            writer.flush();
+        }
+    }
+
+    private String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"").replace("\n", " ") + "\"";
+    }
+
     /**
      * 分页查询API密钥列表（管理员）
      *
@@ -290,6 +519,7 @@ public class ApiKeyService {
 
         boolean result = apiKeyMapper.updateById(apiKey) > 0;
         if (result) {
+            clearCacheAfterCommit(getKeyValueById(apiKeyId), false);
             log.info("更新API Key状态成功, apiKeyId: {}, status: {}", apiKeyId, status);
         } else {
             log.error("更新API Key状态失败, apiKeyId: {}", apiKeyId);
@@ -324,6 +554,16 @@ public class ApiKeyService {
         apiKey.setUpdateTime(LocalDateTime.now());
         boolean result = apiKeyMapper.updateById(apiKey) > 0;
         if (result) {
+            String keyValue = getKeyValueById(apiKey.getId());
+            clearCacheAfterCommit(keyValue, apiKey.getQuota() != null);
+            if (apiKey.getExpireTime() != null) {
+                // 到期时间被修改, 按新的到期时间加入队列(旧的到期时间到达时UPDATE条件不满足, 不会误置过期)
+                ApiKey expiry = new ApiKey();
+                expiry.setId(apiKey.getId());
+                expiry.setKeyValue(keyValue);
+                expiry.setExpireTime(apiKey.getExpireTime());
+                apiKeyExpiryService.schedule(expiry);
+            }
             log.info("更新API Key成功: {}", apiKey.getId());
         } else {
             log.error("更新API Key失败: {}", apiKey.getId());
@@ -343,6 +583,9 @@ public class ApiKeyService {
             return false;
         }
 
+        // 删除后无法再按ID查到Key值, 先记录
+        String keyValue = getKeyValueById(apiKeyId);
+
         // 先删除关联的权限配置
         LambdaQueryWrapper<ApiKeyModelPermission> permissionWrapper = new LambdaQueryWrapper<>();
         permissionWrapper.eq(ApiKeyModelPermission::getApiKeyId, apiKeyId);
@@ -356,6 +599,8 @@ public class ApiKeyService {
         // 最后删除API Key
         boolean result = apiKeyMapper.deleteById(apiKeyId) > 0;
         if (result) {
+            clearCacheAfterCommit(keyValue, false);
+            apiKeyBloomFilter.onDeleted();
             log.info("删除API Key成功: {}", apiKeyId);
         } else {
             log.error("删除API Key失败: {}", apiKeyId);
@@ -467,18 +712,19 @@ public class ApiKeyService {
         wrapper.eq(ApiKeyModelPermission::getApiKeyId, apiKeyId);
         apiKeyModelPermissionMapper.delete(wrapper);
 
-        // 批量添加新权限
+        // 批量添加新权限(单条多行INSERT)
         LocalDateTime now = LocalDateTime.now();
-        for (Long modelId : modelIds) {
+        List<ApiKeyModelPermission> permissions = new ArrayList<>(modelIds.size());
+        for (Long modelId : new LinkedHashSet<>(modelIds)) {
             ApiKeyModelPermission permission = new ApiKeyModelPermission();
             permission.setApiKeyId(apiKeyId);
             permission.setModelId(modelId);
             permission.setEnabled(1); // 启用
             permission.setCreateTime(now);
             permission.setUpdateTime(now);
-
-            apiKeyModelPermissionMapper.insert(permission);
+            permissions.add(permission);
         }
+        apiKeyModelPermissionMapper.insertBatch(permissions);
 
         log.info("配置API Key模型权限成功: apiKeyId: {}, modelCount: {}", apiKeyId, modelIds.size());
         return true;
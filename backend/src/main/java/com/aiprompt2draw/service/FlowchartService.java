@@ -1,17 +1,31 @@
 package com.aiprompt2draw.service;
 
 import cn.hutool.core.util.StrUtil;
-import com.aiprompt2draw.adapter.AIModelAdapter;
-import com.aiprompt2draw.adapter.AIModelFactory;
+import com.aiprompt2draw.constant.FlowchartPromptTemplate;
+import com.aiprompt2draw.diagram.FlowchartEditor;
 import com.aiprompt2draw.dto.AIResponse;
+import com.aiprompt2draw.dto.GenerationContext;
 import com.aiprompt2draw.entity.ApiKey;
 import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.enums.GenerationMode;
 import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.exception.RetryableException;
+import com.aiprompt2draw.utils.Bulkhead;
+import com.aiprompt2draw.utils.SingleFlight;
+import com.aiprompt2draw.utils.TokenEstimator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
 /**
  * 流程图生成服务
  *
@@ -25,32 +39,112 @@ public class FlowchartService {
 
     private final ApiKeyService apiKeyService;
     private final RateLimitService rateLimitService;
-    private final ModelConfigService modelConfigService;
-    private final AIModelFactory aiModelFactory;
+    private final ModelRouterService modelRouterService;
     private final UsageRecordService usageRecordService;
+    private final GenerationCacheService generationCacheService;
+    private final GenerationMetrics generationMetrics;
+    private final ModelInvocationService modelInvocationService;
+    private final FlowchartEditor flowchartEditor;
+    private final ApiKeyConcurrencyLimiter apiKeyConcurrencyLimiter;
+
+    /**
+     * 合并请求额度策略: 仅发起者计费
+     */
+    private static final String QUOTA_POLICY_LEADER = "leader";
+
+    private final SingleFlight<String, AIResponse> singleFlight = new SingleFlight<>();
 
     @Value("${app.ai.default-model-type:openai}")
     private String defaultModelType;
 
+    @Value("${app.ai.default-mode:xml}")
+    private String defaultMode;
+
+    @Value("${app.ai.request-timeout:30000}")
+    private long requestTimeout;
+
+    @Value("${app.ai.batch.max-size:50}")
+    private int batchMaxSize;
+
+    @Value("${app.ai.single-flight.enabled:true}")
+    private boolean singleFlightEnabled;
+
+    /**
+     * 合并请求额度策略: each-每个请求均计费, leader-仅实际发起调用的请求计费
+     */
+    @Value("${app.ai.single-flight.quota-policy:each}")
+    private String coalescedQuotaPolicy;
+
     /**
      * 生成流程图
      *
      * @param apiKeyValue API Key
      * @param prompt      用户输入
      * @param modelType   模型类型(可选)
+     * @param mode        生成模式(可选)
      * @param ipAddress   IP地址
      * @param userAgent   用户代理
      * @return AI响应
      */
-    public AIResponse generate(String apiKeyValue, String prompt, String modelType,
+    public AIResponse generate(String apiKeyValue, String prompt, String modelType, String mode,
                                 String ipAddress, String userAgent) {
-        // 1. 验证API Key
-        ApiKey apiKey = apiKeyService.validateApiKey(apiKeyValue);
+        GenerationContext context = prepare(apiKeyValue, prompt, modelType, mode, ipAddress, userAgent);
+        try {
+            return generateAsync(context).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
 
-        // 2. 检查限流
-        if (!rateLimitService.tryAcquire(apiKeyValue, apiKey.getRateLimit())) {
-            throw new BusinessException(429, "请求过于频繁,请稍后再试");
+    /**
+     * 流式生成流程图
+     *
+     * @param context 生成上下文(由{@link #prepare}得到)
+     * @param onChunk 增量内容回调
+     * @param onRetry 输出校验失败重新生成前的回调
+     * @return AI响应
+     */
+    public AIResponse generateStream(GenerationContext context, Consumer<String> onChunk, Runnable onRetry) {
+        String cacheKey = cacheKeyOf(context);
+        if (cacheKey != null) {
+            AIResponse cached = generationCacheService.get(cacheKey);
+            if (cached != null) {
+                // 命中缓存时不推送增量内容(图描述模式下增量内容为图描述文本), 只返回最终结果
+                recordSuccess(context, cached);
+                return cached;
+            }
+        }
+
+        AIResponse aiResponse;
+        try {
+            aiResponse = modelInvocationService.invokeStream(context, onChunk, onRetry);
+        } catch (RuntimeException e) {
+            recordFailure(context, e);
+            if (e instanceof RetryableException || context.isRefundOnFailure()) {
+                refundRejected(context);
+            }
+            throw e;
         }
+        recordSuccess(context, aiResponse);
+        cacheResult(context, aiResponse);
+        return aiResponse;
+    }
+
+    /**
+     * 生成前置处理: 验证API Key、限流、校验输入、确定模型配置并扣减额度
+     *
+     * @param apiKeyValue API Key
+     * @param prompt      用户输入
+     * @param modelType   模型类型(可选)
+     * @param mode        生成模式(可选)
+     * @param ipAddress   IP地址
+     * @param userAgent   用户代理
+     * @return 生成上下文
+     */
+    public GenerationContext prepare(String apiKeyValue, String prompt, String modelType, String mode,
+                                     String ipAddress, String userAgent) {
+        // 1-2. 验证API Key并检查限流
+        ApiKey apiKey = authorize(apiKeyValue);
 
         // 3. 验证输入
         if (StrUtil.isBlank(prompt)) {
@@ -61,49 +155,430 @@ public class FlowchartService {
             throw new BusinessException(400, "输入描述不能超过2000字符");
         }
 
-        // 4. 检查并扣减额度
-        if (!apiKeyService.checkAndDeductQuota(apiKeyValue)) {
+        return createContext(apiKey, prompt, modelType, resolveMode(mode), ipAddress, userAgent);
+    }
+
+    /**
+     * 批量生成前置处理: 整批只验证一次API Key、计一次限流、查询一次模型配置, 并用一条UPDATE预留整批额度
+     *
+     * @param apiKeyValue API Key
+     * @param prompts     用户输入列表
+     * @param modelType   模型类型(可选)
+     * @param mode        生成模式(可选)
+     * @param ipAddress   IP地址
+     * @param userAgent   用户代理
+     * @return 与输入一一对应的生成上下文
+     */
+    public List<GenerationContext> prepareBatch(String apiKeyValue, List<String> prompts, String modelType,
+                                                String mode, String ipAddress, String userAgent) {
+        ApiKey apiKey = authorize(apiKeyValue);
+
+        if (prompts == null || prompts.isEmpty()) {
+            throw new BusinessException(400, "输入描述列表不能为空");
+        }
+
+        if (prompts.size() > batchMaxSize) {
+            throw new BusinessException(400, "单次批量生成不能超过" + batchMaxSize + "条");
+        }
+
+        GenerationMode generationMode = resolveMode(mode);
+        int[] promptTokens = new int[prompts.size()];
+        for (int i = 0; i < prompts.size(); i++) {
+            String prompt = prompts.get(i);
+            if (StrUtil.isBlank(prompt)) {
+                throw new BusinessException(400, "第" + (i + 1) + "条输入描述不能为空");
+            }
+            if (prompt.length() > 2000) {
+                throw new BusinessException(400, "第" + (i + 1) + "条输入描述不能超过2000字符");
+            }
+            promptTokens[i] = TokenEstimator.estimateRequest(prompt, generationMode);
+        }
+
+        List<ModelConfig> modelConfigs = modelRouterService.selectAll(
+                StrUtil.isNotBlank(modelType) ? modelType : defaultModelType, promptTokens);
+
+        // 整批额度一次预留, 失败条目在完成后逐条退还
+        if (!apiKeyService.reserveQuota(apiKeyValue, prompts.size())) {
+            throw new BusinessException(403, "额度不足,本次批量生成需要" + prompts.size() + "次额度");
+        }
+
+        List<GenerationContext> contexts = new ArrayList<>(prompts.size());
+        for (int i = 0; i < prompts.size(); i++) {
+            GenerationContext context = newContext(apiKey, modelConfigs.get(i), prompts.get(i), generationMode,
+                    promptTokens[i], ipAddress, userAgent);
+            context.setRefundOnFailure(true);
+            contexts.add(context);
+        }
+        return contexts;
+    }
+
+    /**
+     * 编辑前置处理: 验证API Key、限流、将已有流程图转换为图描述并与修改要求拼接为模型输入
+     *
+     * @param apiKeyValue API Key
+     * @param xml         已有流程图的mxGraphModel XML
+     * @param instruction 修改要求
+     * @param modelType   模型类型(可选)
+     * @param ipAddress   IP地址
+     * @param userAgent   用户代理
+     * @return 生成上下文
+     */
+    public GenerationContext prepareEdit(String apiKeyValue, String xml, String instruction, String modelType,
+                                         String ipAddress, String userAgent) {
+        ApiKey apiKey = authorize(apiKeyValue);
+
+        if (StrUtil.isBlank(instruction)) {
+            throw new BusinessException(400, "修改要求不能为空");
+        }
+
+        if (instruction.length() > 2000) {
+            throw new BusinessException(400, "修改要求不能超过2000字符");
+        }
+
+        if (StrUtil.isBlank(xml)) {
+            throw new BusinessException(400, "流程图XML不能为空");
+        }
+
+        // 已有流程图以图描述发送, 坐标与样式不占用输入Token
+        String prompt = FlowchartPromptTemplate.buildEditInput(flowchartEditor.describe(xml), instruction);
+        return createContext(apiKey, prompt, modelType, GenerationMode.EDIT, ipAddress, userAgent);
+    }
+
+    /**
+     * 异步任务执行前置处理: 额度已在提交任务时预留, 只确定模型配置, 失败时退还额度
+     *
+     * @param apiKey    API Key实体
+     * @param prompt    用户输入
+     * @param modelType 模型类型(可选)
+     * @param mode      生成模式(可选)
+     * @param ipAddress 提交任务时的IP地址
+     * @param userAgent 提交任务时的用户代理
+     * @return 生成上下文
+     */
+    public GenerationContext prepareQueued(ApiKey apiKey, String prompt, String modelType, String mode,
+                                           String ipAddress, String userAgent) {
+        GenerationMode generationMode = resolveMode(mode);
+        int promptTokens = TokenEstimator.estimateRequest(prompt, generationMode);
+        ModelConfig modelConfig = modelRouterService.select(
+                StrUtil.isNotBlank(modelType) ? modelType : defaultModelType, promptTokens);
+
+        GenerationContext context = newContext(apiKey, modelConfig, prompt, generationMode, promptTokens,
+                ipAddress, userAgent);
+        context.setRefundOnFailure(true);
+        return context;
+    }
+
+    /**
+     * 解析生成模式, 编辑模式只能通过编辑接口使用
+     *
+     * @param mode 生成模式(可选)
+     * @return 生成模式
+     */
+    public GenerationMode resolveMode(String mode) {
+        GenerationMode generationMode = GenerationMode.getByCode(StrUtil.blankToDefault(mode, defaultMode));
+        if (generationMode == null || generationMode == GenerationMode.EDIT) {
+            throw new BusinessException(400, "不支持的生成模式: " + mode);
+        }
+        return generationMode;
+    }
+
+    /**
+     * 验证API Key并检查限流
+     *
+     * @param apiKeyValue API Key
+     * @return API Key实体
+     */
+    public ApiKey authorize(String apiKeyValue) {
+        // 1. 验证API Key
+        ApiKey apiKey = apiKeyService.validateApiKey(apiKeyValue);
+
+        // 2. 检查限流
+        if (!rateLimitService.tryAcquire(apiKeyValue, apiKey.getRateLimit())) {
+            throw new BusinessException(429, "请求过于频繁,请稍后再试");
+        }
+        return apiKey;
+    }
+
+    /**
+     * 确定模型配置、扣减额度并创建生成上下文
+     */
+    private GenerationContext createContext(ApiKey apiKey, String prompt, String modelType,
+                                            GenerationMode generationMode, String ipAddress, String userAgent) {
+        // 4. 估算输入Token数并获取上下文长度足够的模型配置, 超长输入在扣减额度前拒绝
+        int promptTokens = TokenEstimator.estimateRequest(prompt, generationMode);
+        ModelConfig modelConfig = modelRouterService.select(
+                StrUtil.isNotBlank(modelType) ? modelType : defaultModelType, promptTokens);
+
+        // 5. 检查并扣减额度
+        if (!apiKeyService.checkAndDeductQuota(apiKey.getKeyValue())) {
             throw new BusinessException(403, "额度不足,请联系管理员");
         }
 
-        // 5. 获取模型配置
-        ModelConfig modelConfig;
-        if (StrUtil.isNotBlank(modelType)) {
-            modelConfig = modelConfigService.getByModelType(modelType);
+        return newContext(apiKey, modelConfig, prompt, generationMode, promptTokens, ipAddress, userAgent);
+    }
+
+    private GenerationContext newContext(ApiKey apiKey, ModelConfig modelConfig, String prompt,
+                                         GenerationMode generationMode, int promptTokens,
+                                         String ipAddress, String userAgent) {
+        GenerationContext context = new GenerationContext();
+        context.setApiKey(apiKey);
+        context.setModelConfig(modelConfig);
+        context.setPrompt(prompt);
+        context.setMode(generationMode);
+        context.setEstimatedPromptTokens(promptTokens);
+        context.setDeadline(System.currentTimeMillis() + requestTimeout);
+        context.setIpAddress(ipAddress);
+        context.setUserAgent(userAgent);
+        return context;
+    }
+
+    /**
+     * 异步生成流程图
+     * <p>
+     * 上游调用为非阻塞, 等待期间不占用任何工作线程
+     *
+     * @param context 生成上下文(由{@link #prepare}得到)
+     * @return AI响应Future
+     */
+    public CompletableFuture<AIResponse> generateAsync(GenerationContext context) {
+        ModelConfig modelConfig = context.getModelConfig();
+
+        // 相同输入优先返回缓存结果
+        String cacheKey = cacheKeyOf(context);
+        if (cacheKey != null) {
+            AIResponse cached = generationCacheService.get(cacheKey);
+            if (cached != null) {
+                recordSuccess(context, cached);
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        // 6-7. 调用AI生成, 相同输入的并发请求合并为一次上游调用
+        CompletableFuture<AIResponse> call;
+        boolean leader = true;
+        if (singleFlightEnabled) {
+            String flightKey = cacheKey != null
+                    ? cacheKey : generationCacheService.buildKey(context.getPrompt(), modelConfig, context.getMode());
+            SingleFlight.Flight<AIResponse> flight = singleFlight.execute(flightKey,
+                    () -> modelInvocationService.invoke(context));
+            leader = flight.isLeader();
+            call = leader ? flight.future() : joinFlight(context, flight.future());
         } else {
-            modelConfig = modelConfigService.getByModelType(defaultModelType);
+            call = modelInvocationService.invoke(context);
         }
 
-        // 6. 获取适配器
-        AIModelAdapter adapter = aiModelFactory.getAdapter(modelConfig.getModelType());
+        boolean shouldCache = leader;
+        boolean charged = leader || !QUOTA_POLICY_LEADER.equalsIgnoreCase(coalescedQuotaPolicy);
+        // 结果只处理一次: 上游完成与调用方取消可能并发发生
+        AtomicBoolean settled = new AtomicBoolean();
+        CompletableFuture<AIResponse> result = call.handle((aiResponse, error) -> {
+            if (!settled.compareAndSet(false, true)) {
+                throw new CancellationException();
+            }
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                recordFailure(context, cause);
+                if (charged && (cause instanceof RetryableException || context.isRefundOnFailure())) {
+                    refundRejected(context);
+                }
+                throw cause instanceof RuntimeException
+                        ? (RuntimeException) cause : new CompletionException(cause);
+            }
+            if (shouldCache) {
+                cacheResult(context, aiResponse);
+            }
+            recordSuccess(context, aiResponse);
+            return aiResponse;
+        });
 
-        AIResponse aiResponse;
-        try {
-            // 7. 调用AI生成
-            aiResponse = adapter.generateFlowchart(prompt, modelConfig);
+        // 调用方取消(如请求超时、批量取消)时放弃等待; 合并调用的全部请求都取消后中止上游调用并释放并发名额。
+        // 已取消的结果不会再执行上面的处理函数, 失败记录与额度退还在这里完成
+        result.whenComplete((aiResponse, error) -> {
+            if (!result.isCancelled()) {
+                return;
+            }
+            call.cancel(true);
+            if (settled.compareAndSet(false, true)) {
+                recordFailure(context, new CancellationException("生成已取消"));
+                if (charged && context.isRefundOnFailure()) {
+                    refundRejected(context);
+                }
+            }
+        });
 
-            // 8. 异步保存成功记录
-            usageRecordService.saveSuccessRecord(
-                    apiKey, modelConfig, prompt, aiResponse, ipAddress, userAgent
-            );
+        return result;
+    }
 
-            log.info("流程图生成成功: apiKey={}, model={}, tokens={}",
-                    apiKeyValue, modelConfig.getModelType(), aiResponse.getTotalTokens());
+    /**
+     * 批量生成
+     * <p>
+     * 各条目在API Key的并发限制下并行生成, 获得名额时才开始计算请求时限;
+     * 失败、被拒绝或取消的条目退还已预留的额度
+     *
+     * @param contexts 生成上下文(由{@link #prepareBatch}得到)
+     * @return 与输入一一对应的AI响应Future
+     */
+    public List<CompletableFuture<AIResponse>> generateBatchAsync(List<GenerationContext> contexts) {
+        List<CompletableFuture<AIResponse>> results = new ArrayList<>(contexts.size());
+        for (GenerationContext context : contexts) {
+            results.add(generateLimited(context));
+        }
+        return results;
+    }
 
-            return aiResponse;
+    /**
+     * 在API Key的并发限制下生成单个条目
+     */
+    private CompletableFuture<AIResponse> generateLimited(GenerationContext context) {
+        String keyValue = context.getApiKey().getKeyValue();
+        CompletableFuture<AIResponse> result = new CompletableFuture<>();
+        CompletableFuture<Bulkhead.Permit> slot = apiKeyConcurrencyLimiter.acquire(keyValue);
 
-        } catch (Exception e) {
-            // 9. 异步保存失败记录
-            usageRecordService.saveErrorRecord(
-                    apiKey, modelConfig, prompt, e.getMessage(), ipAddress, userAgent
-            );
+        slot.whenComplete((permit, error) -> {
+            if (error != null || result.isDone()) {
+                // 排队被拒绝或已取消, 未调用厂商
+                if (permit != null) {
+                    apiKeyConcurrencyLimiter.release(keyValue, permit);
+                }
+                refundRejected(context);
+                result.completeExceptionally(error != null ? error : new CancellationException());
+                return;
+            }
 
-            log.error("流程图生成失败: apiKey={}, error={}", apiKeyValue, e.getMessage());
+            context.setDeadline(System.currentTimeMillis() + requestTimeout);
+            CompletableFuture<AIResponse> generation;
+            try {
+                generation = generateAsync(context);
+            } catch (RuntimeException e) {
+                apiKeyConcurrencyLimiter.release(keyValue, permit);
+                refundRejected(context);
+                result.completeExceptionally(e);
+                return;
+            }
+            generation.whenComplete((aiResponse, generationError) -> {
+                apiKeyConcurrencyLimiter.release(keyValue, permit);
+                if (generationError != null) {
+                    result.completeExceptionally(generationError);
+                } else {
+                    result.complete(aiResponse);
+                }
+            });
+            result.whenComplete((aiResponse, resultError) -> {
+                if (result.isCancelled()) {
+                    generation.cancel(true);
+                }
+            });
+        });
 
-            // 由于已经扣减了额度，这里不回退额度，避免滥用
-            // 如果需要回退，可以在这里实现
+        result.whenComplete((aiResponse, error) -> {
+            if (result.isCancelled()) {
+                slot.cancel(true);
+            }
+        });
+        return result;
+    }
 
-            throw e;
+    /**
+     * 熔断、舱壁或生成线程池拒绝时未调用厂商, 退还本次请求已扣减的额度
+     *
+     * @param context 生成上下文
+     */
+    public void refundRejected(GenerationContext context) {
+        apiKeyService.refundQuota(context.getApiKey().getKeyValue(), 1);
+    }
+
+    /**
+     * 加入进行中的相同调用, 并按额度策略处理本次请求已扣减的额度
+     */
+    private CompletableFuture<AIResponse> joinFlight(GenerationContext context,
+                                                     CompletableFuture<AIResponse> flight) {
+        generationMetrics.recordCoalesced();
+
+        // leader策略: 仅实际发起调用的请求计费, 合并的请求退还已扣额度
+        if (QUOTA_POLICY_LEADER.equalsIgnoreCase(coalescedQuotaPolicy)) {
+            apiKeyService.refundQuota(context.getApiKey().getKeyValue(), 1);
+        }
+
+        log.info("合并相同生成请求: apiKey={}, model={}",
+                context.getApiKey().getKeyValue(), context.getModelConfig().getModelType());
+
+        CompletableFuture<AIResponse> joined = flight.thenApply(aiResponse -> {
+            AIResponse response = new AIResponse();
+            response.setXmlContent(aiResponse.getXmlContent());
+            response.setPromptTokens(aiResponse.getPromptTokens());
+            response.setCompletionTokens(aiResponse.getCompletionTokens());
+            response.setTotalTokens(aiResponse.getTotalTokens());
+            response.setResponseTime(aiResponse.getResponseTime());
+            response.setCoalesced(true);
+            return response;
+        });
+
+        // 取消本请求的等待时通知合并器, 以便最后一个等待者取消时中止上游调用
+        joined.whenComplete((aiResponse, error) -> {
+            if (joined.isCancelled()) {
+                flight.cancel(true);
+            }
+        });
+        return joined;
+    }
+
+    /**
+     * 获取缓存Key, 不可缓存时返回null
+     */
+    private String cacheKeyOf(GenerationContext context) {
+        ModelConfig modelConfig = context.getModelConfig();
+        if (!generationCacheService.isCacheable(modelConfig)) {
+            return null;
+        }
+        return generationCacheService.buildKey(context.getPrompt(), modelConfig, context.getMode());
+    }
+
+    /**
+     * 按实际返回结果的模型配置写入缓存
+     * <p>
+     * 熔断切换或对冲胜出时, 返回结果的配置与请求时选定的配置不同, 不能写入选定配置的缓存Key
+     */
+    private void cacheResult(GenerationContext context, AIResponse aiResponse) {
+        String cacheKey = cacheKeyOf(context);
+        if (cacheKey != null) {
+            generationCacheService.put(cacheKey, aiResponse);
         }
     }
+
+    /**
+     * 异步保存成功记录
+     */
+    private void recordSuccess(GenerationContext context, AIResponse aiResponse) {
+        ApiKey apiKey = context.getApiKey();
+        ModelConfig modelConfig = context.getModelConfig();
+
+        // 8. 异步保存成功记录
+        usageRecordService.saveSuccessRecord(
+                apiKey, modelConfig, context.getPrompt(), aiResponse,
+                context.getIpAddress(), context.getUserAgent()
+        );
+
+        log.info("流程图生成成功: apiKey={}, model={}, tokens={}, cacheHit={}",
+                apiKey.getKeyValue(), modelConfig.getModelType(), aiResponse.getTotalTokens(),
+                Boolean.TRUE.equals(aiResponse.getCacheHit()));
+    }
+
+    /**
+     * 异步保存失败记录
+     */
+    private void recordFailure(GenerationContext context, Throwable e) {
+        ApiKey apiKey = context.getApiKey();
+
+        // 9. 异步保存失败记录
+        usageRecordService.saveErrorRecord(
+                apiKey, context.getModelConfig(), context.getPrompt(), e.getMessage(),
+                context.getIpAddress(), context.getUserAgent()
+        );
+
+        log.error("流程图生成失败: apiKey={}, error={}", apiKey.getKeyValue(), e.getMessage());
+
+        // 由于已经扣减了额度，这里不回退额度，避免滥用
+        // 如果需要回退，可以在这里实现
+    }
 }
@@ -0,0 +1,170 @@
+package com.aiprompt2draw.service;
+
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.aiprompt2draw.dto.AIResponse;
+import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.enums.GenerationMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 生成结果缓存服务
+ * <p>
+ * 对相同(归一化后)输入 + 模型配置 + 温度 + 最大Token数的请求直接返回已生成的结果,
+ * 容量与过期时间均有上限。温度大于0时输出本身具有随机性, 默认不缓存
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class GenerationCacheService {
+
+    @Value("${app.ai.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.ai.cache.max-size:1000}")
+    private int maxSize;
+
+    @Value("${app.ai.cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${app.ai.cache.allow-nonzero-temperature:false}")
+    private boolean allowNonZeroTemperature;
+
+    private LRUCache<String, AIResponse> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = CacheUtil.newLRUCache(maxSize, ttlSeconds * 1000);
+    }
+
+    /**
+     * 判断该模型配置下的请求是否可以缓存
+     *
+     * @param config 模型配置
+     * @return 是否可缓存
+     */
+    public boolean isCacheable(ModelConfig config) {
+        if (!enabled) {
+            return false;
+        }
+        return config.getTemperature() == null
+                || config.getTemperature().signum() == 0
+                || allowNonZeroTemperature;
+    }
+
+    /**
+     * 构建缓存Key: 归一化输入摘要 + 模型配置ID + 模型名称 + 温度 + 最大Token数 + 生成模式
+     *
+     * @param prompt 用户输入
+     * @param config 模型配置
+     * @param mode   生成模式
+     * @return 缓存Key
+     */
+    public String buildKey(String prompt, ModelConfig config, GenerationMode mode) {
+        String temperature = config.getTemperature() != null
+                ? config.getTemperature().stripTrailingZeros().toPlainString() : "";
+        return SecureUtil.sha256(normalize(prompt))
+                + ":" + config.getId()
+                + ":" + config.getModelName()
+                + ":" + temperature
+                + ":" + config.getMaxTokens()
+                + ":" + mode.getCode();
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param key 缓存Key
+     * @return 缓存命中时返回标记为命中的响应副本, 否则返回null
+     */
+    public AIResponse get(String key) {
+        AIResponse cached = cache.get(key);
+        if (cached == null) {
+            return null;
+        }
+
+        // 命中缓存不产生Token消耗
+        AIResponse response = new AIResponse();
+        response.setXmlContent(cached.getXmlContent());
+        response.setPromptTokens(0);
+        response.setCompletionTokens(0);
+        response.setTotalTokens(0);
+        response.setResponseTime(0L);
+        response.setCacheHit(true);
+        return response;
+    }
+
+    /**
+     * 写入缓存
+     *
+     * @param key      缓存Key
+     * @param response AI响应
+     */
+    public void put(String key, AIResponse response) {
+        cache.put(key, response);
+    }
+
+    /**
+     * 清空缓存
+     *
+     * @return 清除的条目数
+     */
+    public int purge() {
+        int size = cache.size();
+        cache.clear();
+        log.info("清空生成结果缓存: {}条", size);
+        return size;
+    }
+
+    /**
+     * 获取缓存统计信息
+     *
+     * @return 统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        double hitRatio = hits + misses > 0 ? (double) hits / (hits + misses) * 100 : 0.0;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("allowNonZeroTemperature", allowNonZeroTemperature);
+        stats.put("size", cache.size());
+        stats.put("capacity", cache.capacity());
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hitCount", hits);
+        stats.put("missCount", misses);
+        stats.put("hitRatio", Math.round(hitRatio * 100.0) / 100.0);
+        return stats;
+    }
+
+    /**
+     * 归一化输入: 去除首尾空白、合并连续空白; 大小写会改变节点文字, 保持原样
+     */
+    private String normalize(String prompt) {
+        StringBuilder sb = new StringBuilder(prompt.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < prompt.length(); i++) {
+            char c = prompt.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
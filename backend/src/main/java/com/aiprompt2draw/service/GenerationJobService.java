@@ -0,0 +1,310 @@
+package com.aiprompt2draw.service;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.aiprompt2draw.diagram.DrawioFile;
+import com.aiprompt2draw.entity.ApiKey;
+import com.aiprompt2draw.entity.GenerationJob;
+import com.aiprompt2draw.enums.JobStatus;
+import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.mapper.GenerationJobMapper;
+import com.aiprompt2draw.vo.JobBatchResponse;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * 异步生成任务服务
+ * <p>
+ * 提交任务时验证API Key、计一次限流并预留额度, 任务写入generation_job表后立即返回,
+ * 由{@link GenerationJobWorker}从表中领取执行; 文件上传的每行输入为一个任务, 共用一个批次ID
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GenerationJobService {
+
+    /**
+     * 文件上传时每次批量插入的任务数
+     */
+    private static final int INSERT_BATCH_SIZE = 100;
+
+    /**
+     * 下载结果时每次查询的任务数
+     */
+    private static final int DOWNLOAD_PAGE_SIZE = 20;
+
+    private final GenerationJobMapper generationJobMapper;
+    private final FlowchartService flowchartService;
+    private final ApiKeyService apiKeyService;
+
+    @Value("${app.job.max-file-lines:1000}")
+    private int maxFileLines;
+
+    /**
+     * 提交单个任务
+     *
+     * @param apiKeyValue API Key
+     * @param prompt      用户输入
+     * @param modelType   模型类型(可选)
+     * @param mode        生成模式(可选)
+     * @param ipAddress   IP地址
+     * @param userAgent   用户代理
+     * @return 任务
+     */
+    public GenerationJob submit(String apiKeyValue, String prompt, String modelType, String mode,
+                                String ipAddress, String userAgent) {
+        ApiKey apiKey = flowchartService.authorize(apiKeyValue);
+
+        if (StrUtil.isBlank(prompt)) {
+            throw new BusinessException(400, "输入描述不能为空");
+        }
+
+        if (prompt.length() > 2000) {
+            throw new BusinessException(400, "输入描述不能超过2000字符");
+        }
+
+        flowchartService.resolveMode(mode);
+
+        if (!apiKeyService.reserveQuota(apiKeyValue, 1)) {
+            throw new BusinessException(403, "额度不足,请联系管理员");
+        }
+
+        GenerationJob job = newJob(apiKey, null, 0, prompt, modelType, mode, ipAddress, userAgent);
+        try {
+            generationJobMapper.insert(job);
+        } catch (RuntimeException e) {
+            apiKeyService.refundQuota(apiKeyValue, 1);
+            throw e;
+        }
+
+        log.info("提交异步生成任务: jobId={}, apiKey={}", job.getJobId(), apiKeyValue);
+        return job;
+    }
+
+    /**
+     * 提交文件中的任务(每行一条输入描述)
+     * <p>
+     * 逐行读取并分批插入, 全部写入后用一条UPDATE预留整批额度; 额度不足或任一行不合法时整批回滚
+     *
+     * @param apiKeyValue API Key
+     * @param input       文件内容(UTF-8)
+     * @param modelType   模型类型(可选)
+     * @param mode        生成模式(可选)
+     * @param ipAddress   IP地址
+     * @param userAgent   用户代理
+     * @return 批次状态
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public JobBatchResponse submitFile(String apiKeyValue, InputStream input, String modelType, String mode,
+                                       String ipAddress, String userAgent) {
+        ApiKey apiKey = flowchartService.authorize(apiKeyValue);
+        flowchartService.resolveMode(mode);
+
+        String batchId = IdUtil.fastSimpleUUID();
+        List<GenerationJob> buffer = new ArrayList<>(INSERT_BATCH_SIZE);
+        int total = 0;
+        int lineNumber = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String prompt = (lineNumber == 1 ? StrUtil.removePrefix(line, "\uFEFF") : line).trim();
+                if (prompt.isEmpty()) {
+                    continue;
+                }
+                if (prompt.length() > 2000) {
+                    throw new BusinessException(400, "第" + lineNumber + "行输入描述不能超过2000字符");
+                }
+                if (++total > maxFileLines) {
+                    throw new BusinessException(400, "文件中的输入描述不能超过" + maxFileLines + "条");
+                }
+
+                buffer.add(newJob(apiKey, batchId, lineNumber, prompt, modelType, mode, ipAddress, userAgent));
+                if (buffer.size() >= INSERT_BATCH_SIZE) {
+                    generationJobMapper.insertBatch(buffer);
+                    buffer.clear();
+                }
+            }
+        } catch (IOException e) {
+            log.error("读取任务文件失败", e);
+            throw new BusinessException(400, "文件读取失败");
+        }
+
+        if (total == 0) {
+            throw new BusinessException(400, "文件中没有输入描述");
+        }
+        if (!buffer.isEmpty()) {
+            generationJobMapper.insertBatch(buffer);
+        }
+
+        if (!apiKeyService.reserveQuota(apiKeyValue, total)) {
+            throw new BusinessException(403, "额度不足,本次需要" + total + "次额度");
+        }
+
+        log.info("提交异步生成批次: batchId={}, apiKey={}, total={}", batchId, apiKeyValue, total);
+        return new JobBatchResponse(batchId, JobStatus.PENDING.getValue(), total, total, 0, 0, 0);
+    }
+
+    /**
+     * 查询任务
+     *
+     * @param apiKeyValue API Key
+     * @param jobId       任务ID
+     * @return 任务
+     */
+    public GenerationJob getJob(String apiKeyValue, String jobId) {
+        checkApiKey(apiKeyValue);
+
+        LambdaQueryWrapper<GenerationJob> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(GenerationJob::getJobId, jobId)
+                .eq(GenerationJob::getKeyValue, apiKeyValue);
+        GenerationJob job = generationJobMapper.selectOne(wrapper);
+        if (job == null) {
+            throw new BusinessException(404, "任务不存在");
+        }
+        return job;
+    }
+
+    /**
+     * 查询批次状态
+     *
+     * @param apiKeyValue API Key
+     * @param batchId     批次ID
+     * @return 批次状态
+     */
+    public JobBatchResponse getBatch(String apiKeyValue, String batchId) {
+        checkApiKey(apiKeyValue);
+
+        int[] counts = new int[JobStatus.values().length];
+        for (Map<String, Object> row : generationJobMapper.countByStatus(batchId, apiKeyValue)) {
+            JobStatus status = JobStatus.getByCode(((Number) row.get("status")).intValue());
+            if (status != null) {
+                counts[status.ordinal()] = ((Number) row.get("count")).intValue();
+            }
+        }
+
+        int pending = counts[JobStatus.PENDING.ordinal()];
+        int running = counts[JobStatus.RUNNING.ordinal()];
+        int succeeded = counts[JobStatus.SUCCEEDED.ordinal()];
+        int failed = counts[JobStatus.FAILED.ordinal()];
+        int total = pending + running + succeeded + failed;
+        if (total == 0) {
+            throw new BusinessException(404, "批次不存在");
+        }
+
+        JobStatus status;
+        if (pending + running == 0) {
+            status = succeeded > 0 ? JobStatus.SUCCEEDED : JobStatus.FAILED;
+        } else {
+            status = pending == total ? JobStatus.PENDING : JobStatus.RUNNING;
+        }
+        return new JobBatchResponse(batchId, status.getValue(), total, pending, running, succeeded, failed);
+    }
+
+    /**
+     * 以zip流输出批次结果
+     * <p>
+     * 按序号分页读取, 每个成功的任务输出为一个.drawio文件, 最后输出summary.csv汇总全部任务的状态;
+     * 批次未全部结束时只包含已成功的结果
+     *
+     * @param apiKeyValue API Key
+     * @param batchId     批次ID
+     * @param output      输出流
+     * @throws IOException 写出失败(客户端断开)
+     */
+    public void writeBatchZip(String apiKeyValue, String batchId, OutputStream output) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(output, StandardCharsets.UTF_8);
+        StringBuilder summary = new StringBuilder("line,status,tokens,error\n");
+
+        int lastSeq = -1;
+        while (true) {
+            LambdaQueryWrapper<GenerationJob> wrapper = new LambdaQueryWrapper<>();
+            wrapper.select(GenerationJob::getSeq, GenerationJob::getStatus, GenerationJob::getOutputXml,
+                            GenerationJob::getTotalTokens, GenerationJob::getErrorMsg)
+                    .eq(GenerationJob::getBatchId, batchId)
+                    .eq(GenerationJob::getKeyValue, apiKeyValue)
+                    .gt(GenerationJob::getSeq, lastSeq)
+                    .orderByAsc(GenerationJob::getSeq)
+                    .last("LIMIT " + DOWNLOAD_PAGE_SIZE);
+            List<GenerationJob> page = generationJobMapper.selectList(wrapper);
+
+            for (GenerationJob job : page) {
+                lastSeq = job.getSeq();
+                JobStatus status = JobStatus.getByCode(job.getStatus());
+                if (status == JobStatus.SUCCEEDED && job.getOutputXml() != null) {
+                    zip.putNextEntry(new ZipEntry(String.format("%04d.drawio", job.getSeq())));
+                    DrawioFile.write(job.getOutputXml(), true, zip);
+                    zip.closeEntry();
+                }
+                summary.append(job.getSeq()).append(',')
+                        .append(status != null ? status.getValue() : "").append(',')
+                        .append(job.getTotalTokens() != null ? job.getTotalTokens() : "").append(',')
+                        .append(csv(job.getErrorMsg())).append('\n');
+            }
+            // 每页写出后立即刷新, 客户端可以边生成边接收
+            zip.flush();
+            if (page.size() < DOWNLOAD_PAGE_SIZE) {
+                break;
+            }
+        }
+
+        zip.putNextEntry(new ZipEntry("summary.csv"));
+        zip.write(summary.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        zip.finish();
+        zip.flush();
+    }
+
+    private void checkApiKey(String apiKeyValue) {
+        // 查询结果不受额度与限流影响, 额度用完后仍可取回已完成的任务
+        if (StrUtil.isBlank(apiKeyValue) || apiKeyService.getApiKeyByValue(apiKeyValue) == null) {
+            throw new BusinessException(401, "无效的API Key");
+        }
+    }
+
+    private GenerationJob newJob(ApiKey apiKey, String batchId, int seq, String prompt, String modelType,
+                                 String mode, String ipAddress, String userAgent) {
+        GenerationJob job = new GenerationJob();
+        job.setJobId(IdUtil.fastSimpleUUID());
+        job.setBatchId(batchId);
+        job.setSeq(seq);
+        job.setApiKeyId(apiKey.getId());
+        job.setKeyValue(apiKey.getKeyValue());
+        job.setPrompt(prompt);
+        job.setModelType(modelType);
+        job.setMode(mode);
+        job.setStatus(JobStatus.PENDING.getCode());
+        job.setIpAddress(ipAddress);
+        job.setUserAgent(userAgent);
+        job.setCreateTime(LocalDateTime.now());
+        return job;
+    }
+
+    private String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        return "\"" + value.replace("\"", "\"\"").replace("\n", " ") + "\"";
+    }
+}
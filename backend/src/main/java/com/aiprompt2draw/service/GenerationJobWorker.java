@@ -0,0 +1,261 @@
+package com.aiprompt2draw.service;
+
+import cn.hutool.core.net.NetUtil;
+import cn.hutool.core.util.StrUtil;
+import com.aiprompt2draw.dto.AIResponse;
+import com.aiprompt2draw.dto.GenerationContext;
+import com.aiprompt2draw.entity.ApiKey;
+import com.aiprompt2draw.entity.GenerationJob;
+import com.aiprompt2draw.enums.ApiKeyStatus;
+import com.aiprompt2draw.enums.JobStatus;
+import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.exception.RetryableException;
+import com.aiprompt2draw.mapper.GenerationJobMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步生成任务执行器
+ * <p>
+ * 以generation_job表为队列: 定时查询排队中的任务, 用带状态条件的UPDATE领取(多个节点同时领取时只有一个成功),
+ * 在限定的并发数内调用生成; 结果写回时校验执行次数, 被回收后重新执行的任务不会被旧结果覆盖。
+ * <p>
+ * 执行超过租约时间的任务视为节点已宕机, 重新排队或在超过最大执行次数后置为失败并退还额度;
+ * 节点重启时按节点标识回收自己未完成的任务
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class GenerationJobWorker {
+
+    private static final int MAX_ERROR_LENGTH = 512;
+
+    private final GenerationJobMapper generationJobMapper;
+    private final FlowchartService flowchartService;
+    private final ApiKeyService apiKeyService;
+    private final ThreadPoolTaskExecutor jobExecutor;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private volatile boolean stopping;
+
+    @Value("${app.job.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.job.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${app.job.lease-ms:180000}")
+    private long leaseMs;
+
+    @Value("${app.job.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.job.worker-id:}")
+    private String workerId;
+
+    public GenerationJobWorker(GenerationJobMapper generationJobMapper, FlowchartService flowchartService,
+                               ApiKeyService apiKeyService, ThreadPoolTaskExecutor jobExecutor,
+                               MeterRegistry meterRegistry) {
+        this.generationJobMapper = generationJobMapper;
+        this.flowchartService = flowchartService;
+        this.apiKeyService = apiKeyService;
+        this.jobExecutor = jobExecutor;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("aiprompt2draw.job.active", active, AtomicInteger::get)
+                .description("执行中的异步生成任务数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动后回收本节点重启前未完成的任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOwn() {
+        if (StrUtil.isBlank(workerId)) {
+            workerId = NetUtil.getLocalHostName();
+        }
+        if (!enabled) {
+            return;
+        }
+
+        List<GenerationJob> jobs = generationJobMapper.selectRunningByWorker(workerId);
+        for (GenerationJob job : jobs) {
+            recover(job, 500, "任务执行中断", "节点重启");
+        }
+        if (!jobs.isEmpty()) {
+            log.info("回收本节点未完成的异步任务: workerId={}, count={}", workerId, jobs.size());
+        }
+    }
+
+    /**
+     * 领取排队中的任务, 数量不超过空闲的并发名额
+     */
+    @Scheduled(fixedDelayString = "${app.job.poll-interval-ms:1000}")
+    public synchronized void poll() {
+        if (!enabled || stopping || StrUtil.isBlank(workerId)) {
+            return;
+        }
+
+        int free = maxConcurrency - active.get();
+        while (free > 0 && !stopping) {
+            List<Long> ids = generationJobMapper.selectPendingIds(free);
+            if (ids.isEmpty()) {
+                return;
+            }
+            for (Long id : ids) {
+                if (generationJobMapper.claim(id, workerId) == 0) {
+                    // 已被其他节点领取
+                    continue;
+                }
+                GenerationJob job = generationJobMapper.selectById(id);
+                active.incrementAndGet();
+                free--;
+                try {
+                    jobExecutor.execute(() -> execute(job));
+                } catch (RuntimeException e) {
+                    active.decrementAndGet();
+                    generationJobMapper.requeue(id, job.getAttempts());
+                    log.warn("异步任务提交失败, 重新排队: jobId={}", job.getJobId(), e);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 回收执行超过租约时间的任务
+     */
+    @Scheduled(fixedDelayString = "${app.job.recover-interval-ms:60000}")
+    public void recoverExpired() {
+        if (!enabled || stopping) {
+            return;
+        }
+
+        for (GenerationJob job : generationJobMapper.selectExpired(leaseMs / 1000, 100)) {
+            recover(job, 504, "任务执行超时", "租约过期");
+        }
+    }
+
+    /**
+     * 回收执行中断的任务: 未达到最大执行次数时重新排队, 否则置为失败并退还额度
+     *
+     * @param job     任务(id、attempts与key_value)
+     * @param code    置为失败时的错误码
+     * @param message 置为失败时的错误信息
+     * @param reason  中断原因, 用于日志
+     */
+    private void recover(GenerationJob job, int code, String message, String reason) {
+        if (job.getAttempts() < maxAttempts) {
+            if (generationJobMapper.requeue(job.getId(), job.getAttempts()) > 0) {
+                log.warn("异步任务{}, 重新排队: id={}, attempts={}", reason, job.getId(), job.getAttempts());
+            }
+        } else if (generationJobMapper.finish(job.getId(), job.getAttempts(), JobStatus.FAILED.getCode(),
+                null, null, code, message) > 0) {
+            apiKeyService.refundQuota(job.getKeyValue(), 1);
+            countCompletion(JobStatus.FAILED);
+            log.warn("异步任务{}且已达最大执行次数, 置为失败: id={}, attempts={}", reason, job.getId(), job.getAttempts());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 停止领取新任务, 执行中的任务由线程池在关闭时等待完成
+        stopping = true;
+    }
+
+    /**
+     * 执行任务
+     */
+    private void execute(GenerationJob job) {
+        CompletableFuture<AIResponse> future;
+        try {
+            ApiKey apiKey = apiKeyService.getApiKeyByValue(job.getKeyValue());
+            if (apiKey == null || !ApiKeyStatus.ENABLED.getCode().equals(apiKey.getStatus())
+                    || (apiKey.getExpireTime() != null && LocalDateTime.now().isAfter(apiKey.getExpireTime()))) {
+                throw new BusinessException(403, "API Key已被禁用或已过期");
+            }
+            GenerationContext context = flowchartService.prepareQueued(apiKey, job.getPrompt(), job.getModelType(),
+                    job.getMode(), job.getIpAddress(), job.getUserAgent());
+            future = flowchartService.generateAsync(context);
+        } catch (RuntimeException e) {
+            // 尚未开始生成, 由此处退还提交时预留的额度
+            apiKeyService.refundQuota(job.getKeyValue(), 1);
+            complete(job, null, e);
+            return;
+        }
+
+        // 生成失败时generateAsync已退还额度
+        future.whenCompleteAsync((aiResponse, error) -> complete(job, aiResponse, error), jobExecutor);
+    }
+
+    private void complete(GenerationJob job, AIResponse aiResponse, Throwable error) {
+        boolean requeued = false;
+        try {
+            if (error == null) {
+                generationJobMapper.finish(job.getId(), job.getAttempts(), JobStatus.SUCCEEDED.getCode(),
+                        aiResponse.getXmlContent(), aiResponse.getTotalTokens(), null, null);
+                countCompletion(JobStatus.SUCCEEDED);
+                return;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            // 应用关闭时不受执行次数上限限制, 同样放回队列, 由其他节点或重启后继续执行
+            if (cause instanceof RetryableException && (job.getAttempts() < maxAttempts || stopping)
+                    && apiKeyService.reserveQuota(job.getKeyValue(), 1)) {
+                generationJobMapper.requeue(job.getId(), job.getAttempts());
+                requeued = true;
+                log.info("异步任务暂时无法执行, 重新排队: jobId={}, attempts={}, reason={}",
+                        job.getJobId(), job.getAttempts(), cause.getMessage());
+                return;
+            }
+
+            int code = 500;
+            String message = "系统异常,请稍后重试";
+            if (cause instanceof BusinessException) {
+                code = ((BusinessException) cause).getCode();
+                message = StrUtil.maxLength(cause.getMessage(), MAX_ERROR_LENGTH - 3);
+            } else {
+                log.error("异步任务执行异常: jobId={}", job.getJobId(), cause);
+            }
+            generationJobMapper.finish(job.getId(), job.getAttempts(), JobStatus.FAILED.getCode(),
+                    null, null, code, message);
+            countCompletion(JobStatus.FAILED);
+        } catch (RuntimeException e) {
+            // 结果未能写回, 任务保持执行中状态, 租约过期后重新执行
+            log.error("异步任务结果写回失败: jobId={}", job.getJobId(), e);
+        } finally {
+            active.decrementAndGet();
+        }
+        // 空出名额后立即领取下一个任务; 暂时无法执行而重新排队的任务等待下一轮定时领取
+        if (!requeued && !stopping) {
+            jobExecutor.execute(this::poll);
+        }
+    }
+
+    private void countCompletion(JobStatus status) {
+        Counter.builder("aiprompt2draw.job.completed")
+                .tag("status", status.getValue())
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,187 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.enums.GenerationMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成请求监控指标
+ * <p>
+ * 通过Actuator的/actuator/metrics暴露
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Component
+public class GenerationMetrics {
+
+    private final MeterRegistry registry;
+
+    /**
+     * 已释放Servlet线程、等待上游返回的请求数
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Counter timeouts;
+
+    private final Counter coalesced;
+
+    private final Counter hedges;
+
+    private final Counter hedgeWins;
+
+    private final Counter fallbacks;
+
+    private final Counter validationRetries;
+
+    public GenerationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("aiprompt2draw.generate.pending", pending, AtomicInteger::get)
+                .description("等待AI响应的异步生成请求数")
+                .register(registry);
+        this.timeouts = Counter.builder("aiprompt2draw.generate.timeouts")
+                .description("异步生成请求超时次数")
+                .register(registry);
+        this.coalesced = Counter.builder("aiprompt2draw.generate.coalesced")
+                .description("合并到进行中调用的请求数(即节省的上游调用次数)")
+                .register(registry);
+        this.hedges = Counter.builder("aiprompt2draw.generate.hedges")
+                .description("发起的对冲请求数")
+                .register(registry);
+        this.hedgeWins = Counter.builder("aiprompt2draw.generate.hedge.wins")
+                .description("对冲请求先于主请求返回的次数")
+                .register(registry);
+        this.fallbacks = Counter.builder("aiprompt2draw.generate.fallbacks")
+                .description("主配置熔断后切换到其他配置的次数")
+                .register(registry);
+        this.validationRetries = Counter.builder("aiprompt2draw.generate.validation.retries")
+                .description("输出校验失败后重新生成的次数")
+                .register(registry);
+    }
+
+    /**
+     * 异步请求开始
+     */
+    public void requestStarted() {
+        pending.incrementAndGet();
+    }
+
+    /**
+     * 异步请求结束(成功、失败或超时)
+     */
+    public void requestCompleted() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * 记录一次超时
+     */
+    public void recordTimeout() {
+        timeouts.increment();
+    }
+
+    /**
+     * 记录一次被合并的请求
+     */
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    /**
+     * 记录一次对冲请求
+     */
+    public void recordHedge() {
+        hedges.increment();
+    }
+
+    /**
+     * 记录一次对冲请求胜出
+     */
+    public void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    /**
+     * 记录一次熔断切换
+     */
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    /**
+     * 记录一次输出校验结果, 按模型配置统计输出合法率
+     *
+     * @param configId 模型配置ID
+     * @param result   valid-合法, invalid-完整输出不合法, aborted-流式输出中途判定不合法并中止
+     */
+    public void recordValidation(Long configId, String result) {
+        Counter.builder("aiprompt2draw.generate.validation")
+                .description("模型输出校验结果")
+                .tag("configId", String.valueOf(configId))
+                .tag("result", result)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 记录一次输出修复
+     *
+     * @param configId 模型配置ID
+     * @param kind     修复类型
+     */
+    public void recordRepair(Long configId, String kind) {
+        Counter.builder("aiprompt2draw.generate.repairs")
+                .description("模型输出修复次数")
+                .tag("configId", String.valueOf(configId))
+                .tag("kind", kind)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * 记录一次校验失败后的重新生成
+     */
+    public void recordValidationRetry() {
+        validationRetries.increment();
+    }
+
+    /**
+     * 获取当前等待中的请求数
+     *
+     * @return 等待中的请求数
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * 记录一次上游生成的输出Token数与耗时, 按生成模式区分以便对比XML与图描述模式
+     *
+     * @param mode             生成模式
+     * @param completionTokens 输出Token数
+     * @param responseTime     上游耗时(毫秒)
+     */
+    public void recordCompletion(GenerationMode mode, Integer completionTokens, Long responseTime) {
+        if (completionTokens != null) {
+            DistributionSummary.builder("aiprompt2draw.generate.completion.tokens")
+                    .description("每次上游生成的输出Token数")
+                    .tag("mode", mode.getCode())
+                    .register(registry)
+                    .record(completionTokens);
+        }
+        if (responseTime != null) {
+            Timer.builder("aiprompt2draw.generate.upstream.time")
+                    .description("每次上游生成的耗时")
+                    .tag("mode", mode.getCode())
+                    .register(registry)
+                    .record(responseTime, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * 模型配置服务
  *
@@ -44,6 +46,34 @@ public class ModelConfigService {
         return config;
     }
 
+    /**
+     * 获取指定类型的所有启用配置, 按优先级从高到低排序
+     *
+     * @param modelType 模型类型
+     * @return 模型配置列表
+     */
+    public List<ModelConfig> listEnabledByModelType(String modelType) {
+        LambdaQueryWrapper<ModelConfig> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(ModelConfig::getModelType, modelType)
+                .eq(ModelConfig::getStatus, 1)
+                .orderByDesc(ModelConfig::getPriority);
+
+        return modelConfigMapper.selectList(wrapper);
+    }
+
+    /**
+     * 获取所有启用的模型配置
+     *
+     * @return 模型配置列表
+     */
+    public List<ModelConfig> listEnabled() {
+        LambdaQueryWrapper<ModelConfig> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(ModelConfig::getStatus, 1)
+                .orderByDesc(ModelConfig::getPriority);
+
+        return modelConfigMapper.selectList(wrapper);
+    }
+
     /**
      * 获取默认模型配置
      *
@@ -0,0 +1,655 @@
+package com.aiprompt2draw.service;
+
+import cn.hutool.core.thread.ThreadUtil;
+import com.aiprompt2draw.adapter.AIModelAdapter;
+import com.aiprompt2draw.adapter.CircuitBreakerRegistry;
+import com.aiprompt2draw.diagram.FlowchartDslExpander;
+import com.aiprompt2draw.diagram.FlowchartEditor;
+import com.aiprompt2draw.diagram.MxGraphLayouter;
+import com.aiprompt2draw.diagram.MxGraphRepairer;
+import com.aiprompt2draw.diagram.MxGraphValidator;
+import com.aiprompt2draw.adapter.AIModelFactory;
+import com.aiprompt2draw.adapter.BulkheadRegistry;
+import com.aiprompt2draw.dto.AIResponse;
+import com.aiprompt2draw.dto.GenerationContext;
+import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.enums.GenerationMode;
+import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.exception.CircuitOpenException;
+import com.aiprompt2draw.exception.InvalidOutputException;
+import com.aiprompt2draw.utils.Bulkhead;
+import com.aiprompt2draw.utils.TokenEstimator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 模型调用服务
+ * <p>
+ * 负责实际调用模型适配器并记录调用统计。每次调用先在配置的舱壁中排队获取并发名额, 再经过熔断器, 熔断中的配置快速失败
+ * 或切换到同类型的其他可用配置。开启对冲后, 主配置在观测到的P90耗时(或配置的延迟)内
+ * 仍未返回时, 向同类型的下一优先级配置发起相同请求, 取先成功返回的结果并取消另一个调用。
+ * 对冲次数受每个配置的预算限制, 上游调用量最多翻倍。
+ * 模型输出在返回前修复可确定修复的结构问题并校验, 仍不合法时在请求时限内重新生成
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelInvocationService {
+
+    private final AIModelFactory aiModelFactory;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final ModelConfigService modelConfigService;
+    private final ModelStatsService modelStatsService;
+    private final ModelRouterService modelRouterService;
+    private final GenerationMetrics generationMetrics;
+    private final FlowchartDslExpander flowchartDslExpander;
+    private final FlowchartEditor flowchartEditor;
+    private final MxGraphLayouter mxGraphLayouter;
+
+    /**
+     * 对冲预算桶的最大积累量
+     */
+    private static final double HEDGE_BUDGET_BURST = 10;
+
+    @Value("${app.ai.hedge.enabled:false}")
+    private boolean hedgeEnabled;
+
+    /**
+     * 固定对冲延迟(毫秒), 0表示使用主配置观测到的耗时分位数
+     */
+    @Value("${app.ai.hedge.delay-ms:0}")
+    private long hedgeDelayMs;
+
+    @Value("${app.ai.hedge.percentile:0.9}")
+    private double hedgePercentile;
+
+    /**
+     * 样本不足时使用的对冲延迟(毫秒)
+     */
+    @Value("${app.ai.hedge.default-delay-ms:5000}")
+    private long defaultHedgeDelayMs;
+
+    /**
+     * 对冲预算: 每个主请求可积累的对冲次数(0-1)
+     */
+    @Value("${app.ai.hedge.budget-ratio:0.1}")
+    private double hedgeBudgetRatio;
+
+    /**
+     * XML模式下是否忽略模型给出的坐标, 由服务端重新布局
+     */
+    @Value("${app.diagram.auto-layout:true}")
+    private boolean autoLayout;
+
+    /**
+     * 是否校验模型输出, 校验失败时在请求时限内重新生成
+     */
+    @Value("${app.ai.validation.enabled:true}")
+    private boolean validationEnabled;
+
+    @Value("${app.ai.validation.max-retries:1}")
+    private int validationMaxRetries;
+
+    /**
+     * 校验前是否先修复可确定修复的结构问题
+     */
+    @Value("${app.ai.validation.repair-enabled:true}")
+    private boolean repairEnabled;
+
+    /**
+     * 主配置熔断时是否切换到同类型的其他配置
+     */
+    @Value("${app.ai.circuit-breaker.fallback-enabled:true}")
+    private boolean fallbackEnabled;
+
+    private final Map<Long, HedgeBudget> hedgeBudgets = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService hedgeTimer =
+            Executors.newSingleThreadScheduledExecutor(ThreadUtil.newNamedThreadFactory("hedge-timer-", true));
+
+    /**
+     * 调用模型生成流程图
+     * <p>
+     * 输出校验失败时, 在请求时限内重新生成
+     *
+     * @param context 生成上下文, 对冲请求胜出时会更新为实际返回结果的模型配置
+     * @return AI响应Future
+     */
+    public CompletableFuture<AIResponse> invoke(GenerationContext context) {
+        CompletableFuture<AIResponse> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<AIResponse>> current = new AtomicReference<>();
+        attempt(context, result, current, 0);
+
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                current.get().cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 发起一次生成, 输出校验失败且允许重试时再次发起
+     */
+    private void attempt(GenerationContext context, CompletableFuture<AIResponse> result,
+                         AtomicReference<CompletableFuture<AIResponse>> current, int retries) {
+        CompletableFuture<AIResponse> call = invokeOnce(context);
+        current.set(call);
+        if (result.isCancelled()) {
+            call.cancel(true);
+            return;
+        }
+
+        call.whenComplete((response, error) -> {
+            if (error == null) {
+                result.complete(response);
+            } else if (shouldRetry(context, error, retries)) {
+                attempt(context, result, current, retries + 1);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    /**
+     * 单次生成: 熔断切换与对冲
+     */
+    private CompletableFuture<AIResponse> invokeOnce(GenerationContext context) {
+        ModelConfig primary;
+        try {
+            primary = selectAvailable(context);
+        } catch (BusinessException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (!hedgeEnabled) {
+            return call(context, primary);
+        }
+
+        ModelConfig backup = findBackup(primary, promptTokensOf(context));
+        if (backup == null) {
+            return call(context, primary);
+        }
+
+        return hedge(context, primary, backup);
+    }
+
+    /**
+     * 流式调用模型生成流程图
+     * <p>
+     * XML模式下边接收边校验, 输出已无法构成合法流程图时立即中止上游读取, 并在请求时限内重新生成
+     *
+     * @param context 生成上下文, 发生熔断切换时会更新为实际调用的模型配置
+     * @param onChunk 内容片段回调
+     * @param onRetry 重新生成前的回调, 此前推送的内容片段应被丢弃
+     * @return AI响应
+     */
+    public AIResponse invokeStream(GenerationContext context, Consumer<String> onChunk, Runnable onRetry) {
+        for (int retries = 0; ; retries++) {
+            try {
+                return streamOnce(context, onChunk);
+            } catch (InvalidOutputException e) {
+                if (!shouldRetry(context, e, retries)) {
+                    throw e;
+                }
+                onRetry.run();
+            }
+        }
+    }
+
+    /**
+     * 单次流式生成
+     */
+    private AIResponse streamOnce(GenerationContext context, Consumer<String> onChunk) {
+        ModelConfig config = selectAvailable(context);
+
+        // 流式调用本身在工作线程中同步读取, 排队等待名额同样同步进行
+        Bulkhead.Permit permit;
+        try {
+            permit = bulkheadRegistry.acquire(config).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+
+        try {
+            if (!circuitBreakerRegistry.tryAcquire(config.getId())) {
+                throw circuitOpen(config);
+            }
+
+            Consumer<String> sink = onChunk;
+            if (validationEnabled && context.getMode() == GenerationMode.XML) {
+                MxGraphValidator validator = new MxGraphValidator();
+                sink = chunk -> {
+                    try {
+                        validator.feed(chunk);
+                    } catch (InvalidOutputException e) {
+                        log.warn("流式输出校验失败, 中止上游读取: configId={}, reason={}",
+                                config.getId(), e.getMessage());
+                        generationMetrics.recordValidation(config.getId(), "aborted");
+                        throw e;
+                    }
+                    onChunk.accept(chunk);
+                };
+            }
+
+            long startTime = System.currentTimeMillis();
+            AIModelAdapter adapter = aiModelFactory.getAdapter(config.getModelType());
+            modelStatsService.recordStart(config.getId());
+            try {
+                AIResponse response = adapter.generateFlowchartStream(
+                        context.getPrompt(), config, context.getMode(), context.getDeadline(), sink);
+                onCompleted(config, System.currentTimeMillis() - startTime, null, false);
+                return postProcess(context, config, response);
+            } catch (RuntimeException e) {
+                // 调用方断开(回调抛出UncheckedIOException)按主动中止处理
+                onCompleted(config, System.currentTimeMillis() - startTime, e, e instanceof UncheckedIOException);
+                throw e;
+            }
+        } finally {
+            release(permit);
+        }
+    }
+
+    /**
+     * 调用单个模型配置并记录耗时
+     * <p>
+     * 调用前先在配置的舱壁中排队获取并发名额, 排队期间不占用线程; 取消返回的Future会放弃排队或中止调用
+     *
+     * @param context 生成上下文
+     * @param config  模型配置
+     * @return AI响应Future
+     */
+    private CompletableFuture<AIResponse> call(GenerationContext context, ModelConfig config) {
+        CompletableFuture<AIResponse> result = new CompletableFuture<>();
+        CompletableFuture<Bulkhead.Permit> slot = bulkheadRegistry.acquire(config);
+
+        slot.whenComplete((permit, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            if (result.isDone()) {
+                // 获得名额前调用方已取消
+                release(permit);
+                return;
+            }
+
+            CompletableFuture<AIResponse> upstream;
+            try {
+                upstream = start(context, config);
+            } catch (RuntimeException e) {
+                release(permit);
+                result.completeExceptionally(e);
+                return;
+            }
+            upstream.whenComplete((response, upstreamError) -> {
+                release(permit);
+                if (upstreamError != null) {
+                    result.completeExceptionally(upstreamError);
+                    return;
+                }
+                try {
+                    result.complete(postProcess(context, config, response));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            result.whenComplete((response, resultError) -> {
+                if (result.isCancelled()) {
+                    upstream.cancel(true);
+                }
+            });
+        });
+
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                slot.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 在已获得并发名额后发起上游调用
+     */
+    private CompletableFuture<AIResponse> start(GenerationContext context, ModelConfig config) {
+        if (!circuitBreakerRegistry.tryAcquire(config.getId())) {
+            return CompletableFuture.failedFuture(circuitOpen(config));
+        }
+
+        long startTime = System.currentTimeMillis();
+        AIModelAdapter adapter = aiModelFactory.getAdapter(config.getModelType());
+
+        modelStatsService.recordStart(config.getId());
+        CompletableFuture<AIResponse> future = adapter.generateFlowchartAsync(
+                context.getPrompt(), config, context.getMode(), context.getDeadline());
+        future.whenComplete((response, error) ->
+                onCompleted(config, System.currentTimeMillis() - startTime, error, future.isCancelled()));
+        return future;
+    }
+
+    /**
+     * 处理上游原始结果: 补全Token数, 记录各生成模式的输出Token与耗时, 校验输出,
+     * 图描述模式下展开为XML, XML模式下按配置重新布局
+     */
+    private AIResponse postProcess(GenerationContext context, ModelConfig config, AIResponse response) {
+        fillMissingUsage(context, response);
+        generationMetrics.recordCompletion(context.getMode(), response.getCompletionTokens(),
+                response.getResponseTime());
+
+        // 图描述模式下模型直接返回了XML时, 与XML模式一样修复、校验并重新布局
+        boolean xmlOutput = context.getMode() == GenerationMode.XML
+                || context.getMode() == GenerationMode.DSL && flowchartDslExpander.isXml(response.getXmlContent());
+        if (xmlOutput && context.getMode() == GenerationMode.DSL) {
+            log.info("图描述模式下模型返回了XML, 按XML模式处理: configId={}", config.getId());
+        }
+
+        try {
+            if (context.getMode() == GenerationMode.EDIT) {
+                // 修改指令由调用方应用到原流程图, 这里只检查能否解析, 以便在时限内重新生成
+                flowchartEditor.parse(response.getXmlContent());
+            } else if (!xmlOutput) {
+                response.setXmlContent(flowchartDslExpander.expand(response.getXmlContent()));
+            } else if (validationEnabled) {
+                if (repairEnabled) {
+                    repair(config, response);
+                }
+                MxGraphValidator.validate(response.getXmlContent());
+            }
+        } catch (InvalidOutputException e) {
+            log.warn("模型输出校验失败: configId={}, reason={}", config.getId(), e.getMessage());
+            generationMetrics.recordValidation(config.getId(), "invalid");
+            throw e;
+        }
+        generationMetrics.recordValidation(config.getId(), "valid");
+
+        if (xmlOutput && autoLayout) {
+            response.setXmlContent(mxGraphLayouter.relayout(response.getXmlContent()));
+        }
+        return response;
+    }
+
+    /**
+     * 修复接近正确的输出, 避免重新生成
+     */
+    private void repair(ModelConfig config, AIResponse response) {
+        MxGraphRepairer.Result result = MxGraphRepairer.repair(response.getXmlContent());
+        if (!result.isRepaired()) {
+            return;
+        }
+        log.info("模型输出已修复: configId={}, repairs={}", config.getId(), result.getRepairs());
+        result.getKinds().forEach(kind -> generationMetrics.recordRepair(config.getId(), kind.getCode()));
+        response.setXmlContent(result.getContent());
+        response.setRepairs(result.getRepairs());
+    }
+
+    /**
+     * 判断输出校验失败后能否重新生成: 未超过重试次数, 且剩余时限足以完成一次调用
+     */
+    private boolean shouldRetry(GenerationContext context, Throwable error, int retries) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (!(cause instanceof InvalidOutputException) || retries >= validationMaxRetries) {
+            return false;
+        }
+
+        long remaining = context.getDeadline() - System.currentTimeMillis();
+        long expected = modelStatsService.getLatencyPercentile(context.getModelConfig().getId(), 0.5);
+        if (remaining <= expected) {
+            log.info("输出校验失败, 剩余时限不足以重新生成: remaining={}ms, expected={}ms", remaining, expected);
+            return false;
+        }
+
+        log.info("输出校验失败, 重新生成: retry={}, remaining={}ms", retries + 1, remaining);
+        generationMetrics.recordValidationRetry();
+        return true;
+    }
+
+    /**
+     * 厂商未返回usage时以本地估算值填充Token数, 保证计费与统计不为0
+     */
+    private void fillMissingUsage(GenerationContext context, AIResponse response) {
+        if (response.getTotalTokens() != null && response.getTotalTokens() > 0) {
+            return;
+        }
+        int promptTokens = promptTokensOf(context);
+        int completionTokens = TokenEstimator.estimate(response.getXmlContent());
+        response.setPromptTokens(promptTokens);
+        response.setCompletionTokens(completionTokens);
+        response.setTotalTokens(promptTokens + completionTokens);
+        response.setTokensEstimated(true);
+    }
+
+    /**
+     * 获取上下文中的估算输入Token数
+     */
+    private int promptTokensOf(GenerationContext context) {
+        return context.getEstimatedPromptTokens() != null
+                ? context.getEstimatedPromptTokens() : TokenEstimator.estimateRequest(context.getPrompt(), context.getMode());
+    }
+
+    /**
+     * 归还并发名额
+     */
+    private void release(Bulkhead.Permit permit) {
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    /**
+     * 记录调用结果到统计与熔断器
+     */
+    private void onCompleted(ModelConfig config, long latency, Throwable error, boolean cancelled) {
+        if (error == null) {
+            modelStatsService.recordSuccess(config.getId(), latency);
+            circuitBreakerRegistry.onSuccess(config.getId(), latency);
+        } else if (cancelled || error instanceof InvalidOutputException) {
+            // 主动中止的调用不计入厂商的失败统计
+            modelStatsService.recordCancelled(config.getId());
+            circuitBreakerRegistry.release(config.getId());
+        } else {
+            modelStatsService.recordFailure(config.getId(), latency, isTimeout(error));
+            circuitBreakerRegistry.onFailure(config.getId(), latency);
+        }
+    }
+
+    /**
+     * 确定本次调用的配置: 主配置熔断时切换到同类型的其他可用配置
+     */
+    private ModelConfig selectAvailable(GenerationContext context) {
+        ModelConfig primary = context.getModelConfig();
+        if (circuitBreakerRegistry.isCallPermitted(primary.getId())) {
+            return primary;
+        }
+
+        if (fallbackEnabled) {
+            for (ModelConfig candidate : modelConfigService.listEnabledByModelType(primary.getModelType())) {
+                if (!candidate.getId().equals(primary.getId())
+                        && modelRouterService.hasHeadroom(candidate, promptTokensOf(context))
+                        && circuitBreakerRegistry.isCallPermitted(candidate.getId())) {
+                    log.info("模型配置熔断中, 切换配置: primary={}, fallback={}", primary.getId(), candidate.getId());
+                    generationMetrics.recordFallback();
+                    context.setModelConfig(candidate);
+                    return candidate;
+                }
+            }
+        }
+
+        throw circuitOpen(primary);
+    }
+
+    /**
+     * 熔断快速失败异常
+     */
+    private CircuitOpenException circuitOpen(ModelConfig config) {
+        return new CircuitOpenException(circuitBreakerRegistry.getRemainingOpenMillis(config.getId()) / 1000 + 1);
+    }
+
+    /**
+     * 发起对冲调用
+     */
+    private CompletableFuture<AIResponse> hedge(GenerationContext context, ModelConfig primary, ModelConfig backup) {
+        HedgeBudget budget = hedgeBudgets.computeIfAbsent(primary.getId(),
+                id -> new HedgeBudget(Math.max(0, Math.min(1, hedgeBudgetRatio))));
+        budget.onRequest();
+
+        CompletableFuture<AIResponse> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        AtomicReference<CompletableFuture<AIResponse>> backupCall = new AtomicReference<>();
+
+        CompletableFuture<AIResponse> primaryCall = call(context, primary);
+        primaryCall.whenComplete((response, error) ->
+                settle(context, result, outstanding, primary, response, error, backupCall.get()));
+
+        long delay = resolveHedgeDelay(primary);
+        ScheduledFuture<?> timer = hedgeTimer.schedule(() -> {
+            if (result.isDone() || !budget.tryAcquire()) {
+                return;
+            }
+            outstanding.incrementAndGet();
+            if (result.isDone()) {
+                return;
+            }
+
+            log.info("主模型配置{}ms内未返回, 发起对冲请求: primary={}, backup={}",
+                    delay, primary.getId(), backup.getId());
+            generationMetrics.recordHedge();
+
+            CompletableFuture<AIResponse> call = call(context, backup);
+            backupCall.set(call);
+            call.whenComplete((response, error) ->
+                    settle(context, result, outstanding, backup, response, error, primaryCall));
+        }, delay, TimeUnit.MILLISECONDS);
+
+        // 结果确定或调用方取消后, 清理定时器与仍在进行的调用
+        result.whenComplete((response, error) -> {
+            timer.cancel(false);
+            if (result.isCancelled()) {
+                primaryCall.cancel(true);
+                CompletableFuture<AIResponse> call = backupCall.get();
+                if (call != null) {
+                    call.cancel(true);
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * 处理单个调用的结果: 首个成功结果胜出并取消另一个调用, 全部失败时返回最后一个错误
+     */
+    private void settle(GenerationContext context, CompletableFuture<AIResponse> result, AtomicInteger outstanding,
+                        ModelConfig config, AIResponse response, Throwable error,
+                        CompletableFuture<AIResponse> other) {
+        if (error == null) {
+            synchronized (result) {
+                if (result.isDone()) {
+                    return;
+                }
+                if (!config.getId().equals(context.getModelConfig().getId())) {
+                    generationMetrics.recordHedgeWin();
+                }
+                context.setModelConfig(config);
+                result.complete(response);
+            }
+            if (other != null) {
+                other.cancel(true);
+            }
+            return;
+        }
+
+        if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 判断是否为上游超时
+     */
+    private boolean isTimeout(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof BusinessException && Integer.valueOf(504).equals(((BusinessException) cause).getCode());
+    }
+
+    /**
+     * 获取同类型的下一优先级配置
+     */
+    private ModelConfig findBackup(ModelConfig primary, int promptTokens) {
+        List<ModelConfig> candidates = modelConfigService.listEnabledByModelType(primary.getModelType());
+        return candidates.stream()
+                .filter(candidate -> !candidate.getId().equals(primary.getId()))
+                .filter(candidate -> modelRouterService.hasHeadroom(candidate, promptTokens))
+                .filter(candidate -> circuitBreakerRegistry.isCallPermitted(candidate.getId()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * 计算对冲延迟
+     */
+    private long resolveHedgeDelay(ModelConfig primary) {
+        if (hedgeDelayMs > 0) {
+            return hedgeDelayMs;
+        }
+        long observed = modelStatsService.getLatencyPercentile(primary.getId(), hedgePercentile);
+        return observed > 0 ? observed : defaultHedgeDelayMs;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeTimer.shutdownNow();
+    }
+
+    /**
+     * 对冲预算(令牌桶): 每个主请求积累ratio个令牌, 每次对冲消耗1个
+     */
+    private static final class HedgeBudget {
+
+        private final double ratio;
+        private double tokens;
+
+        private HedgeBudget(double ratio) {
+            this.ratio = ratio;
+        }
+
+        synchronized void onRequest() {
+            tokens = Math.min(HEDGE_BUDGET_BURST, tokens + ratio);
+        }
+
+        synchronized boolean tryAcquire() {
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+    }
+}
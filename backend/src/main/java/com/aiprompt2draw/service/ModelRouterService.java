@@ -0,0 +1,226 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.adapter.AIHttpClientPool;
+import com.aiprompt2draw.entity.ModelConfig;
+import com.aiprompt2draw.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * 模型路由服务
+ * <p>
+ * 在同类型的多个启用配置之间选择本次调用的目标, 支持以下策略:
+ * <ul>
+ *     <li>priority: 始终选择优先级最高的配置(默认, 与原行为一致)</li>
+ *     <li>p2c: 随机取两个配置, 选择路由分数较低的一个</li>
+ *     <li>least-latency: 按路由分数的倒数加权随机选择</li>
+ * </ul>
+ * 路由分数由{@link ModelStatsService}根据EWMA耗时、错误率、超时率与并发数计算,
+ * 空闲配置由定时探测维持健康状态
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ModelRouterService {
+
+    private final ModelConfigService modelConfigService;
+    private final ModelStatsService modelStatsService;
+    private final AIHttpClientPool httpClientPool;
+
+    @Value("${app.ai.routing.strategy:priority}")
+    private String strategy;
+
+    @Value("${app.ai.routing.default-latency-ms:3000}")
+    private double defaultLatencyMs;
+
+    @Value("${app.ai.routing.probe-enabled:true}")
+    private boolean probeEnabled;
+
+    @Value("${app.ai.routing.probe-interval-ms:30000}")
+    private long probeIntervalMs;
+
+    @Value("${app.ai.routing.probe-timeout-ms:3000}")
+    private long probeTimeoutMs;
+
+    /**
+     * 为指定类型选择模型配置
+     * <p>
+     * 只在上下文长度足以容纳本次输入与最大输出的配置中选择
+     *
+     * @param modelType    模型类型
+     * @param promptTokens 估算的输入Token数
+     * @return 模型配置
+     */
+    public ModelConfig select(String modelType, int promptTokens) {
+        return select(loadCandidates(modelType), promptTokens);
+    }
+
+    /**
+     * 为一批输入选择模型配置, 候选配置只查询一次
+     *
+     * @param modelType    模型类型
+     * @param promptTokens 各输入估算的Token数
+     * @return 与输入一一对应的模型配置
+     */
+    public List<ModelConfig> selectAll(String modelType, int[] promptTokens) {
+        List<ModelConfig> candidates = loadCandidates(modelType);
+        List<ModelConfig> selected = new ArrayList<>(promptTokens.length);
+        for (int tokens : promptTokens) {
+            selected.add(select(candidates, tokens));
+        }
+        return selected;
+    }
+
+    private List<ModelConfig> loadCandidates(String modelType) {
+        List<ModelConfig> candidates = modelConfigService.listEnabledByModelType(modelType);
+        if (candidates.isEmpty()) {
+            throw new BusinessException("模型配置不存在或未启用: " + modelType);
+        }
+        return candidates;
+    }
+
+    private ModelConfig select(List<ModelConfig> enabled, int promptTokens) {
+        List<ModelConfig> candidates = enabled.stream()
+                .filter(candidate -> hasHeadroom(candidate, promptTokens))
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            throw new BusinessException(400, "输入内容过长(预估" + promptTokens + " tokens),超出模型上下文长度");
+        }
+        if (candidates.size() == 1 || "priority".equalsIgnoreCase(strategy)) {
+            return candidates.get(0);
+        }
+
+        return "least-latency".equalsIgnoreCase(strategy) ? weighted(candidates) : powerOfTwo(candidates);
+    }
+
+    /**
+     * 判断配置的上下文长度能否容纳本次输入与最大输出
+     *
+     * @param config       模型配置
+     * @param promptTokens 估算的输入Token数
+     * @return 未配置上下文长度时返回true
+     */
+    public boolean hasHeadroom(ModelConfig config, int promptTokens) {
+        if (config.getContextWindow() == null || config.getContextWindow() <= 0) {
+            return true;
+        }
+        int maxTokens = config.getMaxTokens() != null ? config.getMaxTokens() : 0;
+        return promptTokens + maxTokens <= config.getContextWindow();
+    }
+
+    /**
+     * 获取配置的路由分数(越小越好)
+     *
+     * @param configId 模型配置ID
+     * @return 路由分数
+     */
+    public double getScore(Long configId) {
+        return modelStatsService.getScore(configId, defaultLatencyMs);
+    }
+
+    /**
+     * 探测空闲配置的连通性
+     * <p>
+     * 有真实流量的配置已由调用结果持续更新, 只探测最近一个周期内没有调用的配置;
+     * 探测请求不携带密钥, 只要厂商返回非5xx即视为可达
+     */
+    @Scheduled(fixedDelayString = "${app.ai.routing.probe-interval-ms:30000}",
+            initialDelayString = "${app.ai.routing.probe-interval-ms:30000}")
+    public void probeIdleConfigs() {
+        if (!probeEnabled || "priority".equalsIgnoreCase(strategy)) {
+            return;
+        }
+
+        List<ModelConfig> configs;
+        try {
+            configs = modelConfigService.listEnabled();
+        } catch (Exception e) {
+            log.warn("加载模型配置失败, 跳过本轮探测: {}", e.getMessage());
+            return;
+        }
+
+        for (ModelConfig config : configs) {
+            if (modelStatsService.getIdleMillis(config.getId()) < probeIntervalMs) {
+                continue;
+            }
+            probe(config);
+        }
+    }
+
+    /**
+     * 二选一: 随机取两个不同配置, 选择分数较低者
+     */
+    private ModelConfig powerOfTwo(List<ModelConfig> candidates) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        ModelConfig a = candidates.get(first);
+        ModelConfig b = candidates.get(second);
+        return getScore(a.getId()) <= getScore(b.getId()) ? a : b;
+    }
+
+    /**
+     * 按分数倒数加权随机选择, 使较慢的配置仍能获得少量流量以更新统计
+     */
+    private ModelConfig weighted(List<ModelConfig> candidates) {
+        double[] weights = new double[candidates.size()];
+        double total = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            weights[i] = 1.0 / Math.max(getScore(candidates.get(i).getId()), 1.0);
+            total += weights[i];
+        }
+
+        double point = ThreadLocalRandom.current().nextDouble(total);
+        for (int i = 0; i < weights.length; i++) {
+            point -= weights[i];
+            if (point < 0) {
+                return candidates.get(i);
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+
+    /**
+     * 对单个配置发起一次轻量探测
+     */
+    private void probe(ModelConfig config) {
+        long startTime = System.currentTimeMillis();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(config.getApiUrl()))
+                    .timeout(Duration.ofMillis(probeTimeoutMs))
+                    .GET()
+                    .build();
+            HttpResponse<Void> response = httpClientPool.getClient(config)
+                    .send(request, HttpResponse.BodyHandlers.discarding());
+
+            boolean healthy = response.statusCode() < 500;
+            modelStatsService.recordProbe(config.getId(), System.currentTimeMillis() - startTime, healthy);
+            log.debug("模型探测完成: id={}, status={}", config.getId(), response.statusCode());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            modelStatsService.recordProbe(config.getId(), System.currentTimeMillis() - startTime, false);
+            log.warn("模型探测失败: id={}, error={}", config.getId(), e.getMessage());
+        }
+    }
+}
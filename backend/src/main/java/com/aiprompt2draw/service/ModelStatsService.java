@@ -0,0 +1,237 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.utils.LatencyWindow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模型调用统计服务
+ * <p>
+ * 按模型配置ID记录上游调用耗时分布、EWMA耗时、错误率、超时率与并发数,
+ * 供对冲请求与自适应路由使用
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Service
+public class ModelStatsService {
+
+    /**
+     * 每个模型配置保留的耗时样本数
+     */
+    private static final int WINDOW_SIZE = 200;
+
+    /**
+     * 计算分位数所需的最少样本数
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * EWMA平滑系数, 越大越偏向最近的样本
+     */
+    @Value("${app.ai.routing.ewma-alpha:0.2}")
+    private double alpha;
+
+    private final Map<Long, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final Map<Long, ModelHealth> healths = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次调用开始
+     *
+     * @param configId 模型配置ID
+     */
+    public void recordStart(Long configId) {
+        ModelHealth health = health(configId);
+        synchronized (health) {
+            health.inFlight++;
+            health.lastCallTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 记录一次成功调用
+     *
+     * @param configId  模型配置ID
+     * @param latencyMs 耗时(毫秒)
+     */
+    public void recordSuccess(Long configId, long latencyMs) {
+        latencies.computeIfAbsent(configId, id -> new LatencyWindow(WINDOW_SIZE)).record(latencyMs);
+
+        ModelHealth health = health(configId);
+        synchronized (health) {
+            health.finish();
+            health.ewmaLatency = health.ewmaLatency > 0 ? ewma(health.ewmaLatency, latencyMs) : latencyMs;
+            health.errorRate = ewma(health.errorRate, 0);
+            health.timeoutRate = ewma(health.timeoutRate, 0);
+            health.successCount++;
+        }
+    }
+
+    /**
+     * 记录一次失败调用
+     *
+     * @param configId  模型配置ID
+     * @param latencyMs 耗时(毫秒)
+     * @param timeout   是否为超时
+     */
+    public void recordFailure(Long configId, long latencyMs, boolean timeout) {
+        ModelHealth health = health(configId);
+        synchronized (health) {
+            health.finish();
+            // 超时的耗时计入EWMA, 使慢节点的分数同步变差
+            if (timeout) {
+                health.ewmaLatency = health.ewmaLatency > 0 ? ewma(health.ewmaLatency, latencyMs) : latencyMs;
+            }
+            health.errorRate = ewma(health.errorRate, 1);
+            health.timeoutRate = ewma(health.timeoutRate, timeout ? 1 : 0);
+            health.failureCount++;
+        }
+    }
+
+    /**
+     * 记录一次被取消的调用(如对冲失败方), 不计入成功或失败
+     *
+     * @param configId 模型配置ID
+     */
+    public void recordCancelled(Long configId) {
+        ModelHealth health = health(configId);
+        synchronized (health) {
+            health.finish();
+        }
+    }
+
+    /**
+     * 记录一次健康探测结果
+     * <p>
+     * 探测只反映连通性, 不计入生成耗时; 探测成功使错误率逐步回落, 失败则计为错误
+     *
+     * @param configId  模型配置ID
+     * @param latencyMs 探测耗时(毫秒)
+     * @param healthy   是否健康
+     */
+    public void recordProbe(Long configId, long latencyMs, boolean healthy) {
+        ModelHealth health = health(configId);
+        synchronized (health) {
+            health.lastProbeTime = System.currentTimeMillis();
+            health.probeLatency = latencyMs;
+            health.probeHealthy = healthy;
+            health.errorRate = ewma(health.errorRate, healthy ? 0 : 1);
+        }
+    }
+
+    /**
+     * 获取成功调用耗时分位数
+     *
+     * @param configId   模型配置ID
+     * @param percentile 分位(0-1)
+     * @return 分位耗时(毫秒), 样本不足时返回-1
+     */
+    public long getLatencyPercentile(Long configId, double percentile) {
+        LatencyWindow window = latencies.get(configId);
+        return window != null ? window.percentile(percentile, MIN_SAMPLES) : -1;
+    }
+
+    /**
+     * 计算路由分数(越小越好)
+     * <p>
+     * 分数 = EWMA耗时 × (1 + 并发数) × (1 + 5 × 错误率 + 10 × 超时率),
+     * 没有样本时使用默认耗时, 使新配置也能获得流量
+     *
+     * @param configId         模型配置ID
+     * @param defaultLatencyMs 无样本时的默认耗时
+     * @return 路由分数
+     */
+    public double getScore(Long configId, double defaultLatencyMs) {
+        ModelHealth health = healths.get(configId);
+        if (health == null) {
+            return defaultLatencyMs;
+        }
+        synchronized (health) {
+            double latency = health.ewmaLatency > 0 ? health.ewmaLatency : defaultLatencyMs;
+            return latency * (1 + health.inFlight) * (1 + 5 * health.errorRate + 10 * health.timeoutRate);
+        }
+    }
+
+    /**
+     * 获取距离最近一次调用或探测的时间
+     *
+     * @param configId 模型配置ID
+     * @return 空闲毫秒数, 从未调用时返回Long.MAX_VALUE
+     */
+    public long getIdleMillis(Long configId) {
+        ModelHealth health = healths.get(configId);
+        if (health == null) {
+            return Long.MAX_VALUE;
+        }
+        synchronized (health) {
+            long last = Math.max(health.lastCallTime, health.lastProbeTime);
+            return last > 0 ? System.currentTimeMillis() - last : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 获取统计快照
+     *
+     * @param configId 模型配置ID
+     * @return 统计快照
+     */
+    public Map<String, Object> getSnapshot(Long configId) {
+        Map<String, Object> snapshot = new HashMap<>();
+        ModelHealth health = healths.get(configId);
+        if (health != null) {
+            synchronized (health) {
+                snapshot.put("ewmaLatencyMs", Math.round(health.ewmaLatency));
+                snapshot.put("errorRate", round(health.errorRate));
+                snapshot.put("timeoutRate", round(health.timeoutRate));
+                snapshot.put("inFlight", health.inFlight);
+                snapshot.put("successCount", health.successCount);
+                snapshot.put("failureCount", health.failureCount);
+                snapshot.put("probeHealthy", health.probeHealthy);
+                snapshot.put("probeLatencyMs", health.probeLatency);
+                snapshot.put("lastProbeTime", health.lastProbeTime);
+            }
+        }
+        snapshot.put("p90LatencyMs", getLatencyPercentile(configId, 0.9));
+        return snapshot;
+    }
+
+    private ModelHealth health(Long configId) {
+        return healths.computeIfAbsent(configId, id -> new ModelHealth());
+    }
+
+    private double ewma(double current, double sample) {
+        return current + alpha * (sample - current);
+    }
+
+    private double round(double value) {
+        return Math.round(value * 10000.0) / 10000.0;
+    }
+
+    /**
+     * 单个模型配置的健康状态
+     */
+    private static final class ModelHealth {
+
+        private double ewmaLatency;
+        private double errorRate;
+        private double timeoutRate;
+        private int inFlight;
+        private long successCount;
+        private long failureCount;
+        private long lastCallTime;
+        private long lastProbeTime;
+        private long probeLatency;
+        private Boolean probeHealthy;
+
+        private void finish() {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.dto.QuotaGrant;
+import com.aiprompt2draw.mapper.ApiKeyMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 额度租约服务
+ * <p>
+ * 每个节点按API Key从api_key表一次租用一批额度(单条UPDATE), 之后的扣减只在内存中以原子计数完成,
+ * 同一Key的并发请求不再逐个更新同一行。租约块大小从1开始, 在租约有效期内每次续租翻倍,
+ * 上限为{@code app.quota.lease.max-size}, 空闲的Key不会占用额度。
+ * <p>
+ * 租约空闲超过有效期或应用关闭时, 未用完的额度退还数据库; 节点宕机时最多损失一个租约块。
+ * 管理员写入新的额度后租约直接作废, 未用完的额度不再叠加到新额度上
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Slf4j
+@Service
+public class QuotaLeaseService {
+
+    private final ApiKeyMapper apiKeyMapper;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Value("${app.quota.lease.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.quota.lease.max-size:20}")
+    private int maxLeaseSize;
+
+    @Value("${app.quota.lease.ttl-ms:30000}")
+    private long leaseTtl;
+
+    public QuotaLeaseService(ApiKeyMapper apiKeyMapper, MeterRegistry meterRegistry) {
+        this.apiKeyMapper = apiKeyMapper;
+        Gauge.builder("aiprompt2draw.quota.leased", leases,
+                        map -> map.values().stream().mapToInt(lease -> lease.available.get()).sum())
+                .description("本节点租约中未使用的额度")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 扣减一个额度
+     *
+     * @param keyValue API Key值
+     * @return 是否成功, 额度已用完时返回false
+     */
+    public boolean acquire(String keyValue) {
+        if (!enabled) {
+            return apiKeyMapper.deductQuota(keyValue, 1) > 0;
+        }
+
+        while (true) {
+            Lease lease = leases.computeIfAbsent(keyValue, k -> new Lease());
+            if (lease.take()) {
+                return true;
+            }
+
+            synchronized (lease) {
+                if (lease.closed) {
+                    // 租约刚被回收, 使用新的租约
+                    continue;
+                }
+                if (lease.take()) {
+                    return true;
+                }
+                return renew(keyValue, lease);
+            }
+        }
+    }
+
+    /**
+     * 退还额度: 优先放回本节点的租约, 没有租约时写回数据库
+     *
+     * @param keyValue API Key值
+     * @param amount   数量
+     */
+    public void refund(String keyValue, int amount) {
+        if (amount <= 0) {
+            return;
+        }
+        Lease lease = leases.get(keyValue);
+        if (lease != null) {
+            synchronized (lease) {
+                if (!lease.closed) {
+                    lease.available.addAndGet(amount);
+                    return;
+                }
+            }
+        }
+        apiKeyMapper.refundQuota(keyValue, amount);
+    }
+
+    /**
+     * 估算剩余额度: 最近一次租用时的数据库剩余额度 + 本节点租约中未使用的额度
+     * <p>
+     * 其他节点的租用在本节点下次续租前不可见, 误差不超过各节点的租约块之和
+     *
+     * @param keyValue API Key值
+     * @return 剩余额度, 本节点没有该Key的租约时返回null
+     */
+    public Integer estimateRemaining(String keyValue) {
+        Lease lease = leases.get(keyValue);
+        if (lease == null || lease.closed || lease.dbRemaining < 0) {
+            return null;
+        }
+        return lease.dbRemaining + lease.available.get();
+    }
+
+    /**
+     * 结束租约并退还未使用的额度(状态被修改或Key过期时调用)
+     *
+     * @param keyValue API Key值
+     */
+    public void release(String keyValue) {
+        Lease lease = leases.get(keyValue);
+        if (lease != null) {
+            close(keyValue, lease, true);
+        }
+    }
+
+    /**
+     * 结束租约并丢弃未使用的额度(管理员写入新的额度时调用)
+     * <p>
+     * 新额度是管理员给出的绝对值, 退还租约中的额度会使其被突破, 如将额度置0停用的Key仍可继续使用
+     *
+     * @param keyValue API Key值
+     */
+    public void discard(String keyValue) {
+        Lease lease = leases.get(keyValue);
+        if (lease != null) {
+            close(keyValue, lease, false);
+        }
+    }
+
+    /**
+     * 回收空闲超过有效期的租约
+     */
+    @Scheduled(fixedDelayString = "${app.quota.lease.sweep-interval-ms:5000}")
+    public void sweep() {
+        long expired = System.currentTimeMillis() - leaseTtl;
+        leases.forEach((keyValue, lease) -> {
+            if (lease.lastUsed < expired) {
+                close(keyValue, lease, true);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        int count = leases.size();
+        leases.forEach((keyValue, lease) -> close(keyValue, lease, true));
+        if (count > 0) {
+            log.info("应用关闭, 已退还{}个API Key的租约额度", count);
+        }
+    }
+
+    /**
+     * 续租: 租用下一块额度, 取得的第一个额度直接用于本次请求
+     */
+    private boolean renew(String keyValue, Lease lease) {
+        long now = System.currentTimeMillis();
+        // 租约有效期内再次续租说明该Key持续繁忙, 块大小翻倍
+        int size = lease.renewedAt > 0 && now - lease.renewedAt < leaseTtl
+                ? Math.max(1, Math.min(lease.size * 2, maxLeaseSize)) : 1;
+
+        QuotaGrant grant = new QuotaGrant();
+        grant.setKeyValue(keyValue);
+        grant.setAmount(size);
+        if (apiKeyMapper.leaseQuota(grant) == 0 || grant.getGranted() == null || grant.getGranted() <= 0) {
+            lease.dbRemaining = 0;
+            return false;
+        }
+
+        int granted = grant.getGranted().intValue();
+        lease.size = size;
+        lease.renewedAt = now;
+        lease.lastUsed = now;
+        lease.dbRemaining = grant.getRemaining() != null ? grant.getRemaining() : 0;
+        lease.available.addAndGet(granted - 1);
+        log.debug("租用额度: {}, 数量: {}, 数据库剩余: {}", keyValue, granted, lease.dbRemaining);
+        return true;
+    }
+
+    private void close(String keyValue, Lease lease, boolean refund) {
+        int unused;
+        synchronized (lease) {
+            if (lease.closed) {
+                return;
+            }
+            lease.closed = true;
+            leases.remove(keyValue, lease);
+            unused = lease.available.getAndSet(0);
+        }
+        if (unused > 0 && !refund) {
+            log.info("丢弃租约额度: {}, 数量: {}", keyValue, unused);
+            return;
+        }
+        if (unused > 0) {
+            try {
+                apiKeyMapper.refundQuota(keyValue, unused);
+                log.debug("退还租约额度: {}, 数量: {}", keyValue, unused);
+            } catch (RuntimeException e) {
+                log.error("退还租约额度失败: {}, 数量: {}", keyValue, unused, e);
+            }
+        }
+    }
+
+    /**
+     * 单个API Key在本节点的租约
+     */
+    private static final class Lease {
+
+        /**
+         * 未使用的额度, 请求线程以CAS扣减
+         */
+        private final AtomicInteger available = new AtomicInteger();
+
+        /**
+         * 最近一次租用后数据库中的剩余额度, 尚未租用时为-1
+         */
+        private volatile int dbRemaining = -1;
+
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private long renewedAt;
+
+        private int size;
+
+        /**
+         * 已回收, 之后不再放入或取出额度(只在持有锁时修改)
+         */
+        private volatile boolean closed;
+
+        private boolean take() {
+            int current;
+            do {
+                current = available.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!available.compareAndSet(current, current - 1));
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+    }
+}
@@ -57,14 +57,17 @@ public class UsageRecordService {
             record.setCompletionTokens(aiResponse.getCompletionTokens());
             record.setTotalTokens(aiResponse.getTotalTokens());
 
-            // 计算成本
-            BigDecimal cost = calculateCost(
+            // 计算成本(命中缓存或合并到其他请求时未单独调用上游, 无成本)
+            boolean cacheHit = Boolean.TRUE.equals(aiResponse.getCacheHit());
+            boolean coalesced = Boolean.TRUE.equals(aiResponse.getCoalesced());
+            BigDecimal cost = cacheHit || coalesced ? BigDecimal.ZERO : calculateCost(
                     aiResponse.getPromptTokens(),
                     aiResponse.getCompletionTokens(),
                     modelConfig.getCostPerTkPromptTokens(),
                     modelConfig.getCostPerTkCompletionTokens()
             );
             record.setCost(cost);
+            record.setCacheHit(cacheHit ? 1 : 0);
 
             record.setResponseTime(aiResponse.getResponseTime().intValue());
             record.setStatus(1);  // 成功
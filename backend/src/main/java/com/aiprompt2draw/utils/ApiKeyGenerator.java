@@ -1,8 +1,9 @@
 package com.aiprompt2draw.utils;
 
-import cn.hutool.core.util.RandomUtil;
 import com.aiprompt2draw.enums.ApiKeyType;
 
+import java.security.SecureRandom;
+
 /**
  * API Key生成器
  * <p>
@@ -18,34 +19,58 @@ public class ApiKeyGenerator {
 
     private static final String PREFIX = "ak";
     private static final int RANDOM_LENGTH = 21;
+    private static final int KEY_LENGTH = 25;
+
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+    /**
+     * 随机字节映射到字母表时拒绝的下限: 252 = 36 * 7, 小于该值的字节取模后各字符等概率
+     */
+    private static final int REJECT_THRESHOLD = 252;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
 
     /**
      * 生成API Key
+     * <p>
+     * 随机部分使用SecureRandom, 一次取一批随机字节逐个映射为字符
      *
      * @param keyType Key类型
      * @return API Key字符串
      */
     public static String generate(Integer keyType) {
         ApiKeyType type = ApiKeyType.getByCode(keyType);
-        String typeChar = type.getPrefix();
 
-        // 生成21位随机字符串(小写字母+数字)
-        String randomPart = RandomUtil.randomString(
-                "abcdefghijklmnopqrstuvwxyz0123456789",
-                RANDOM_LENGTH
-        );
+        char[] key = new char[KEY_LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), key, 0);
+        key[2] = type.getPrefix().charAt(0);
+        key[3] = '_';
 
-        return PREFIX + typeChar + "_" + randomPart;
+        // 生成21位随机字符串(小写字母+数字)
+        byte[] bytes = new byte[RANDOM_LENGTH + 8];
+        int length = KEY_LENGTH - RANDOM_LENGTH;
+        while (length < KEY_LENGTH) {
+            RANDOM.nextBytes(bytes);
+            for (int i = 0; i < bytes.length && length < KEY_LENGTH; i++) {
+                int value = bytes[i] & 0xFF;
+                if (value < REJECT_THRESHOLD) {
+                    key[length++] = ALPHABET[value % ALPHABET.length];
+                }
+            }
+        }
+        return new String(key);
     }
 
     /**
      * 验证API Key格式
+     * <p>
+     * 逐字符检查, 不截取子串也不使用正则, 校验过程不分配对象
      *
      * @param apiKey API Key
      * @return 是否有效
      */
     public static boolean isValidFormat(String apiKey) {
-        if (apiKey == null || apiKey.length() != 25) {
+        if (apiKey == null || apiKey.length() != KEY_LENGTH) {
             return false;
         }
 
@@ -66,7 +91,12 @@ public class ApiKeyGenerator {
         }
 
         // 检查随机部分是否都是小写字母和数字
-        String randomPart = apiKey.substring(4);
-        return randomPart.matches("[a-z0-9]{21}");
+        for (int i = KEY_LENGTH - RANDOM_LENGTH; i < KEY_LENGTH; i++) {
+            char c = apiKey.charAt(i);
+            if ((c < 'a' || c > 'z') && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,125 @@
+package com.aiprompt2draw.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步舱壁
+ * <p>
+ * 限制同时进行的调用数, 超出的请求进入有界FIFO队列等待空闲名额; 等待期间不占用线程。
+ * 队列已满时{@link #acquire()}返回null, 等待超时或取消由调用方结束返回的Future
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class Bulkhead {
+
+    private final int maxConcurrent;
+    private final int queueCapacity;
+    private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+    private int active;
+
+    public Bulkhead(int maxConcurrent, int queueCapacity) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.queueCapacity = Math.max(0, queueCapacity);
+    }
+
+    /**
+     * 申请调用名额
+     *
+     * @return 获得名额时完成的Future; 队列已满时返回null
+     */
+    public CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> waiter;
+        synchronized (this) {
+            if (active < maxConcurrent && waiters.isEmpty()) {
+                active++;
+                return CompletableFuture.completedFuture(new Permit());
+            }
+            if (waiters.size() >= queueCapacity) {
+                return null;
+            }
+            waiter = new CompletableFuture<>();
+            waiters.addLast(waiter);
+        }
+
+        // 超时或取消的等待者立即出队, 不占用队列容量
+        waiter.whenComplete((permit, error) -> {
+            if (error != null) {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * 获取当前排队数
+     *
+     * @return 排队数
+     */
+    public synchronized int getQueueDepth() {
+        return waiters.size();
+    }
+
+    /**
+     * 获取当前进行中的调用数
+     *
+     * @return 调用数
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * 获取并发上限
+     *
+     * @return 并发上限
+     */
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * 归还名额: 优先移交给队首的等待者, 在锁外完成Future以免在锁内执行后续调用
+     */
+    private void release() {
+        while (true) {
+            CompletableFuture<Permit> next;
+            synchronized (this) {
+                next = waiters.pollFirst();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+            if (next.complete(new Permit())) {
+                return;
+            }
+            // 等待者已超时或取消, 继续移交给下一个
+        }
+    }
+
+    /**
+     * 调用名额, 调用结束后必须释放且只释放一次
+     */
+    public final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        /**
+         * 释放名额
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                Bulkhead.this.release();
+            }
+        }
+    }
+}
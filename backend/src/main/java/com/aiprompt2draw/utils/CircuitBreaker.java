@@ -0,0 +1,225 @@
+package com.aiprompt2draw.utils;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 熔断器
+ * <p>
+ * 以最近N次调用为滑动窗口统计失败率与慢调用率, 超过阈值后进入OPEN状态快速失败;
+ * OPEN持续指定时间后进入HALF_OPEN, 放行少量试探调用, 全部成功则恢复CLOSED, 否则重新OPEN
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class CircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallDurationMs;
+    private final long openDurationMs;
+    private final int halfOpenCalls;
+    private final BiConsumer<State, State> listener;
+
+    private final byte[] outcomes;
+    private int index;
+    private int count;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSucceeded;
+
+    /**
+     * @param windowSize            滑动窗口大小(调用次数)
+     * @param minimumCalls          开始计算比率所需的最少调用数
+     * @param failureRateThreshold  失败率阈值(0-1)
+     * @param slowCallRateThreshold 慢调用率阈值(0-1)
+     * @param slowCallDurationMs    慢调用耗时阈值(毫秒)
+     * @param openDurationMs        OPEN状态持续时间(毫秒)
+     * @param halfOpenCalls         HALF_OPEN状态放行的试探调用数
+     * @param listener              状态变更回调(原状态, 新状态)
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          double slowCallRateThreshold, long slowCallDurationMs, long openDurationMs,
+                          int halfOpenCalls, BiConsumer<State, State> listener) {
+        this.outcomes = new byte[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, outcomes.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallDurationMs = slowCallDurationMs;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.listener = listener;
+    }
+
+    /**
+     * 申请一次调用许可
+     *
+     * @return 是否允许调用, 允许后必须以onSuccess/onFailure/release之一结束
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                return false;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenPermits++;
+        }
+        return true;
+    }
+
+    /**
+     * 判断当前是否可能获得调用许可(不占用许可)
+     *
+     * @return 是否可调用
+     */
+    public synchronized boolean isCallPermitted() {
+        switch (state) {
+            case OPEN:
+                return System.currentTimeMillis() - openedAt >= openDurationMs;
+            case HALF_OPEN:
+                return halfOpenPermits < halfOpenCalls;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * 记录一次成功调用
+     *
+     * @param durationMs 耗时(毫秒)
+     */
+    public synchronized void onSuccess(long durationMs) {
+        record(false, durationMs >= slowCallDurationMs);
+    }
+
+    /**
+     * 记录一次失败调用
+     *
+     * @param durationMs 耗时(毫秒)
+     */
+    public synchronized void onFailure(long durationMs) {
+        record(true, durationMs >= slowCallDurationMs);
+    }
+
+    /**
+     * 归还未产生结果的调用许可(如调用被取消)
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && halfOpenPermits > 0) {
+            halfOpenPermits--;
+        }
+    }
+
+    /**
+     * 重置为CLOSED状态并清空窗口
+     */
+    public synchronized void reset() {
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        } else {
+            clearWindow();
+        }
+    }
+
+    /**
+     * 获取当前状态
+     *
+     * @return 状态
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * 获取OPEN状态的剩余时间
+     *
+     * @return 剩余毫秒数, 非OPEN状态返回0
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openDurationMs - (System.currentTimeMillis() - openedAt));
+    }
+
+    private void record(boolean failed, boolean slow) {
+        switch (state) {
+            case OPEN:
+                // 熔断前发出的调用晚到的结果, 不再计入
+                return;
+            case HALF_OPEN:
+                if (failed || slow) {
+                    transition(State.OPEN);
+                } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                    transition(State.CLOSED);
+                }
+                return;
+            default:
+                break;
+        }
+
+        if (count == outcomes.length) {
+            byte evicted = outcomes[index];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            count++;
+        }
+        outcomes[index] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        failures += failed ? 1 : 0;
+        slowCalls += slow ? 1 : 0;
+        index = (index + 1) % outcomes.length;
+
+        if (count >= minimumCalls
+                && ((double) failures / count >= failureRateThreshold
+                || (double) slowCalls / count >= slowCallRateThreshold)) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State to) {
+        State from = state;
+        state = to;
+        switch (to) {
+            case OPEN:
+                openedAt = System.currentTimeMillis();
+                break;
+            case HALF_OPEN:
+                halfOpenPermits = 0;
+                halfOpenSucceeded = 0;
+                break;
+            default:
+                clearWindow();
+                break;
+        }
+        if (listener != null) {
+            listener.accept(from, to);
+        }
+    }
+
+    private void clearWindow() {
+        index = 0;
+        count = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
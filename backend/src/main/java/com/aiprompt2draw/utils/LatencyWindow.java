@@ -0,0 +1,62 @@
+package com.aiprompt2draw.utils;
+
+import java.util.Arrays;
+
+/**
+ * 延迟滑动窗口
+ * <p>
+ * 以环形数组保存最近N次调用的耗时, 用于计算分位数
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int index;
+    private int count;
+
+    public LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param latencyMs 耗时(毫秒)
+     */
+    public synchronized void record(long latencyMs) {
+        samples[index] = latencyMs;
+        index = (index + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    /**
+     * 计算分位数
+     *
+     * @param percentile 分位(0-1)
+     * @param minSamples 最少样本数
+     * @return 分位耗时(毫秒), 样本不足时返回-1
+     */
+    public long percentile(double percentile, int minSamples) {
+        long[] copy;
+        synchronized (this) {
+            if (count < minSamples || count == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(copy);
+        int rank = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(rank, copy.length - 1))];
+    }
+
+    /**
+     * @return 当前样本数
+     */
+    public synchronized int size() {
+        return count;
+    }
+}
@@ -0,0 +1,152 @@
+package com.aiprompt2draw.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 单飞(Single-flight)调用合并器
+ * <p>
+ * 同一Key同时只执行一次调用, 调用期间到达的相同Key请求直接等待该调用的结果。
+ * 调用结束(成功或失败)后立即移除, 后续请求将发起新的调用。
+ * 每个请求拿到的是结果的副本, 取消副本只放弃本请求的等待; 全部请求(包括发起者)都取消后才取消实际调用
+ *
+ * @param <K> Key类型
+ * @param <V> 结果类型
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Call<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 执行调用, 相同Key的并发调用会被合并
+     *
+     * @param key  调用Key
+     * @param call 实际调用
+     * @return 调用结果及当前请求是否为实际发起者
+     */
+    public Flight<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        while (true) {
+            Call<V> created = new Call<>();
+            Call<V> existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                start(key, created, call);
+                return new Flight<>(watch(key, created), true);
+            }
+            if (existing.tryJoin()) {
+                return new Flight<>(watch(key, existing), false);
+            }
+            // 等待者已全部取消, 调用即将被取消, 移除后重新发起
+            inFlight.remove(key, existing);
+        }
+    }
+
+    /**
+     * 发起实际调用
+     */
+    private void start(K key, Call<V> created, Supplier<CompletableFuture<V>> call) {
+        try {
+            CompletableFuture<V> upstream = call.get();
+            created.upstream = upstream;
+            upstream.whenComplete((value, error) -> {
+                inFlight.remove(key, created);
+                if (error != null) {
+                    created.shared.completeExceptionally(error);
+                } else {
+                    created.shared.complete(value);
+                }
+            });
+        } catch (Throwable e) {
+            inFlight.remove(key, created);
+            created.shared.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 返回结果副本, 副本被取消时减少等待者, 最后一个等待者取消时取消实际调用
+     */
+    private CompletableFuture<V> watch(K key, Call<V> call) {
+        CompletableFuture<V> copy = call.shared.copy();
+        copy.whenComplete((value, error) -> {
+            if (copy.isCancelled() && call.waiters.decrementAndGet() == 0 && !call.shared.isDone()) {
+                inFlight.remove(key, call);
+                CompletableFuture<V> upstream = call.upstream;
+                if (upstream != null) {
+                    upstream.cancel(true);
+                }
+            }
+        });
+        return copy;
+    }
+
+    /**
+     * 获取当前进行中的调用数
+     *
+     * @return 进行中的调用数
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 进行中的调用
+     */
+    private static final class Call<V> {
+
+        private final CompletableFuture<V> shared = new CompletableFuture<>();
+
+        /**
+         * 仍在等待结果的请求数, 发起者计1
+         */
+        private final AtomicInteger waiters = new AtomicInteger(1);
+
+        private volatile CompletableFuture<V> upstream;
+
+        /**
+         * 加入调用, 等待者已全部取消时返回false
+         */
+        private boolean tryJoin() {
+            int current;
+            do {
+                current = waiters.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!waiters.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+
+    /**
+     * 调用结果
+     *
+     * @param <V> 结果类型
+     */
+    public static final class Flight<V> {
+
+        private final CompletableFuture<V> future;
+        private final boolean leader;
+
+        private Flight(CompletableFuture<V> future, boolean leader) {
+            this.future = future;
+            this.leader = leader;
+        }
+
+        /**
+         * @return 结果Future
+         */
+        public CompletableFuture<V> future() {
+            return future;
+        }
+
+        /**
+         * @return 当前请求是否实际发起了调用
+         */
+        public boolean isLeader() {
+            return leader;
+        }
+    }
+}
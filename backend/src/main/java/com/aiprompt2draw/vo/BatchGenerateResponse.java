@@ -0,0 +1,54 @@
+package com.aiprompt2draw.vo;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量生成流程图响应VO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchGenerateResponse {
+
+    /**
+     * 各条目结果, 与请求中的输入顺序一致
+     */
+    private List<Item> items;
+
+    private Integer succeeded;
+
+    private Integer failed;
+
+    private Integer remainingQuota;
+
+    private String modelUsed;
+
+    /**
+     * 批量生成条目结果, 成功时返回xml, 失败时返回code与message
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+
+        private Integer index;
+
+        private String xml;
+
+        private Integer tokensUsed;
+
+        private List<String> repairs;
+
+        private Integer code;
+
+        private String message;
+    }
+}
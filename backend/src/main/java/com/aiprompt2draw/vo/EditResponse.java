@@ -0,0 +1,42 @@
+package com.aiprompt2draw.vo;
+
+
+import com.aiprompt2draw.diagram.FlowchartPatch;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 编辑流程图响应VO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EditResponse {
+
+    /**
+     * 新增的节点与连线, 追加到root末尾
+     */
+    private List<FlowchartPatch.Cell> added;
+
+    /**
+     * 修改后的节点与连线, 替换原有的同ID元素
+     */
+    private List<FlowchartPatch.Cell> updated;
+
+    /**
+     * 删除的节点与连线ID
+     */
+    private List<String> removed;
+
+    private Integer remainingQuota;
+
+    private String modelUsed;
+
+    private Integer tokensUsed;
+}
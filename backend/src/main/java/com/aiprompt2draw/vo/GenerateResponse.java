@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 生成流程图响应VO
  *
@@ -23,4 +25,9 @@ public class GenerateResponse {
     private String modelUsed;
 
     private Integer tokensUsed;
+
+    /**
+     * 对模型输出执行的结构修复说明, 未修复时不返回
+     */
+    private List<String> repairs;
 }
@@ -0,0 +1,35 @@
+package com.aiprompt2draw.vo;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 异步生成批次响应VO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobBatchResponse {
+
+    private String batchId;
+
+    /**
+     * 批次状态: pending-全部排队中, running-执行中, succeeded-全部结束且至少一条成功, failed-全部失败
+     */
+    private String status;
+
+    private Integer total;
+
+    private Integer pending;
+
+    private Integer running;
+
+    private Integer succeeded;
+
+    private Integer failed;
+}
@@ -0,0 +1,42 @@
+package com.aiprompt2draw.vo;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 异步生成任务响应VO
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobResponse {
+
+    private String jobId;
+
+    /**
+     * 状态: pending-排队中, running-执行中, succeeded-成功, failed-失败
+     */
+    private String status;
+
+    /**
+     * 生成的XML, 成功时返回
+     */
+    private String xml;
+
+    private Integer tokensUsed;
+
+    private Integer errorCode;
+
+    private String errorMessage;
+
+    private LocalDateTime createTime;
+
+    private LocalDateTime finishTime;
+}
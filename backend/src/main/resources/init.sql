@@ -41,6 +41,7 @@ CREATE TABLE `usage_record` (
   `total_tokens` INT COMMENT '总Token数',
   `cost` DECIMAL(10, 6) COMMENT '本次调用成本(元)',
   `response_time` INT COMMENT '响应时间(毫秒)',
+  `cache_hit` TINYINT NOT NULL DEFAULT 0 COMMENT '是否命中缓存: 0-否 1-是',
   `status` TINYINT NOT NULL COMMENT '状态: 1-成功 0-失败',
   `error_msg` TEXT COMMENT '错误信息',
   `ip_address` VARCHAR(64) COMMENT '请求IP',
@@ -59,14 +60,16 @@ CREATE TABLE `usage_record` (
 DROP TABLE IF EXISTS `model_config`;
 CREATE TABLE `model_config` (
   `id` BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
-  `model_type` VARCHAR(32) NOT NULL UNIQUE COMMENT '模型类型: openai/claude/wenxin等',
+  `model_type` VARCHAR(32) NOT NULL COMMENT '模型类型: openai/claude/wenxin等(同类型可配置多个端点)',
   `model_name` VARCHAR(64) NOT NULL COMMENT '模型名称',
   `api_key` VARCHAR(512) NOT NULL COMMENT '厂商API Key(加密存储)',
   `api_url` VARCHAR(255) NOT NULL COMMENT 'API地址',
   `api_secret` VARCHAR(512) COMMENT 'API Secret(部分厂商需要)',
   `max_tokens` INT DEFAULT 2000 COMMENT '最大Token数',
+  `context_window` INT COMMENT '上下文长度(Token数, 为空不做预检)',
   `temperature` DECIMAL(3, 2) DEFAULT 0.7 COMMENT '温度参数',
   `priority` INT NOT NULL DEFAULT 0 COMMENT '优先级(数字越大优先级越高)',
+  `max_concurrency` INT COMMENT '最大并发调用数(为空使用全局默认)',
   `status` TINYINT NOT NULL DEFAULT 1 COMMENT '状态: 0-禁用 1-启用',
   `cost_per_tk_prompt_tokens` DECIMAL(10, 6) COMMENT '每1K prompt tokens成本(元)',
   `cost_per_tk_completion_tokens` DECIMAL(10, 6) COMMENT '每1K completion tokens成本(元)',
@@ -125,6 +128,37 @@ CREATE TABLE `user_config` (
   INDEX `idx_deleted` (`deleted`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户配置表';
 
+-- 6. 异步生成任务表
+DROP TABLE IF EXISTS `generation_job`;
+CREATE TABLE `generation_job` (
+  `id` BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+  `job_id` VARCHAR(32) NOT NULL UNIQUE COMMENT '任务ID(对外)',
+  `batch_id` VARCHAR(32) COMMENT '批次ID(文件上传的任务共用)',
+  `seq` INT NOT NULL DEFAULT 0 COMMENT '批次内序号(文件行号)',
+  `api_key_id` BIGINT NOT NULL COMMENT 'API Key ID',
+  `key_value` VARCHAR(64) NOT NULL COMMENT 'API Key值',
+  `prompt` TEXT NOT NULL COMMENT '用户输入内容',
+  `model_type` VARCHAR(32) COMMENT '模型类型(为空使用默认)',
+  `mode` VARCHAR(16) COMMENT '生成模式',
+  `status` TINYINT NOT NULL DEFAULT 0 COMMENT '状态: 0-排队中 1-执行中 2-成功 3-失败',
+  `attempts` INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+  `worker_id` VARCHAR(64) COMMENT '执行节点',
+  `output_xml` MEDIUMTEXT COMMENT '生成的XML内容',
+  `total_tokens` INT COMMENT '总Token数',
+  `error_code` INT COMMENT '错误码',
+  `error_msg` VARCHAR(512) COMMENT '错误信息',
+  `ip_address` VARCHAR(64) COMMENT '请求IP',
+  `user_agent` VARCHAR(512) COMMENT '用户代理',
+  `start_time` DATETIME COMMENT '开始执行时间',
+  `finish_time` DATETIME COMMENT '完成时间',
+  `deleted` TINYINT NOT NULL DEFAULT 0 COMMENT '逻辑删除: 0-未删除 1-已删除',
+  `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  INDEX `idx_status_id` (`status`, `id`),
+  INDEX `idx_batch_seq` (`batch_id`, `seq`),
+  INDEX `idx_key_value` (`key_value`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='异步生成任务表';
+
 -- 插入OpenAI模型配置示例 (需要替换真实的API Key)
 INSERT INTO `model_config` (`model_type`, `model_name`, `api_key`, `api_url`, `max_tokens`, `temperature`, `priority`, `status`, `cost_per_1k_prompt_tokens`, `cost_per_1k_completion_tokens`, `remark`)
 VALUES ('openai', 'gpt-4', 'your-openai-api-key-here', 'https://api.openai.com/v1/chat/completions', 2000, 0.7, 10, 0, 0.03, 0.06, 'OpenAI GPT-4模型(需配置真实API Key)');
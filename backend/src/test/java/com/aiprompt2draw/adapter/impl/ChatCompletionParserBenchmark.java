@@ -0,0 +1,136 @@
+package com.aiprompt2draw.adapter.impl;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 非流式响应解析基准测试
+ * <p>
+ * 对比原先的整体转字符串+hutool JSON树与流式解析器, 关注单次解析的分配量, 需带GC分析器运行:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args="ChatCompletionParserBenchmark -prof gc"
+ * </pre>
+ * 结果中的 gc.alloc.rate.norm 即每次解析分配的字节数
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatCompletionParserBenchmark {
+
+    /**
+     * HttpClient单个网络缓冲区的大小
+     */
+    private static final int NETWORK_BUFFER = 16 * 1024;
+
+    @Param({"6", "20", "60"})
+    private int nodes;
+
+    private byte[] body;
+
+    private List<List<ByteBuffer>> buffers;
+
+    @Setup
+    public void setUp() {
+        body = completionBody(nodes);
+        buffers = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += NETWORK_BUFFER) {
+            int length = Math.min(NETWORK_BUFFER, body.length - offset);
+            buffers.add(Collections.singletonList(ByteBuffer.wrap(body, offset, length).slice()));
+        }
+    }
+
+    @Benchmark
+    public void stringAndJsonTree(Blackhole blackhole) {
+        JSONObject response = JSONUtil.parseObj(new String(body, StandardCharsets.UTF_8));
+        blackhole.consume(response.getJSONArray("choices").getJSONObject(0)
+                .getJSONObject("message").getStr("content"));
+        JSONObject usage = response.getJSONObject("usage");
+        blackhole.consume(usage.getInt("prompt_tokens"));
+        blackhole.consume(usage.getInt("completion_tokens"));
+        blackhole.consume(usage.getInt("total_tokens"));
+    }
+
+    @Benchmark
+    public void streamingParser(Blackhole blackhole) {
+        for (List<ByteBuffer> list : buffers) {
+            list.get(0).rewind();
+        }
+        ChatCompletionParser parser = feed(buffers);
+        blackhole.consume(parser.getContent());
+        blackhole.consume(parser.getPromptTokens());
+        blackhole.consume(parser.getCompletionTokens());
+        blackhole.consume(parser.getTotalTokens());
+    }
+
+    /**
+     * 按HttpClient的调用顺序向解析器依次推送各段响应体
+     *
+     * @param buffers 每次onNext推送的缓冲区
+     * @return 解析结果
+     */
+    static ChatCompletionParser feed(List<List<ByteBuffer>> buffers) {
+        ChatCompletionParser parser = ChatCompletionParser.forCompletion();
+        parser.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        for (List<ByteBuffer> list : buffers) {
+            parser.onNext(list);
+        }
+        parser.onComplete();
+        return parser.getBody().toCompletableFuture().join();
+    }
+
+    /**
+     * 生成包含指定节点数XML的完整响应体
+     */
+    static byte[] completionBody(int nodes) {
+        StringBuilder xml = new StringBuilder("<mxGraphModel>\n  <root>\n    <mxCell id=\"0\"/>\n"
+                + "    <mxCell id=\"1\" parent=\"0\"/>\n");
+        for (int i = 0; i < nodes; i++) {
+            xml.append("    <mxCell id=\"").append(i + 2).append("\" value=\"步骤").append(i)
+                    .append("\" style=\"rounded=1;whiteSpace=wrap;html=1;fillColor=#dae8fc;strokeColor=#6c8ebf;\" ")
+                    .append("vertex=\"1\" parent=\"1\">\n      <mxGeometry x=\"200\" y=\"").append(50 + i * 100)
+                    .append("\" width=\"120\" height=\"60\" as=\"geometry\"/>\n    </mxCell>\n");
+        }
+        xml.append("  </root>\n</mxGraphModel>");
+
+        String json = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1700000000,"
+                + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":" + JSONUtil.quote(xml.toString()) + "},\"finish_reason\":\"stop\"}],"
+                + "\"usage\":{\"prompt_tokens\":812,\"completion_tokens\":" + nodes * 56
+                + ",\"total_tokens\":" + (812 + nodes * 56) + "}}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package com.aiprompt2draw.adapter.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 响应流式解析测试
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+class ChatCompletionParserTest {
+
+    private static final String COMPLETION = "{\"id\":\"chatcmpl-1\",\"choices\":[{\"index\":0,"
+            + "\"message\":{\"role\":\"assistant\",\"content\":\"<mxCell value=\\\"开始\\\"/>\"},"
+            + "\"finish_reason\":\"stop\"}],"
+            + "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":34,\"total_tokens\":46}}";
+
+    @Test
+    void parsesContentAndUsage() {
+        ChatCompletionParser parser = parse(COMPLETION, Integer.MAX_VALUE);
+
+        assertTrue(parser.hasChoice());
+        assertEquals("<mxCell value=\"开始\"/>", parser.getContent());
+        assertTrue(parser.hasUsage());
+        assertEquals(12, parser.getPromptTokens());
+        assertEquals(34, parser.getCompletionTokens());
+        assertEquals(46, parser.getTotalTokens());
+    }
+
+    @Test
+    void sameResultForAnySplitOfTheBody() {
+        // 包括在多字节UTF-8字符、转义序列与数字中间切开
+        for (int size = 1; size <= 16; size++) {
+            ChatCompletionParser parser = parse(COMPLETION, size);
+            assertEquals("<mxCell value=\"开始\"/>", parser.getContent(), "chunk=" + size);
+            assertEquals(46, parser.getTotalTokens(), "chunk=" + size);
+        }
+
+        byte[] body = ChatCompletionParserBenchmark.completionBody(60);
+        ChatCompletionParser whole = parse(body, Integer.MAX_VALUE);
+        ChatCompletionParser split = parse(body, 1000);
+        assertEquals(whole.getContent(), split.getContent());
+        assertEquals(whole.getCompletionTokens(), split.getCompletionTokens());
+    }
+
+    @Test
+    void decodesEscapedUnicode() {
+        String body = "{\"choices\":[{\"message\":{\"content\":"
+                + "\"\\u5f00\\u59cb \\ud83d\\ude00 \\\"q\\\" \\/ \\t\\n\"}}]}";
+        String expected = "开始 😀 \"q\" / \t\n";
+
+        assertEquals(expected, parse(body, Integer.MAX_VALUE).getContent());
+        assertEquals(expected, parse(body, 1).getContent());
+    }
+
+    @Test
+    void missingUsageReportsZeroTokens() {
+        ChatCompletionParser parser = parse("{\"choices\":[{\"message\":{\"content\":\"x\"}}]}", 3);
+
+        assertEquals("x", parser.getContent());
+        assertFalse(parser.hasUsage());
+        assertEquals(0, parser.getPromptTokens());
+        assertEquals(0, parser.getCompletionTokens());
+        assertEquals(0, parser.getTotalTokens());
+    }
+
+    @Test
+    void ignoresContentOutsideFirstChoiceMessage() {
+        String body = "{\"content\":\"root\",\"choices\":[{\"message\":{\"content\":\"first\","
+                + "\"tool\":{\"content\":\"nested\"}}},{\"message\":{\"content\":\"second\"}}],"
+                + "\"extra\":{\"usage\":{\"total_tokens\":9}}}";
+        ChatCompletionParser parser = parse(body, 5);
+
+        assertEquals("first", parser.getContent());
+        assertFalse(parser.hasUsage());
+    }
+
+    @Test
+    void emptyChoicesHasNoContent() {
+        ChatCompletionParser parser = parse("{\"choices\":[],\"usage\":{\"total_tokens\":1}}", 4);
+
+        assertFalse(parser.hasChoice());
+        assertNull(parser.getContent());
+        assertEquals(1, parser.getTotalTokens());
+    }
+
+    @Test
+    void truncatedBodyFails() {
+        String truncated = COMPLETION.substring(0, COMPLETION.length() / 2);
+
+        assertThrows(CompletionException.class, () -> parse(truncated, 7));
+    }
+
+    @Test
+    void parsesStreamChunk() throws IOException {
+        ChatCompletionParser event = ChatCompletionParser.parseChunk(
+                "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"\\u8282\\u70b9\"}}]}");
+        assertEquals("节点", event.getContent());
+        assertFalse(event.hasUsage());
+
+        ChatCompletionParser last = ChatCompletionParser.parseChunk(
+                "{\"choices\":[],\"usage\":{\"prompt_tokens\":1,\"completion_tokens\":2,\"total_tokens\":3}}");
+        assertNull(last.getContent());
+        assertEquals(3, last.getTotalTokens());
+
+        // 流式事件只读取delta, 不读取message
+        assertNull(ChatCompletionParser.parseChunk(
+                "{\"choices\":[{\"message\":{\"content\":\"x\"}}]}").getContent());
+    }
+
+    private static ChatCompletionParser parse(String body, int chunkSize) {
+        return parse(body.getBytes(StandardCharsets.UTF_8), chunkSize);
+    }
+
+    private static ChatCompletionParser parse(byte[] body, int chunkSize) {
+        List<List<ByteBuffer>> buffers = new ArrayList<>();
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, body.length - offset);
+            buffers.add(Collections.singletonList(ByteBuffer.wrap(body, offset, length)));
+        }
+        return ChatCompletionParserBenchmark.feed(buffers);
+    }
+}
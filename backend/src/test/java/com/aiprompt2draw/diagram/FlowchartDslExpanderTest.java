@@ -0,0 +1,61 @@
+package com.aiprompt2draw.diagram;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 图描述解析测试
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+class FlowchartDslExpanderTest {
+
+    private final FlowchartDslExpander expander = new FlowchartDslExpander(LayeredLayoutBenchmark.newLayout());
+
+    @Test
+    void parsesSpacedAndCompactArrows() {
+        FlowchartGraph graph = expander.parse("n1 start 开始\nn2 decision 校验通过?\nn3 end 结束\n"
+                + "n1 -> n2\nn2->n3 是\nn2->n1 \"重新 输入\"");
+
+        List<FlowchartGraph.Edge> edges = graph.getEdges();
+        assertEquals(3, edges.size());
+        assertEdge(edges.get(0), "n1", "n2", null);
+        assertEdge(edges.get(1), "n2", "n3", "是");
+        assertEdge(edges.get(2), "n2", "n1", "重新 输入");
+        assertEquals(3, graph.getNodes().size());
+    }
+
+    @Test
+    void arrowInsideNodeTextIsNotAnEdge() {
+        FlowchartGraph graph = expander.parse("n1 process 登录->首页\nn2 a->b\n->n3\nn4->");
+
+        assertEquals(0, graph.getEdges().size());
+        assertEquals("登录->首页", graph.getNode("n1").getLabel());
+        assertEquals(NodeKind.PROCESS, graph.getNode("n2").getKind());
+        assertEquals("a->b", graph.getNode("n2").getLabel());
+        assertEquals(4, graph.getNodes().size());
+    }
+
+    @Test
+    void compactArrowWithMultipleArrowsIsNotAnEdge() {
+        FlowchartGraph graph = expander.parse("n1->n2->n3");
+
+        assertEquals(0, graph.getEdges().size());
+        assertEquals(1, graph.getNodes().size());
+    }
+
+    private static void assertEdge(FlowchartGraph.Edge edge, String source, String target, String label) {
+        assertEquals(source, edge.getSource());
+        assertEquals(target, edge.getTarget());
+        if (label == null) {
+            assertNull(edge.getLabel());
+        } else {
+            assertEquals(label, edge.getLabel());
+        }
+    }
+}
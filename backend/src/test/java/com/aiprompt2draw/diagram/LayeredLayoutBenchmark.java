@@ -0,0 +1,114 @@
+package com.aiprompt2draw.diagram;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分层布局基准测试
+ * <p>
+ * 图结构模拟流程图: 主干顺序连接, 决策点向后分出2-3条分支, 少量回边构成循环。运行方式:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main -Dexec.args=LayeredLayoutBenchmark
+ * </pre>
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayeredLayoutBenchmark {
+
+    @Param({"50", "100", "200", "500"})
+    private int nodes;
+
+    private LayeredLayout layout;
+
+    private int[] widths;
+    private int[] heights;
+    private int[] sources;
+    private int[] targets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        layout = newLayout();
+
+        widths = new int[nodes];
+        heights = new int[nodes];
+        Arrays.fill(widths, 120);
+        Arrays.fill(heights, 60);
+
+        int[][] edges = flowchartEdges(nodes, 42);
+        sources = edges[0];
+        targets = edges[1];
+    }
+
+    @Benchmark
+    public LayeredLayout.Result layout() {
+        return layout.layout(widths, heights, sources, targets);
+    }
+
+    /**
+     * 使用默认配置创建布局引擎
+     */
+    static LayeredLayout newLayout() {
+        LayeredLayout layout = new LayeredLayout(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(layout, "margin", 40);
+        ReflectionTestUtils.setField(layout, "layerSpacing", 80);
+        ReflectionTestUtils.setField(layout, "nodeSpacing", 60);
+        ReflectionTestUtils.setField(layout, "crossingSweeps", 8);
+        ReflectionTestUtils.setField(layout, "coordinatePasses", 4);
+        return layout;
+    }
+
+    /**
+     * 生成流程图形态的连线
+     *
+     * @param n    节点数
+     * @param seed 随机种子
+     * @return {起点下标, 终点下标}
+     */
+    static int[][] flowchartEdges(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] sources = new int[n * 2];
+        int[] targets = new int[n * 2];
+        int m = 0;
+        for (int i = 1; i < n; i++) {
+            sources[m] = i - 1;
+            targets[m++] = i;
+            if (i % 5 == 0) {
+                // 决策点: 向后2-3条分支
+                int branches = 1 + random.nextInt(2);
+                for (int b = 0; b < branches && i + 2 < n; b++) {
+                    sources[m] = i;
+                    targets[m++] = Math.min(n - 1, i + 2 + random.nextInt(6));
+                }
+            }
+            if (i % 15 == 0) {
+                // 重试循环
+                sources[m] = i;
+                targets[m++] = Math.max(0, i - 1 - random.nextInt(8));
+            }
+        }
+        return new int[][]{Arrays.copyOf(sources, m), Arrays.copyOf(targets, m)};
+    }
+}
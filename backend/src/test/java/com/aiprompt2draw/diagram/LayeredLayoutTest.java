@@ -0,0 +1,119 @@
+package com.aiprompt2draw.diagram;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分层布局测试
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+class LayeredLayoutTest {
+
+    private LayeredLayout layout;
+
+    @BeforeEach
+    void setUp() {
+        layout = LayeredLayoutBenchmark.newLayout();
+    }
+
+    @Test
+    void removableCrossingIsEliminated() {
+        // a, b在上层, c, d在下层, a->d与b->c按初始次序交叉
+        LayeredLayout.Result result = run(4, new int[]{0, 1}, new int[]{3, 2});
+
+        assertEquals(2, result.getLayerCount());
+        assertEquals(0, result.getCrossings());
+    }
+
+    @Test
+    void completeBipartiteCrossingsAreCounted() {
+        // 两层完全二部图K(m,n)的交叉数与排列无关, 为C(m,2) * C(n,2)
+        LayeredLayout.Result k22 = run(4, new int[]{0, 0, 1, 1}, new int[]{2, 3, 2, 3});
+        assertEquals(1, k22.getCrossings());
+
+        LayeredLayout.Result k33 = run(6,
+                new int[]{0, 0, 0, 1, 1, 1, 2, 2, 2},
+                new int[]{3, 4, 5, 3, 4, 5, 3, 4, 5});
+        assertEquals(9, k33.getCrossings());
+    }
+
+    @Test
+    void longEdgeIsSplitIntoDummyNodes() {
+        // a->b->c->d, a->d跨3层, 经过2个虚拟节点
+        LayeredLayout.Result result = run(4, new int[]{0, 1, 2, 0}, new int[]{1, 2, 3, 3});
+
+        assertEquals(4, result.getLayerCount());
+        assertNull(result.getEdgePoints()[0]);
+        assertNull(result.getEdgePoints()[1]);
+        assertNull(result.getEdgePoints()[2]);
+
+        int[] points = result.getEdgePoints()[3];
+        assertNotNull(points);
+        assertEquals(4, points.length);
+        // 拐点位于b、c所在层, 自上而下排列
+        int[] y = result.getY();
+        assertTrue(points[1] > y[0] && points[1] < y[3]);
+        assertTrue(points[3] > points[1] && points[3] < y[3] + 60);
+    }
+
+    @Test
+    void cycleIsBrokenWithoutLosingEdges() {
+        // a->b->c->a, 回边c->a反向后分为3层
+        LayeredLayout.Result result = run(3, new int[]{0, 1, 2}, new int[]{1, 2, 0});
+
+        assertEquals(3, result.getLayerCount());
+        int[] y = result.getY();
+        assertTrue(y[0] < y[1] && y[1] < y[2]);
+
+        // 回边跨2层, 拐点按连线方向(自下而上)输出
+        int[] points = result.getEdgePoints()[2];
+        assertNotNull(points);
+        assertEquals(2, points.length);
+        assertTrue(points[1] > y[0] && points[1] < y[2]);
+    }
+
+    @Test
+    void selfLoopsAndInvalidEdgesAreIgnored() {
+        LayeredLayout.Result result = run(2, new int[]{0, 0, 5}, new int[]{0, 1, 0});
+
+        assertEquals(2, result.getLayerCount());
+        assertNull(result.getEdgePoints()[0]);
+        assertNull(result.getEdgePoints()[2]);
+    }
+
+    @Test
+    void nodesInSameLayerDoNotOverlap() {
+        int[][] edges = LayeredLayoutBenchmark.flowchartEdges(200, 7);
+        LayeredLayout.Result result = run(200, edges[0], edges[1]);
+
+        int[] x = result.getX();
+        int[] y = result.getY();
+        Integer[] order = new Integer[200];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> y[a] != y[b] ? Integer.compare(y[a], y[b]) : Integer.compare(x[a], x[b]));
+        for (int i = 1; i < order.length; i++) {
+            if (y[order[i]] == y[order[i - 1]]) {
+                assertTrue(x[order[i]] >= x[order[i - 1]] + 120, "同层节点重叠");
+            }
+        }
+    }
+
+    private LayeredLayout.Result run(int n, int[] sources, int[] targets) {
+        int[] widths = new int[n];
+        int[] heights = new int[n];
+        Arrays.fill(widths, 120);
+        Arrays.fill(heights, 60);
+        return layout.layout(widths, heights, sources, targets);
+    }
+}
@@ -0,0 +1,119 @@
+package com.aiprompt2draw.service;
+
+import com.aiprompt2draw.entity.ApiKey;
+import com.aiprompt2draw.exception.BusinessException;
+import com.aiprompt2draw.mapper.ApiKeyMapper;
+import com.aiprompt2draw.mapper.ApiKeyModelPermissionMapper;
+import com.aiprompt2draw.mapper.UserApiKeyMapper;
+import com.aiprompt2draw.utils.ApiKeyGenerator;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+/**
+ * 无效API Key拒绝吞吐基准测试
+ * <p>
+ * 经 {@link ApiKeyService#validateApiKey} 完整拒绝路径(格式校验、布隆过滤器、抛出不带堆栈的401异常),
+ * 布隆过滤器中预置1万个已发放Key; 缓存与数据库为mock, 过滤器误判的少量Key同样以401结束
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ApiKeyRejectionBenchmark {
+
+    private static final int ISSUED = 10_000;
+
+    private static final int MASK = 1023;
+
+    private ApiKeyService apiKeyService;
+
+    private final String[] unissued = new String[MASK + 1];
+
+    private final String[] malformed = new String[MASK + 1];
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup
+    public void setUp() {
+        List<ApiKey> page = new ArrayList<>(ISSUED);
+        for (int i = 0; i < ISSUED; i++) {
+            ApiKey apiKey = new ApiKey();
+            apiKey.setId((long) i + 1);
+            apiKey.setKeyValue(ApiKeyGenerator.generate(1));
+            page.add(apiKey);
+        }
+        ApiKeyMapper apiKeyMapper = Mockito.mock(ApiKeyMapper.class);
+        Mockito.when(apiKeyMapper.selectCount(null)).thenReturn((long) ISSUED);
+        Mockito.when(apiKeyMapper.selectKeyValuesAfter(anyLong(), anyInt())).thenReturn(Collections.emptyList());
+        Mockito.when(apiKeyMapper.selectKeyValuesAfter(eq(0L), anyInt())).thenReturn(page);
+
+        ApiKeyBloomFilter bloomFilter = new ApiKeyBloomFilter(apiKeyMapper);
+        ReflectionTestUtils.setField(bloomFilter, "enabled", true);
+        ReflectionTestUtils.setField(bloomFilter, "expectedKeys", 1_000_000);
+        ReflectionTestUtils.setField(bloomFilter, "fpp", 0.001);
+        ReflectionTestUtils.setField(bloomFilter, "syncOverlap", 100);
+        ReflectionTestUtils.setField(bloomFilter, "minSyncInterval", 1000L);
+        bloomFilter.rebuild();
+
+        apiKeyService = new ApiKeyService(apiKeyMapper,
+                Mockito.mock(UserApiKeyMapper.class),
+                Mockito.mock(ApiKeyModelPermissionMapper.class),
+                Mockito.mock(QuotaLeaseService.class),
+                Mockito.mock(ApiKeyCacheService.class),
+                bloomFilter,
+                Mockito.mock(ApiKeyExpiryService.class));
+
+        for (int i = 0; i <= MASK; i++) {
+            unissued[i] = ApiKeyGenerator.generate(1);
+            malformed[i] = unissued[i].substring(1);
+        }
+    }
+
+    @Benchmark
+    public int rejectUnissuedKey(Cursor cursor) {
+        return reject(unissued[cursor.next++ & MASK]);
+    }
+
+    @Benchmark
+    public int rejectMalformedKey(Cursor cursor) {
+        return reject(malformed[cursor.next++ & MASK]);
+    }
+
+    private int reject(String keyValue) {
+        try {
+            apiKeyService.validateApiKey(keyValue);
+            return 200;
+        } catch (BusinessException e) {
+            return e.getCode();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.aiprompt2draw.utils;
+
+import com.aiprompt2draw.constant.FlowchartPromptTemplate;
+import com.aiprompt2draw.enums.GenerationMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token数估算基准测试
+ * <p>
+ * 覆盖每个请求都会执行的 {@link TokenEstimator#estimateRequest} 与响应缺失usage时对整段XML的估算
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenEstimatorBenchmark {
+
+    private final String prompt = "请假审批: 员工提交申请, 系统校验剩余假期, 不足则驳回; 三天以内组长审批, "
+            + "超过三天组长审批后经理审批, 超过十天再由HR审批; 任一环节拒绝则通知员工并结束, "
+            + "全部通过后扣减假期、同步考勤并通知员工";
+
+    private final String systemPrompt = FlowchartPromptTemplate.systemPrompt(GenerationMode.XML);
+
+    private final String xml = buildXml(20);
+
+    @Benchmark
+    public int estimateRequest() {
+        return TokenEstimator.estimateRequest(prompt, GenerationMode.XML);
+    }
+
+    @Benchmark
+    public int estimateSystemPrompt() {
+        return TokenEstimator.estimate(systemPrompt);
+    }
+
+    @Benchmark
+    public int estimateCompletion() {
+        return TokenEstimator.estimate(xml);
+    }
+
+    private static String buildXml(int nodes) {
+        StringBuilder builder = new StringBuilder("<mxGraphModel><root><mxCell id=\"0\"/><mxCell id=\"1\" parent=\"0\"/>");
+        for (int i = 0; i < nodes; i++) {
+            builder.append("<mxCell id=\"n").append(i).append("\" value=\"步骤").append(i)
+                    .append("\" style=\"rounded=1;whiteSpace=wrap;html=1;fillColor=#dae8fc;strokeColor=#6c8ebf;\" ")
+                    .append("vertex=\"1\" parent=\"1\"><mxGeometry x=\"200\" y=\"").append(50 + i * 100)
+                    .append("\" width=\"120\" height=\"60\" as=\"geometry\"/></mxCell>");
+        }
+        return builder.append("</root></mxGraphModel>").toString();
+    }
+}
@@ -0,0 +1,69 @@
+package com.aiprompt2draw.utils;
+
+import com.aiprompt2draw.enums.GenerationMode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Token数估算测试
+ *
+ * @author AIPrompt2Draw
+ * @since 1.0.0
+ */
+class TokenEstimatorTest {
+
+    /**
+     * 参考样本及其cl100k_base分词结果
+     * <p>
+     * 样本只含常用英文单词与标点, 按cl100k_base的切分规则逐词计数(带前导空格的常用词与标点各为1个Token)。
+     * 补充样本时用tiktoken生成参考值:
+     * {@code python -c "import tiktoken,sys; print(len(tiktoken.get_encoding('cl100k_base').encode(sys.argv[1])))" "<text>"}
+     */
+    private static final Object[][] REFERENCE = {
+            {"The user opens the app and signs in with a password.", 12},
+            {"If the password is wrong, show an error and try again.", 13},
+            {"Create a new order, check the stock, then send the order to the warehouse.", 17},
+            {"Start with a request, wait for approval from the manager, and finish.", 15},
+            {"Return an error when the user has no access.", 10},
+    };
+
+    @Test
+    void estimateStaysWithinStatedErrorOfReferenceTokenizer() {
+        for (Object[] sample : REFERENCE) {
+            String text = (String) sample[0];
+            int reference = (Integer) sample[1];
+            int estimate = TokenEstimator.estimate(text);
+            assertTrue(estimate >= reference && estimate <= reference * 3 / 2,
+                    () -> "估算值" + estimate + "超出参考值" + reference + "的1.0~1.5倍: " + text);
+        }
+    }
+
+    @Test
+    void countsCharacterClasses() {
+        assertEquals(0, TokenEstimator.estimate(null));
+        assertEquals(0, TokenEstimator.estimate(""));
+        // 英文与数字约4个字符1个Token
+        assertEquals(2, TokenEstimator.estimate("password"));
+        assertEquals(1, TokenEstimator.estimate("2024"));
+        // 非ASCII字符每个1个Token, 代理对只计一次
+        assertEquals(4, TokenEstimator.estimate("用户登录"));
+        assertEquals(1, TokenEstimator.estimate("😀"));
+        // 连续标点约2个字符1个Token, 空白不单独计数
+        assertEquals(2, TokenEstimator.estimate("-->"));
+        assertEquals(2, TokenEstimator.estimate("a  \n  b"));
+    }
+
+    @Test
+    void requestEstimateIncludesTemplateOverhead() {
+        for (GenerationMode mode : GenerationMode.values()) {
+            int overhead = TokenEstimator.estimateRequest("", mode);
+            assertTrue(overhead > 0);
+            assertEquals(overhead + 4, TokenEstimator.estimateRequest("用户登录", mode));
+        }
+        // DSL模式的提示词比XML模式短
+        assertTrue(TokenEstimator.estimateRequest("", GenerationMode.DSL)
+                < TokenEstimator.estimateRequest("", GenerationMode.XML));
+    }
+}